@@ -0,0 +1,53 @@
+package appDomain;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A benchmark document written to a temporary file by an
+ * {@link XMLGenerator}, with the same seed for every run.
+ */
+final class BenchDocument {
+    /** The generated file, deleted by {@link #delete()}. */
+    final Path file;
+    /** Size of the file in bytes. */
+    final long bytes;
+    /** Number of tags in the file, opening and closing counted apart. */
+    final long tags;
+
+    private BenchDocument(Path file, long bytes, long tags) {
+        this.file = file;
+        this.bytes = bytes;
+        this.tags = tags;
+    }
+
+    /**
+     * Writes a document of about the given size to a temporary file.
+     *
+     * @param size target size in bytes
+     * @param depth maximum nesting depth
+     * @param errorRate share of elements with a broken tag, from 0 to 1
+     * @param attributes maximum attributes on an opening tag
+     * @return the generated document
+     * @throws IOException if the file cannot be written
+     */
+    static BenchDocument create(long size, int depth, double errorRate, int attributes) throws IOException {
+        Path file = Files.createTempFile("xmlbench", ".xml");
+        XMLGenerator generator = new XMLGenerator();
+        generator.setDepth(depth);
+        generator.setErrorRate(errorRate);
+        generator.setAttributes(attributes);
+        generator.generate(file, size);
+        return new BenchDocument(file, generator.bytesWritten(), generator.tagCount());
+    }
+
+    /**
+     * Deletes the generated file.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,82 @@
+package appDomain;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the tokenizer and tag matching alone, on a document held
+ * in memory, so changes to the scanner are measured without disk or page
+ * cache noise. The score is in documents/s; the megabytes and tags
+ * counters give MB/s and tags/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class ScanBenchmark {
+    /** Size of the document in KB, at most 1 GB as it is held in one array. */
+    @Param({ "64", "16384" })
+    public long sizeKb;
+
+    /** Maximum nesting depth. */
+    @Param({ "4", "32" })
+    public int depth;
+
+    /** Share of elements with a broken tag. */
+    @Param({ "0", "0.01" })
+    public double errorRate;
+
+    /** Maximum attributes on an opening tag. */
+    @Param({ "0", "8" })
+    public int attributes;
+
+    private BenchDocument document;
+    private ByteBuffer buffer;
+
+    /**
+     * Writes the document and reads it into memory.
+     *
+     * @throws IOException if the document cannot be written or read
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        document = BenchDocument.create(sizeKb * 1024, depth, errorRate, attributes);
+        buffer = ByteBuffer.wrap(Files.readAllBytes(document.file));
+        document.delete();
+    }
+
+    /**
+     * Tokenizes and validates the document once.
+     *
+     * @param throughput counters of scanned bytes and tags
+     * @return the number of errors, so the work is not dead code
+     */
+    @Benchmark
+    public long scan(Throughput throughput) {
+        TagValidator validator = new TagValidator();
+        XMLTokenizer tokenizer = new XMLTokenizer(validator);
+        buffer.clear();
+        tokenizer.feed(buffer);
+        tokenizer.finish();
+        validator.endOfInput();
+        throughput.add(document);
+        return validator.errorCount();
+    }
+}
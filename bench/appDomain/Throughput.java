@@ -0,0 +1,40 @@
+package appDomain;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary results of a benchmark: JMH divides these totals by the
+ * measured time, so they are reported as MB/s and tags/s next to the
+ * score in documents/s.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+    /** Megabytes scanned, reported as MB/s. */
+    public double megabytes;
+    /** Tags scanned, reported as tags/s. */
+    public long tags;
+
+    /**
+     * Clears the totals before each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void clear() {
+        megabytes = 0;
+        tags = 0;
+    }
+
+    /**
+     * Adds one scanned document to the totals.
+     *
+     * @param document the document that was scanned
+     */
+    void add(BenchDocument document) {
+        megabytes += document.bytes / 1e6;
+        tags += document.tags;
+    }
+}
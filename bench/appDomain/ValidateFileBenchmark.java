@@ -0,0 +1,111 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the whole validation engine behind {@link XMLParser#main}:
+ * a generated file is validated with the same code path and options as the
+ * command line, and the report is thrown away. The score is in files/s; the
+ * megabytes and tags counters give MB/s and tags/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class ValidateFileBenchmark {
+    /** Size of the document in KB; pass -p sizeKb=1048576 for 1 GB. */
+    @Param({ "64", "16384" })
+    public long sizeKb;
+
+    /** Maximum nesting depth. */
+    @Param({ "4", "32" })
+    public int depth;
+
+    /** Share of elements with a broken tag. */
+    @Param({ "0", "0.01" })
+    public double errorRate;
+
+    /** Maximum attributes on an opening tag. */
+    @Param({ "0", "8" })
+    public int attributes;
+
+    /** How the file is read: stream, mmap or parallel. */
+    @Param({ "stream", "mmap", "parallel" })
+    public String mode;
+
+    private BenchDocument document;
+    private ParserOptions options;
+    private PrintStream out;
+
+    /**
+     * Writes the document and parses the options for the mode.
+     *
+     * @throws IOException if the document cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        document = BenchDocument.create(sizeKb * 1024, depth, errorRate, attributes);
+        String file = document.file.toString();
+        String[] args;
+        if (mode.equals("mmap")) {
+            args = new String[] { "--mmap", file };
+        } else if (mode.equals("parallel")) {
+            args = new String[] { "--parallel", file };
+        } else {
+            args = new String[] { file };
+        }
+        options = ParserOptions.parse(args);
+        out = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    /**
+     * Deletes the document.
+     *
+     * @throws IOException if the document cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        document.delete();
+    }
+
+    /**
+     * Validates the document once.
+     *
+     * @param throughput counters of scanned bytes and tags
+     * @return whether the error limit was hit, so the work is not dead code
+     * @throws IOException if the document cannot be read
+     */
+    @Benchmark
+    public boolean validate(Throughput throughput) throws IOException {
+        boolean limitReached = XMLParser.validate(document.file.toString(), options, out);
+        throughput.add(document);
+        return limitReached;
+    }
+}
@@ -0,0 +1,220 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Feeds a file to an {@link XMLTokenizer} through asynchronous reads. A
+ * small ring of direct buffers rotates between the disk and the scanner:
+ * while one buffer is scanned, reads into the others are already in flight,
+ * so on slow or network storage the time of a file approaches the larger of
+ * its read time and its scan time rather than their sum. The buffers are
+ * handed back to the channel as soon as they are scanned; memory is bounded
+ * by the ring whatever the file's size.
+ * <p>
+ * Direct buffers are slow to allocate and freed only by the garbage
+ * collector, so a finished scan leaves its ring idle for the next one
+ * instead of dropping it. At most {@link #MAX_IDLE_RINGS} rings are kept
+ * idle; a ring finished while that many wait is dropped for the collector
+ * to free, so a burst of files read at once, such as a batch on hundreds
+ * of virtual threads, does not hold its direct memory after it ends.
+ */
+public final class AsyncFileInput {
+    /** Default number of buffers in the ring, all but one reading ahead. */
+    public static final int DEFAULT_BUFFERS = 4;
+    /** Default size of each buffer. */
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /** Number of rings kept for later scans: one per processor. */
+    static final int MAX_IDLE_RINGS = Runtime.getRuntime().availableProcessors();
+
+    /** Rings no scan is using, each taken by one scan at a time. */
+    private static final BlockingQueue<ByteBuffer[]> IDLE_RINGS = new LinkedBlockingQueue<>(MAX_IDLE_RINGS);
+
+    private AsyncFileInput() {
+    }
+
+    /**
+     * Reads and tokenizes a whole file with the default ring, then
+     * finishes the tokenizer.
+     *
+     * @param file the XML file
+     * @param tokenizer receiver of the file's bytes
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static void scan(Path file, XMLTokenizer tokenizer) throws IOException {
+        scan(file, tokenizer, DEFAULT_BUFFERS, DEFAULT_BUFFER_SIZE, null);
+    }
+
+    /**
+     * Reads and tokenizes a whole file with the default ring, then finishes
+     * the tokenizer, hashing the bytes scanned for the result cache.
+     *
+     * @param hash receiver of every byte the tokenizer consumed, or null
+     */
+    static void scan(Path file, XMLTokenizer tokenizer, ResultCache.ContentHash hash) throws IOException {
+        scan(file, tokenizer, DEFAULT_BUFFERS, DEFAULT_BUFFER_SIZE, hash);
+    }
+
+    /**
+     * Reads and tokenizes a whole file, then finishes the tokenizer. Buffer
+     * k of the ring reads the blocks k, k + buffers, k + 2 * buffers and so
+     * on, so the blocks reach the tokenizer in file order. No further read
+     * is started once the tokenizer has been stopped.
+     *
+     * @param file the XML file
+     * @param tokenizer receiver of the file's bytes
+     * @param buffers number of buffers in the ring, at least 2
+     * @param bufferSize size of each buffer, and of each read
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static void scan(Path file, XMLTokenizer tokenizer, int buffers, int bufferSize) throws IOException {
+        scan(file, tokenizer, buffers, bufferSize, null);
+    }
+
+    /**
+     * Reads and tokenizes a whole file with the given ring. The bytes of
+     * each buffer up to where the tokenizer stopped, if it did, are given to
+     * the hash before the buffer is read into again.
+     *
+     * @param hash receiver of every byte the tokenizer consumed, or null
+     */
+    static void scan(Path file, XMLTokenizer tokenizer, int buffers, int bufferSize, ResultCache.ContentHash hash)
+            throws IOException {
+        if (buffers < 2 || bufferSize < 1) {
+            throw new IllegalArgumentException("Need at least two non-empty buffers");
+        }
+        ByteBuffer[] ringBuffers = takeRing(buffers, bufferSize);
+        List<Future<Integer>> reads = new ArrayList<>(buffers);
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // Small files use no more buffers, and no longer reads, than
+            // they need
+            int ring = (int) Math.min(buffers, (size + bufferSize - 1) / bufferSize);
+            int capacity = (int) Math.min(bufferSize, size);
+            long[] starts = new long[ring];
+            long next = 0;
+            for (int i = 0; i < ring; i++) {
+                ringBuffers[i].clear().limit(capacity);
+                starts[i] = next;
+                reads.add(channel.read(ringBuffers[i], next));
+                next += capacity;
+            }
+            long pos = 0;
+            for (int slot = 0; pos < size && !tokenizer.isStopped(); slot = (slot + 1) % ring) {
+                ByteBuffer buffer = ringBuffers[slot];
+                Object fill = FlightEvents.begin(FlightEvents.BUFFER_FILL);
+                boolean complete = await(channel, buffer, reads.get(slot), starts[slot], size);
+                reads.set(slot, null);
+                FlightEvents.commit(fill, buffer.position());
+                buffer.flip();
+                Object scan = FlightEvents.begin(FlightEvents.CHUNK_SCAN);
+                tokenizer.feed(buffer);
+                FlightEvents.commit(scan, pos, buffer.limit());
+                if (hash != null) {
+                    hash.update(buffer, 0, buffer.position());
+                }
+                pos += buffer.limit();
+                if (!complete) {
+                    // The file was cut short while being read
+                    break;
+                }
+                buffer.clear().limit(capacity);
+                if (next < size) {
+                    starts[slot] = next;
+                    reads.set(slot, channel.read(buffer, next));
+                    next += capacity;
+                }
+            }
+        } finally {
+            // A read still in flight would write into the next user's ring;
+            // a ring the idle queue has no room for is dropped
+            if (settle(reads)) {
+                IDLE_RINGS.offer(ringBuffers);
+            }
+        }
+        tokenizer.finish();
+    }
+
+    /**
+     * Takes an idle ring of the given shape, or allocates one.
+     */
+    private static ByteBuffer[] takeRing(int buffers, int bufferSize) {
+        ByteBuffer[] ring = IDLE_RINGS.poll();
+        if (ring != null && ring.length == buffers && ring[0].capacity() == bufferSize) {
+            return ring;
+        }
+        ring = new ByteBuffer[buffers];
+        for (int i = 0; i < buffers; i++) {
+            ring[i] = ByteBuffer.allocateDirect(bufferSize);
+        }
+        return ring;
+    }
+
+    /**
+     * Waits for the reads not yet consumed, such as those left behind by a
+     * stopped tokenizer or a failed read, ignoring their results.
+     *
+     * @return false if interrupted, when a read may still be in flight
+     */
+    private static boolean settle(List<Future<Integer>> reads) {
+        for (Future<Integer> read : reads) {
+            if (read == null) {
+                continue;
+            }
+            try {
+                read.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                // Its buffer is not scanned
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits for a buffer's read and completes it if it came back short, as
+     * a read may; the buffer is full afterwards unless the file ends first.
+     *
+     * @return false if the file ended before the buffer's block did
+     */
+    private static boolean await(AsynchronousFileChannel channel, ByteBuffer buffer, Future<Integer> read, long start,
+            long size) throws IOException {
+        long end = Math.min(start + buffer.limit(), size);
+        int n = get(read);
+        while (n != -1 && start + buffer.position() < end) {
+            n = get(channel.read(buffer, start + buffer.position()));
+        }
+        return n != -1;
+    }
+
+    /**
+     * Returns the result of a read, rethrowing its failure.
+     */
+    private static int get(Future<Integer> read) throws IOException {
+        try {
+            return read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a read");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
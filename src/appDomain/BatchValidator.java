@@ -0,0 +1,289 @@
+package appDomain;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Validates many files in one JVM on a pool of workers. Files are started
+ * largest first so one big file does not finish last on its own, but the
+ * reports are printed in input order. Every file gets its own tokenizer,
+ * tag stack and error queues.
+ * <p>
+ * The file at the head of the input order writes its report straight out,
+ * so with streamed errors its memory stays flat. A file validated ahead of
+ * its turn holds its report in memory until the files before it are done.
+ */
+public class BatchValidator {
+    /** Concurrency limit for virtual threads when none is given. */
+    static final int DEFAULT_VIRTUAL_LIMIT = 256;
+
+    private final ParserOptions options;
+    /** Set by any worker whose file hit the error limit. */
+    private final AtomicBoolean limitReached = new AtomicBoolean();
+
+    /**
+     * Creates a batch validator reading files as the options specify.
+     *
+     * @param options reading options and pool settings
+     */
+    BatchValidator(ParserOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Expands the inputs into the list of files to validate: plain files as
+     * given, directories walked recursively for *.xml files in path order,
+     * and the paths listed in every file list.
+     *
+     * @return files in report order
+     * @throws IOException if a directory or file list cannot be read
+     */
+    List<Path> collectFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String input : options.inputs) {
+            addPath(Paths.get(input), files);
+        }
+        for (String list : options.fileLists) {
+            for (String line : Files.readAllLines(Paths.get(list), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    addPath(Paths.get(line), files);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Adds a file, or the XML files below a directory.
+     */
+    private static void addPath(Path path, List<Path> files) throws IOException {
+        if (!Files.isDirectory(path)) {
+            files.add(path);
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            files.addAll(walk
+                    .filter(p -> Files.isRegularFile(p) && p.getFileName().toString().toLowerCase().endsWith(".xml"))
+                    .sorted()
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Validates every file and prints one report per file, in input order,
+     * each headed by the file's path unless the records are JSON.
+     *
+     * @param out destination of the reports
+     * @return true if any file hit the error limit
+     * @throws IOException if the inputs cannot be expanded
+     */
+    boolean run(PrintStream out) throws IOException {
+        List<Path> files = collectFiles();
+        long[] sizes = new long[files.size()];
+        List<HeldReport> reports = new ArrayList<>(files.size());
+        List<Future<?>> results = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            sizes[i] = sizeOf(files.get(i));
+            reports.add(new HeldReport(out));
+            results.add(null);
+        }
+
+        ExecutorService executor = options.virtualThreads ? newVirtualExecutor() : null;
+        int concurrency = concurrency(options.threads, executor != null);
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(concurrency);
+        }
+        Semaphore permits = new Semaphore(concurrency, true);
+        try {
+            for (int index : largestFirst(sizes)) {
+                Path file = files.get(index);
+                HeldReport report = reports.get(index);
+                results.set(index, executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        validate(file, report);
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                if (options.format == ParserOptions.FORMAT_TEXT) {
+                    // JSON records name their file; a header would break the stream
+                    out.println("== " + files.get(i));
+                }
+                reports.get(i).release();
+                await(results.get(i), out);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return limitReached.get();
+    }
+
+    /**
+     * Returns the order in which files are started: largest first, and in
+     * input order among files of equal size.
+     *
+     * @param sizes the sizes of the files in input order
+     * @return indexes into the input order
+     */
+    static int[] largestFirst(long[] sizes) {
+        Integer[] order = new Integer[sizes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // The sort is stable so equal sizes keep input order
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> sizes[i]).reversed());
+        int[] indexes = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            indexes[i] = order[i];
+        }
+        return indexes;
+    }
+
+    /**
+     * Validates one file, writing its report to the given stream.
+     */
+    private void validate(Path file, HeldReport held) throws UnsupportedEncodingException {
+        PrintStream report = new PrintStream(held, false, "UTF-8");
+        try {
+            if (XMLParser.validate(file.toString(), options, report)) {
+                limitReached.set(true);
+            }
+        } catch (IOException e) {
+            if (options.format == ParserOptions.FORMAT_TEXT) {
+                report.println("Error: " + e.getMessage());
+            } else {
+                System.err.println("Error: " + file + ": " + e.getMessage());
+            }
+        }
+        report.flush();
+    }
+
+    /**
+     * Waits for a file's validation, turning a worker failure into an
+     * error line.
+     */
+    private static void await(Future<?> result, PrintStream out) {
+        try {
+            result.get();
+        } catch (ExecutionException e) {
+            out.println("Error: " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.println("Error: interrupted");
+        }
+    }
+
+    /**
+     * Returns the size of a file, or 0 if it cannot be read; the worker
+     * then reports the problem.
+     */
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the number of files validated at once: the number of threads
+     * asked for, or else {@link #DEFAULT_VIRTUAL_LIMIT} on virtual threads
+     * and one per processor on a fixed pool.
+     *
+     * @param threads the number of threads asked for, or 0 for the default
+     * @param virtual true if the workers are virtual threads
+     * @return the concurrency limit
+     */
+    static int concurrency(int threads, boolean virtual) {
+        if (threads > 0) {
+            return threads;
+        }
+        return virtual ? DEFAULT_VIRTUAL_LIMIT : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per file.
+     *
+     * @return the executor, or null if the JVM has no virtual threads
+     */
+    private static ExecutorService newVirtualExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads are not available on this JVM; using a fixed pool.");
+            return null;
+        }
+    }
+
+    /**
+     * Report of one file: held in memory until the file reaches the head
+     * of the input order, then written straight through to the output.
+     */
+    private static final class HeldReport extends OutputStream {
+        private final PrintStream out;
+        private ByteArrayOutputStream held = new ByteArrayOutputStream();
+
+        HeldReport(PrintStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Writes out what is held and passes everything after it through.
+         */
+        synchronized void release() {
+            out.write(held.toByteArray(), 0, held.size());
+            held = null;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (held != null) {
+                held.write(b);
+            } else {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (held != null) {
+                held.write(b, off, len);
+            } else {
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public synchronized void flush() {
+            if (held == null) {
+                out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package appDomain;
+
+import java.util.Arrays;
+
+/**
+ * Compact summary of the tags in one byte range of a document, used to
+ * validate a document in parallel.
+ * <p>
+ * A range is scanned without knowing which tags are open when it starts.
+ * A closing tag that matches a tag opened inside the range is resolved on
+ * the spot, because that tag is on top of the real stack whatever came
+ * before. What cannot be resolved locally is kept, in document order:
+ * unmatched opening tags, unmatched closing tags, and the errors already
+ * determined. Summaries of adjacent ranges are combined by replaying the
+ * right one against the trailing open tags of the left one, which is
+ * associative; replaying the root summary into a {@link TagValidator}
+ * gives exactly the report of a sequential scan.
+ */
+public class ChunkSummary implements XMLTokenizer.TokenListener {
+    private static final byte REMOVED = 0;
+    private static final byte OPEN = 1;
+    private static final byte CLOSE = 2;
+    private static final byte UNCLOSED = 3;
+
+    private final SymbolTable symbols;
+    /** Byte range [start, end) this summary covers. */
+    private final long start;
+    private long end;
+    /** Number of line breaks in the range. */
+    private int lines;
+    /** Offset of the first byte of the last line, or -1 if it starts before the range. */
+    private long lastLineStart;
+    /** Number of opening, closing and self-closing tags in the range. */
+    private long tags;
+    /** Opening minus closing tags so far, and the highest that has been. */
+    private int depth;
+    private int peakDepth;
+
+    // === Items in document order; lines are relative to the range start ===
+    private byte[] kinds = new byte[16];
+    private int[] ids = new int[16];
+    private int[] itemLines = new int[16];
+    /** Offset of the closing tag that decided each item. */
+    private long[] itemOffsets = new long[16];
+    /** Offset of the start of that tag's line, or -1 if it starts before the range. */
+    private long[] itemLineStarts = new long[16];
+    private int size;
+
+    /** Indices of OPEN items that are known to be on top of the real stack. */
+    private int[] open = new int[16];
+    private int openSize;
+    /** Number of times each tag id occurs among the known open tags. */
+    private int[] openCount = new int[16];
+
+    /**
+     * Creates an empty summary of the range starting at the given offset.
+     *
+     * @param symbols table interning tag names, shared by all ranges
+     * @param start offset of the first byte of the range
+     */
+    public ChunkSummary(SymbolTable symbols, long start) {
+        this.symbols = symbols;
+        this.start = start;
+        this.end = start;
+        this.lastLineStart = start == 0 ? 0 : -1;
+    }
+
+    /**
+     * Collects opening and closing tags from a tokenizer scanning the range.
+     *
+     * @param tokenizer the tokenizer positioned on the token
+     */
+    @Override
+    public void token(XMLTokenizer tokenizer) {
+        int type = tokenizer.tokenType();
+        if (type == XMLTokenizer.START_TAG) {
+            tags++;
+            if (++depth > peakDepth) {
+                peakDepth = depth;
+            }
+            open(tokenizer.nameId(symbols), tokenizer.lineNumber() - 1);
+        } else if (type == XMLTokenizer.EMPTY_TAG) {
+            tags++;
+        } else if (type == XMLTokenizer.END_TAG) {
+            tags++;
+            depth--;
+            long offset = start + tokenizer.byteOffset();
+            // The first line of a range may have started in an earlier range
+            long lineStart = tokenizer.lineNumber() > 1 || start == 0 ? offset - tokenizer.column() + 1 : -1;
+            close(tokenizer.nameId(symbols), tokenizer.lineNumber() - 1, offset, lineStart);
+        }
+    }
+
+    /**
+     * Marks the end of the scanned range.
+     *
+     * @param end offset one past the last byte scanned
+     * @param lines number of line breaks in the range
+     * @param lastLineStart offset of the first byte of the last line, or -1
+     *                      if the range has no line break and does not start
+     *                      the document
+     */
+    public void complete(long end, int lines, long lastLineStart) {
+        this.end = end;
+        this.lines = lines;
+        this.lastLineStart = lastLineStart;
+    }
+
+    /**
+     * Returns the offset of the first byte of the range.
+     *
+     * @return range start
+     */
+    public long start() {
+        return start;
+    }
+
+    /**
+     * Returns the offset one past the last byte of the range.
+     *
+     * @return range end
+     */
+    public long end() {
+        return end;
+    }
+
+    /**
+     * Appends the summary of the range immediately following this one.
+     *
+     * @param right summary of the adjacent range to the right
+     * @return this summary, now covering both ranges
+     * @throws IllegalArgumentException if the ranges are not adjacent
+     */
+    public ChunkSummary combine(ChunkSummary right) {
+        if (right.start != end) {
+            throw new IllegalArgumentException("Ranges are not adjacent: " + end + " and " + right.start);
+        }
+        int shift = lines;
+        for (int i = 0; i < right.size; i++) {
+            int line = right.itemLines[i] + shift;
+            long lineStart = right.itemLineStarts[i] >= 0 ? right.itemLineStarts[i] : lastLineStart;
+            switch (right.kinds[i]) {
+                case OPEN:
+                    open(right.ids[i], line);
+                    break;
+                case CLOSE:
+                    close(right.ids[i], line, right.itemOffsets[i], lineStart);
+                    break;
+                case UNCLOSED:
+                    add(UNCLOSED, right.ids[i], line, right.itemOffsets[i], lineStart);
+                    break;
+                default:
+                    break;
+            }
+        }
+        end = right.end;
+        lines += right.lines;
+        tags += right.tags;
+        peakDepth = Math.max(peakDepth, depth + right.peakDepth);
+        depth += right.depth;
+        if (right.lastLineStart >= 0) {
+            lastLineStart = right.lastLineStart;
+        }
+        return this;
+    }
+
+    /**
+     * Replays the summary into a validator, as if the validator had scanned
+     * the range itself from an empty stack. The summary must cover the
+     * document from its first byte. The validator's peak depth counts
+     * every opening and closing tag, which is exact for a well-formed
+     * document but not when mismatches unwind several tags at once.
+     *
+     * @param validator receiver of the remaining tags and errors
+     */
+    public void replay(TagValidator validator) {
+        validator.addScanned(tags, peakDepth);
+        for (int i = 0; i < size; i++) {
+            int line = itemLines[i] + 1;
+            int column = (int) (itemOffsets[i] - itemLineStarts[i] + 1);
+            switch (kinds[i]) {
+                case OPEN:
+                    validator.open(ids[i]);
+                    break;
+                case CLOSE:
+                    validator.close(ids[i], line, column, itemOffsets[i]);
+                    break;
+                case UNCLOSED:
+                    validator.unclosed(ids[i], line, column, itemOffsets[i]);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Records an opening tag.
+     */
+    private void open(int id, int line) {
+        if (openSize == open.length) {
+            open = Arrays.copyOf(open, openSize * 2);
+        }
+        add(OPEN, id, line, 0, 0);
+        open[openSize++] = size - 1;
+        if (id >= openCount.length) {
+            openCount = Arrays.copyOf(openCount, Math.max(id + 1, openCount.length * 2));
+        }
+        openCount[id]++;
+    }
+
+    /**
+     * Resolves a closing tag against the known open tags, or keeps it for
+     * the combine step if the tag is not open within the range.
+     */
+    private void close(int id, int line, long offset, long lineStart) {
+        if (id >= openCount.length || openCount[id] == 0) {
+            // The outcome depends on tags opened before the range, and after
+            // it the open tags recorded so far are no longer known to be on top
+            add(CLOSE, id, line, offset, lineStart);
+            while (openSize > 0) {
+                openCount[ids[open[--openSize]]]--;
+            }
+            return;
+        }
+        while (ids[open[openSize - 1]] != id) {
+            int index = open[--openSize];
+            openCount[ids[index]]--;
+            kinds[index] = REMOVED;
+            add(UNCLOSED, ids[index], line, offset, lineStart);
+        }
+        int index = open[--openSize];
+        openCount[id]--;
+        kinds[index] = REMOVED;
+    }
+
+    /**
+     * Appends an item, growing the arrays when full.
+     */
+    private void add(byte kind, int id, int line, long offset, long lineStart) {
+        if (size == kinds.length) {
+            compact();
+            if (size * 2 > kinds.length) {
+                kinds = Arrays.copyOf(kinds, kinds.length * 2);
+                ids = Arrays.copyOf(ids, ids.length * 2);
+                itemLines = Arrays.copyOf(itemLines, itemLines.length * 2);
+                itemOffsets = Arrays.copyOf(itemOffsets, itemOffsets.length * 2);
+                itemLineStarts = Arrays.copyOf(itemLineStarts, itemLineStarts.length * 2);
+            }
+        }
+        kinds[size] = kind;
+        ids[size] = id;
+        itemLines[size] = line;
+        itemOffsets[size] = offset;
+        itemLineStarts[size] = lineStart;
+        size++;
+    }
+
+    /**
+     * Drops removed items and renumbers the open tag indices.
+     */
+    private void compact() {
+        int w = 0;
+        int o = 0;
+        for (int r = 0; r < size; r++) {
+            if (kinds[r] == REMOVED) {
+                continue;
+            }
+            if (o < openSize && open[o] == r) {
+                open[o++] = w;
+            }
+            kinds[w] = kinds[r];
+            ids[w] = ids[r];
+            itemLines[w] = itemLines[r];
+            itemOffsets[w] = itemOffsets[r];
+            itemLineStarts[w] = itemLineStarts[r];
+            w++;
+        }
+        size = w;
+    }
+}
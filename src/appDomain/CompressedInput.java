@@ -0,0 +1,90 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Recognises compressed input by its magic bytes and decompresses it as a
+ * stream. A gzip stream (including several concatenated members, as
+ * written by {@code cat a.gz b.gz}) is inflated on a background thread into
+ * a {@link ReadAheadInputStream}, so inflating and scanning overlap.
+ * Zstandard frames are recognised and reported, as the JDK has no decoder
+ * for them.
+ */
+public final class CompressedInput {
+    /** Number of bytes needed to recognise a format. */
+    static final int MAGIC_SIZE = 4;
+
+    private CompressedInput() {
+    }
+
+    /**
+     * Returns true if the file starts with a compression format's magic
+     * bytes.
+     *
+     * @param file the file to examine
+     * @return true if the file is compressed
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isCompressed(Path file) throws IOException {
+        byte[] magic = new byte[MAGIC_SIZE];
+        int len = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while (len < magic.length && (n = in.read(magic, len, magic.length - len)) != -1) {
+                len += n;
+            }
+        }
+        return isGzip(magic, len) || isZstd(magic, len);
+    }
+
+    /**
+     * Wraps a stream so that compressed data is decompressed as it is
+     * read; uncompressed data is passed through unchanged. Closing the
+     * returned stream closes the source.
+     *
+     * @param in the raw stream
+     * @return a stream of the decompressed bytes
+     * @throws UnsupportedEncodingException if the stream is compressed in an
+     *                                      unsupported format
+     * @throws IOException if the stream cannot be read
+     */
+    public static InputStream decompress(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, MAGIC_SIZE);
+        byte[] magic = new byte[MAGIC_SIZE];
+        int len = 0;
+        int n;
+        while (len < magic.length && (n = pushback.read(magic, len, magic.length - len)) != -1) {
+            len += n;
+        }
+        pushback.unread(magic, 0, len);
+        if (isZstd(magic, len)) {
+            pushback.close();
+            throw new UnsupportedEncodingException("Zstandard-compressed input is not supported; decompress it with zstd -dc");
+        }
+        if (isGzip(magic, len)) {
+            return new ReadAheadInputStream(new GZIPInputStream(pushback, ReadAheadInputStream.DEFAULT_BUFFER_SIZE));
+        }
+        return pushback;
+    }
+
+    /**
+     * Returns true for the gzip magic bytes 1f 8b.
+     */
+    private static boolean isGzip(byte[] magic, int len) {
+        return len >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B;
+    }
+
+    /**
+     * Returns true for the Zstandard frame magic 28 b5 2f fd.
+     */
+    private static boolean isZstd(byte[] magic, int len) {
+        return len >= 4 && (magic[0] & 0xFF) == 0x28 && (magic[1] & 0xFF) == 0xB5
+                && (magic[2] & 0xFF) == 0x2F && (magic[3] & 0xFF) == 0xFD;
+    }
+}
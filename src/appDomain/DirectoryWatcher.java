@@ -0,0 +1,312 @@
+package appDomain;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches directories and validates every XML file created or changed in
+ * them, printing each report as soon as it is ready. One long-lived JVM
+ * answers every arrival, so small files are validated by warm, compiled
+ * code instead of paying for a JVM start each.
+ * <p>
+ * A file is validated once no change to it has been seen for the debounce
+ * delay, so a file being written in several steps is read once, complete.
+ * A file changed again while it is being validated is validated again
+ * afterwards. Subdirectories are watched too, including ones created later.
+ * With a result cache, the cache is saved whenever the last validation
+ * running ends, as the watcher only stops when the JVM does.
+ */
+public class DirectoryWatcher implements Closeable {
+    /** Quiet time after the last change before a file is validated. */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 100;
+
+    private final ParserOptions options;
+    private final PrintStream out;
+    private final long debounceNanos;
+    private final WatchService watcher;
+    private final ExecutorService executor;
+    /** Watched directory of every key. */
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    /** Changed files and the time they become due; used by the watching thread only. */
+    private final Map<Path, Long> pending = new HashMap<>();
+    /** Files being validated. */
+    private final Set<Path> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * Creates a watcher printing classic reports.
+     *
+     * @param out destination of the reports
+     * @param threads number of files validated at once
+     * @param debounceMillis quiet time after the last change to a file
+     * @throws IOException if the file system cannot be watched
+     */
+    public DirectoryWatcher(PrintStream out, int threads, long debounceMillis) throws IOException {
+        this(defaults(threads, debounceMillis), out);
+    }
+
+    /**
+     * Creates a watcher validating files as the options specify.
+     *
+     * @param options reading, report and pool settings
+     * @param out destination of the reports
+     * @throws IOException if the file system cannot be watched
+     */
+    DirectoryWatcher(ParserOptions options, PrintStream out) throws IOException {
+        this.options = options;
+        this.out = out;
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(options.debounceMillis);
+        this.watcher = FileSystems.getDefault().newWatchService();
+        int threads = options.threads > 0 ? options.threads : Runtime.getRuntime().availableProcessors();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "watch-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns options for the public constructor.
+     */
+    private static ParserOptions defaults(int threads, long debounceMillis) {
+        if (threads <= 0 || debounceMillis < 0) {
+            throw new IllegalArgumentException("Threads must be positive and the debounce delay not negative");
+        }
+        ParserOptions options = new ParserOptions();
+        options.threads = threads;
+        options.debounceMillis = debounceMillis;
+        return options;
+    }
+
+    /**
+     * Starts watching a directory and every directory below it. Files
+     * already there are not validated.
+     *
+     * @param dir the directory
+     * @throws IOException if a directory cannot be watched
+     */
+    public void watch(Path dir) throws IOException {
+        register(dir, false);
+    }
+
+    /**
+     * Registers a directory tree; files found in it are scheduled if asked,
+     * for directories created while watching, whose files may have been
+     * written before the directory was registered.
+     */
+    private void register(Path dir, boolean schedule) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            Iterator<Path> paths = walk.iterator();
+            while (paths.hasNext()) {
+                Path path = paths.next();
+                if (Files.isDirectory(path)) {
+                    WatchKey key = path.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                    directories.put(key, path);
+                } else if (schedule && isXml(path)) {
+                    changed(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Watches until {@link #close()} is called, handing files to the
+     * workers as they become due.
+     *
+     * @throws IOException if a new directory cannot be watched
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public void run() throws IOException, InterruptedException {
+        try {
+            while (!closed) {
+                WatchKey key;
+                long next = nextDue();
+                if (next == Long.MAX_VALUE) {
+                    key = watcher.take();
+                } else {
+                    key = watcher.poll(Math.max(0, next - System.nanoTime()), TimeUnit.NANOSECONDS);
+                }
+                if (key != null) {
+                    events(key);
+                }
+                dispatch();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed while waiting
+        }
+    }
+
+    /**
+     * Records the files changed in one directory and watches new
+     * subdirectories.
+     */
+    private void events(WatchKey key) throws IOException {
+        Path dir = directories.get(key);
+        if (dir == null) {
+            // A stale key, such as one returned again after it stopped being
+            // valid: its directory is no longer watched
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                System.err.println("Warning: file system events were lost in " + dir);
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (Files.isDirectory(path)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    try {
+                        register(path, true);
+                    } catch (NoSuchFileException e) {
+                        // removed again already
+                    }
+                }
+            } else if (isXml(path)) {
+                changed(path);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    /**
+     * Makes a file due once the debounce delay passes without further change.
+     */
+    private void changed(Path file) {
+        pending.put(file, System.nanoTime() + debounceNanos);
+    }
+
+    /**
+     * Returns the time the next file becomes due, or Long.MAX_VALUE.
+     */
+    private long nextDue() {
+        long next = Long.MAX_VALUE;
+        for (long due : pending.values()) {
+            next = Math.min(next, due);
+        }
+        return next;
+    }
+
+    /**
+     * Hands the files that are due to the workers. A file still being
+     * validated waits for another delay.
+     */
+    private void dispatch() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Long>> due = pending.entrySet().iterator();
+        while (due.hasNext()) {
+            Map.Entry<Path, Long> entry = due.next();
+            if (entry.getValue() - now > 0) {
+                continue;
+            }
+            Path file = entry.getKey();
+            if (!running.add(file)) {
+                entry.setValue(now + debounceNanos);
+                continue;
+            }
+            due.remove();
+            executor.execute(() -> {
+                try {
+                    validate(file);
+                } finally {
+                    running.remove(file);
+                    if (running.isEmpty()) {
+                        saveCache();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Validates one file and prints its report as a whole, headed by the
+     * file's path unless the records are JSON. A file that cannot be read,
+     * or whose validation fails, gets an error line instead of the rest of
+     * its report.
+     */
+    private void validate(Path file) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            PrintStream report = new PrintStream(bytes, false, "UTF-8");
+            try {
+                XMLParser.validate(file.toString(), options, report);
+            } catch (NoSuchFileException e) {
+                // deleted before it could be read, such as a temporary file
+                return;
+            } catch (IOException e) {
+                report.println("Error: " + e.getMessage());
+            } catch (UncheckedIOException e) {
+                if (e.getCause() instanceof NoSuchFileException) {
+                    return;
+                }
+                report.println("Error: " + e.getCause().getMessage());
+            } catch (RuntimeException e) {
+                report.println("Error: " + e);
+            }
+            report.flush();
+        } catch (IOException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+        synchronized (out) {
+            if (options.format == ParserOptions.FORMAT_TEXT) {
+                out.println("== " + file);
+            }
+            out.write(bytes.toByteArray(), 0, bytes.size());
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes the result cache back to its file, if one is used. Saves do
+     * not overlap; one that finds nothing changed since the last returns
+     * at once.
+     */
+    private synchronized void saveCache() {
+        XMLParser.saveCache(options, System.err);
+    }
+
+    /**
+     * Returns true for the files validated: *.xml in any letter case.
+     */
+    private static boolean isXml(Path path) {
+        return path.getFileName().toString().toLowerCase().endsWith(".xml");
+    }
+
+    /**
+     * Stops watching. Validations already started are finished in the
+     * background.
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watcher.close();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,72 @@
+package appDomain;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Error sink that keeps every error until the end of the document and then
+ * prints the unclosed tags followed by the unexpected closing tags. This is
+ * the classic report; its memory grows with the number of errors.
+ */
+public class ErrorBuffer implements ErrorSink {
+    private final SymbolTable symbols;
+    private final Records errors = new Records();
+    private final Records extras = new Records();
+
+    /**
+     * Creates an empty buffer.
+     *
+     * @param symbols table the error ids refer to
+     */
+    public ErrorBuffer(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    @Override
+    public void unclosed(int id, int line, int column, long offset) {
+        errors.add(id, line);
+    }
+
+    @Override
+    public void unexpected(int id, int line, int column, long offset) {
+        extras.add(id, line);
+    }
+
+    /**
+     * Prints the collected errors, or a success message if there are none.
+     *
+     * @param out destination of the report
+     */
+    @Override
+    public void finish(PrintStream out) {
+        if (errors.size == 0 && extras.size == 0) {
+            out.println(TagValidator.SUCCESS);
+            return;
+        }
+        for (int i = 0; i < errors.size; i++) {
+            out.println(TagValidator.formatUnclosed(symbols.name(errors.ids[i]), errors.lines[i]));
+        }
+        for (int i = 0; i < extras.size; i++) {
+            out.println(TagValidator.formatUnexpected(symbols.name(extras.ids[i]), extras.lines[i]));
+        }
+    }
+
+    /**
+     * Growable list of error records held as parallel int arrays.
+     */
+    private static final class Records {
+        int[] ids = new int[16];
+        int[] lines = new int[16];
+        int size;
+
+        void add(int id, int line) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                lines = Arrays.copyOf(lines, size * 2);
+            }
+            ids[size] = id;
+            lines[size] = line;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Receives the errors found by a {@link TagValidator} as they are found.
+ * Errors come in two groups, printed in this order by the classic report:
+ * opening tags that were never closed, and closing tags that match no open
+ * tag.
+ */
+public interface ErrorSink {
+    /**
+     * Records an opening tag that was never closed. The position is that of
+     * the closing tag that unwound it.
+     *
+     * @param id the tag's symbol id
+     * @param line the line of the closing tag that unwound it, or
+     *             {@link TagValidator#EOF_LINE} at the end of the document
+     * @param column the 1-based byte column of that closing tag, or 0 at EOF
+     * @param offset the byte offset of that closing tag, or -1 at EOF
+     */
+    void unclosed(int id, int line, int column, long offset);
+
+    /**
+     * Records a closing tag that matches no open tag.
+     *
+     * @param id the tag's symbol id
+     * @param line the line the closing tag is on
+     * @param column the 1-based byte column of the closing tag
+     * @param offset the byte offset of the closing tag
+     */
+    void unexpected(int id, int line, int column, long offset);
+
+    /**
+     * Completes the report after the last error: prints whatever is still
+     * held back, or the success message if there were no errors at all.
+     *
+     * @param out destination of the report
+     * @throws IOException if held back errors cannot be read back
+     */
+    void finish(PrintStream out) throws IOException;
+}
@@ -0,0 +1,235 @@
+package appDomain;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events around the phases of a validation: opening a
+ * file, filling a buffer, scanning a chunk, recovering from a mismatched
+ * closing tag and flushing the report. They show where the time of a slow
+ * file goes, next to the JVM's own I/O, GC and allocation events.
+ * <p>
+ * The sources target Java 8, where the jdk.jfr API cannot be compiled
+ * against, so the event types are defined at run time through
+ * {@code jdk.jfr.EventFactory} and driven by reflection. Nothing is loaded
+ * until {@link #start(Path)} is called: with recording off every phase
+ * costs one read of a static flag. Events are named
+ * {@code appDomain.FileOpen}, {@code appDomain.BufferFill},
+ * {@code appDomain.ChunkScan}, {@code appDomain.Recovery} and
+ * {@code appDomain.ReportFlush}.
+ */
+final class FlightEvents {
+    /** A file being opened and its encoding sniffed; field: path. */
+    static final int FILE_OPEN = 0;
+    /** A read or mapping of the next buffer; field: bytes. */
+    static final int BUFFER_FILL = 1;
+    /** A buffer or parallel range being scanned; fields: offset, bytes. */
+    static final int CHUNK_SCAN = 2;
+    /** Open tags popped as unclosed by a closing tag; fields: popped, line. */
+    static final int RECOVERY = 3;
+    /** The report being completed and written out; field: errors. */
+    static final int REPORT_FLUSH = 4;
+
+    private static final String[] NAMES = { "FileOpen", "BufferFill", "ChunkScan", "Recovery", "ReportFlush" };
+    private static final String[] LABELS = { "File Open", "Buffer Fill", "Chunk Scan", "Recovery", "Report Flush" };
+    private static final String[][] FIELDS = { { "path" }, { "bytes" }, { "offset", "bytes" }, { "popped", "line" },
+            { "errors" } };
+    private static final Class<?>[][] TYPES = { { String.class }, { long.class }, { long.class, long.class },
+            { int.class, int.class }, { long.class } };
+
+    /** True while a recording runs; set before any worker thread starts. */
+    private static volatile boolean enabled;
+    private static Object[] factories;
+    private static Method newEvent;
+    private static Method begin;
+    private static Method set;
+    private static Method commit;
+    private static Object recording;
+
+    private FlightEvents() {
+    }
+
+    /**
+     * Defines the event types and starts a recording of them, written to
+     * the given file when {@link #stop()} is called.
+     *
+     * @param destination the .jfr file to write
+     * @throws IOException if this JVM has no flight recorder or the
+     *                     recording cannot be started
+     */
+    static synchronized void start(Path destination) throws IOException {
+        if (enabled) {
+            return;
+        }
+        try {
+            Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+            Constructor<?> annotation = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class);
+            Constructor<?> field = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class);
+            Class<? extends Annotation> name = Class.forName("jdk.jfr.Name").asSubclass(Annotation.class);
+            Class<? extends Annotation> label = Class.forName("jdk.jfr.Label").asSubclass(Annotation.class);
+            Class<? extends Annotation> category = Class.forName("jdk.jfr.Category").asSubclass(Annotation.class);
+            Method create = factoryClass.getMethod("create", List.class, List.class);
+
+            Object[] created = new Object[NAMES.length];
+            for (int i = 0; i < NAMES.length; i++) {
+                List<Object> annotations = Arrays.asList(
+                        annotation.newInstance(name, "appDomain." + NAMES[i]),
+                        annotation.newInstance(label, LABELS[i]),
+                        annotation.newInstance(category, new String[] { "XML Parser" }));
+                List<Object> fields = new ArrayList<>();
+                for (int j = 0; j < FIELDS[i].length; j++) {
+                    fields.add(field.newInstance(TYPES[i][j], FIELDS[i][j]));
+                }
+                created[i] = create.invoke(null, annotations, fields);
+            }
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            newEvent = factoryClass.getMethod("newEvent");
+            begin = eventClass.getMethod("begin");
+            set = eventClass.getMethod("set", int.class, Object.class);
+            commit = eventClass.getMethod("commit");
+
+            Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+            Object newRecording = recordingClass.getConstructor().newInstance();
+            Method enable = recordingClass.getMethod("enable", String.class);
+            Class<?> settingsClass = Class.forName("jdk.jfr.EventSettings");
+            Method withoutThreshold = settingsClass.getMethod("withoutThreshold");
+            Method withoutStackTrace = settingsClass.getMethod("withoutStackTrace");
+            for (String eventName : NAMES) {
+                Object settings = enable.invoke(newRecording, "appDomain." + eventName);
+                withoutThreshold.invoke(settings);
+                // The event type already names the phase; stacks would only show the reflection
+                withoutStackTrace.invoke(settings);
+            }
+            recordingClass.getMethod("setDestination", Path.class).invoke(newRecording, destination);
+            // Written at exit too, for the validation service that never stops it
+            recordingClass.getMethod("setDumpOnExit", boolean.class).invoke(newRecording, true);
+            recordingClass.getMethod("start").invoke(newRecording);
+            factories = created;
+            recording = newRecording;
+            enabled = true;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IOException("Flight recording is not available: " + cause, cause);
+        }
+    }
+
+    /**
+     * Stops the recording and writes it to its file. Does nothing if no
+     * recording is running.
+     *
+     * @throws IOException if the recording cannot be written
+     */
+    static synchronized void stop() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        try {
+            recording.getClass().getMethod("stop").invoke(recording);
+            recording.getClass().getMethod("close").invoke(recording);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Flight recording could not be written: " + e.getCause(), e);
+        } finally {
+            recording = null;
+        }
+    }
+
+    /**
+     * Returns true while a recording is running.
+     *
+     * @return true if events are recorded
+     */
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @param type one of the event type constants
+     * @return the event to pass to commit, or null when not recording
+     */
+    static Object begin(int type) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            Object event = newEvent.invoke(factories[type]);
+            begin.invoke(event);
+            return event;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ends a phase with one numeric field.
+     *
+     * @param event the event returned by begin, or null
+     * @param value the event's field
+     */
+    static void commit(Object event, long value) {
+        if (event != null) {
+            commit(event, (Object) value, null);
+        }
+    }
+
+    /**
+     * Ends a phase with two numeric fields.
+     *
+     * @param event the event returned by begin, or null
+     * @param first the event's first field
+     * @param second the event's second field
+     */
+    static void commit(Object event, long first, long second) {
+        if (event != null) {
+            commit(event, (Object) first, (Object) second);
+        }
+    }
+
+    /**
+     * Ends a phase with two int fields.
+     *
+     * @param event the event returned by begin, or null
+     * @param first the event's first field
+     * @param second the event's second field
+     */
+    static void commit(Object event, int first, int second) {
+        if (event != null) {
+            commit(event, (Object) first, (Object) second);
+        }
+    }
+
+    /**
+     * Ends a phase with a text field.
+     *
+     * @param event the event returned by begin, or null
+     * @param value the event's field
+     */
+    static void commit(Object event, String value) {
+        if (event != null) {
+            commit(event, (Object) value, null);
+        }
+    }
+
+    /**
+     * Sets the fields of an event and commits it.
+     */
+    private static void commit(Object event, Object first, Object second) {
+        try {
+            set.invoke(event, 0, first);
+            if (second != null) {
+                set.invoke(event, 1, second);
+            }
+            commit.invoke(event);
+        } catch (ReflectiveOperationException e) {
+            // a lost event is not worth failing the validation for
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Validates a document that is edited and saved over and over, rescanning
+ * only around each edit.
+ * <p>
+ * While scanning, a checkpoint is recorded roughly every
+ * {@code interval} bytes at a point between tokens: the offset, the line
+ * and the tag stack. After an edit the scan resumes from the last
+ * checkpoint strictly before it, as whether a '&lt;' just before a
+ * checkpoint starts a tag can depend on the byte at the checkpoint. Past the edit, it stops at the shifted position of
+ * every old checkpoint; once the tag stack there matches the old one, the
+ * rest of the document must produce exactly what it produced before, so
+ * the old checkpoints and errors are kept with their lines and offsets
+ * shifted. A small edit thus costs time proportional to the edit and the
+ * checkpoint interval, not to the size of the document.
+ * <p>
+ * Errors are kept in the order they are found, each with the position of
+ * the closing tag that revealed it, and can be replayed into any
+ * {@link ErrorSink}.
+ */
+public class IncrementalValidator {
+    /** Default distance between checkpoints, in bytes. */
+    public static final int DEFAULT_INTERVAL = 64 * 1024;
+
+    private final SymbolTable symbols;
+    private final int interval;
+    private ByteBuffer document;
+    private long size;
+    private Checkpoints checkpoints;
+    private ErrorList errors;
+    private long lastScanned;
+
+    /**
+     * Creates an engine with checkpoints every {@link #DEFAULT_INTERVAL} bytes.
+     */
+    public IncrementalValidator() {
+        this(new SymbolTable(), DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Creates an engine with the given checkpoint interval.
+     *
+     * @param symbols table interning tag names
+     * @param interval distance between checkpoints, in bytes
+     */
+    public IncrementalValidator(SymbolTable symbols, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+        this.symbols = symbols;
+        this.interval = interval;
+    }
+
+    /**
+     * Validates a whole document, from its position to its limit, and
+     * records its checkpoints.
+     *
+     * @param document the document's bytes; not modified
+     */
+    public void validate(ByteBuffer document) {
+        this.document = document;
+        this.size = document.remaining();
+        checkpoints = new Checkpoints();
+        checkpoints.add(0, 1, 0, new int[0]);
+        errors = new ErrorList();
+        TagValidator validator = new TagValidator(symbols, errors);
+        scan(new XMLTokenizer(validator), validator, null);
+        lastScanned = size;
+    }
+
+    /**
+     * Revalidates the document after an edit that replaced
+     * {@code removed} bytes at {@code offset} with {@code inserted} new
+     * bytes. The report is then the same as that of {@link #validate} on
+     * the new document.
+     *
+     * @param document the edited document's bytes; not modified
+     * @param offset offset at which the edit starts
+     * @param removed number of bytes removed from the previous version
+     * @param inserted number of bytes inserted in their place
+     * @throws IllegalArgumentException if the edit does not fit the previous
+     *                                  version or the new document's size
+     * @throws IllegalStateException if no document has been validated yet
+     */
+    public void update(ByteBuffer document, long offset, long removed, long inserted) {
+        if (checkpoints == null) {
+            throw new IllegalStateException("No document has been validated");
+        }
+        if (offset < 0 || removed < 0 || inserted < 0 || offset + removed > size
+                || document.remaining() != size - removed + inserted) {
+            throw new IllegalArgumentException("Edit does not match the document: " + offset
+                    + " +" + inserted + " -" + removed + " on " + size + " bytes");
+        }
+        Checkpoints old = checkpoints;
+        // Strictly before: a checkpoint may sit right after a '<' that was
+        // taken as text because of the byte the edit starts at
+        int k = old.lastAtOrBefore(Math.max(0, offset - 1));
+        long resume = old.offsets[k];
+        checkpoints = old.prefix(k + 1);
+        ErrorList oldErrors = errors;
+        errors = oldErrors.before(resume);
+        this.document = document;
+        this.size = document.remaining();
+
+        TagValidator validator = new TagValidator(symbols, errors);
+        for (int id : old.stacks[k]) {
+            validator.open(id);
+        }
+        XMLTokenizer tokenizer = new XMLTokenizer(validator);
+        tokenizer.resume(resume, old.lines[k], old.lineStarts[k]);
+        Edit edit = new Edit(old, oldErrors, offset + removed, inserted - removed);
+        scan(tokenizer, validator, edit);
+        lastScanned = tokenizer.bytesConsumed() - resume;
+    }
+
+    /**
+     * Scans from the tokenizer's position, recording checkpoints, until the
+     * end of the document or until the state matches a checkpoint of the
+     * previous version past the edit.
+     */
+    private void scan(XMLTokenizer tokenizer, TagValidator validator, Edit edit) {
+        ByteBuffer window = document.duplicate();
+        int base = document.position();
+        long pos = tokenizer.bytesConsumed();
+        int j = edit == null ? 0 : edit.old.firstAtOrAfter(edit.oldEnd);
+        while (pos < size) {
+            long stop = Math.min(pos + interval, size);
+            if (edit != null) {
+                while (j < edit.old.count && edit.old.offsets[j] + edit.delta <= pos) {
+                    j++;
+                }
+                // Stop exactly where the next old checkpoint now is
+                if (j < edit.old.count && edit.old.offsets[j] + edit.delta < stop) {
+                    stop = edit.old.offsets[j] + edit.delta;
+                }
+            }
+            window.limit(base + (int) stop);
+            window.position(base + (int) pos);
+            tokenizer.feed(window);
+            if (!tokenizer.isBetweenTokens()) {
+                window.limit(base + (int) size);
+                tokenizer.feedToBoundary(window);
+            }
+            pos = tokenizer.bytesConsumed();
+            if (pos >= size) {
+                break;
+            }
+            if (edit != null) {
+                while (j < edit.old.count && edit.old.offsets[j] + edit.delta < pos) {
+                    j++;
+                }
+                if (j < edit.old.count && edit.old.offsets[j] + edit.delta == pos
+                        && validator.stackEquals(edit.old.stacks[j])) {
+                    converge(edit, j, tokenizer.currentLine(), tokenizer.currentLineStart());
+                    return;
+                }
+            }
+            checkpoints.add(pos, tokenizer.currentLine(), tokenizer.currentLineStart(), validator.stack());
+        }
+        tokenizer.finish();
+        validator.endOfInput();
+    }
+
+    /**
+     * Appends the old checkpoints and errors from old checkpoint j on,
+     * shifted to the new document.
+     */
+    private void converge(Edit edit, int j, int line, long lineStart) {
+        Checkpoints old = edit.old;
+        int lineDelta = line - old.lines[j];
+        long oldLineStart = old.lineStarts[j];
+        for (int i = j; i < old.count; i++) {
+            long start = old.lineStarts[i] == oldLineStart ? lineStart : old.lineStarts[i] + edit.delta;
+            checkpoints.add(old.offsets[i] + edit.delta, old.lines[i] + lineDelta, start, old.stacks[i]);
+        }
+        ErrorList from = edit.oldErrors;
+        for (int i = from.firstAtOrAfter(old.offsets[j]); i < from.size; i++) {
+            if (from.lines[i] == TagValidator.EOF_LINE) {
+                from.copyTo(errors, i, TagValidator.EOF_LINE, -1, 0);
+            } else {
+                long start = from.lineStarts[i] == oldLineStart ? lineStart : from.lineStarts[i] + edit.delta;
+                from.copyTo(errors, i, from.lines[i] + lineDelta, from.offsets[i] + edit.delta, start);
+            }
+        }
+    }
+
+    /**
+     * Replays the errors of the current version into a sink, in the order
+     * they were found, and completes its report.
+     *
+     * @param sink receiver of the errors
+     * @param out destination of the report
+     * @throws IOException if the sink fails to complete the report
+     */
+    public void report(ErrorSink sink, PrintStream out) throws IOException {
+        for (int i = 0; i < errors.size; i++) {
+            int column = errors.lines[i] == TagValidator.EOF_LINE ? 0 : (int) (errors.offsets[i] - errors.lineStarts[i] + 1);
+            if (errors.unexpected[i]) {
+                sink.unexpected(errors.ids[i], errors.lines[i], column, errors.offsets[i]);
+            } else {
+                sink.unclosed(errors.ids[i], errors.lines[i], column, errors.offsets[i]);
+            }
+        }
+        sink.finish(out);
+    }
+
+    /**
+     * Prints the classic report of the current version.
+     *
+     * @param out destination of the report
+     * @throws IOException if the report cannot be written
+     */
+    public void report(PrintStream out) throws IOException {
+        report(new ErrorBuffer(symbols), out);
+    }
+
+    /**
+     * Returns true if the current version has no errors.
+     *
+     * @return true if the document is constructed correctly
+     */
+    public boolean isValid() {
+        return errors.size == 0;
+    }
+
+    /**
+     * Returns the number of errors in the current version.
+     *
+     * @return error count
+     */
+    public int errorCount() {
+        return errors.size;
+    }
+
+    /**
+     * Returns the number of checkpoints recorded for the current version.
+     *
+     * @return checkpoint count, at least 1
+     */
+    public int checkpointCount() {
+        return checkpoints.count;
+    }
+
+    /**
+     * Returns the number of bytes scanned by the last validation or update.
+     *
+     * @return bytes scanned
+     */
+    public long lastScanned() {
+        return lastScanned;
+    }
+
+    /**
+     * What an update needs to know about the previous version.
+     */
+    private static final class Edit {
+        final Checkpoints old;
+        final ErrorList oldErrors;
+        /** End of the edit in the previous version. */
+        final long oldEnd;
+        /** Change in document size. */
+        final long delta;
+
+        Edit(Checkpoints old, ErrorList oldErrors, long oldEnd, long delta) {
+            this.old = old;
+            this.oldErrors = oldErrors;
+            this.oldEnd = oldEnd;
+            this.delta = delta;
+        }
+    }
+
+    /**
+     * Checkpoints in offset order, held as parallel arrays. Consecutive
+     * checkpoints with the same stack share one array.
+     */
+    private static final class Checkpoints {
+        long[] offsets = new long[16];
+        int[] lines = new int[16];
+        long[] lineStarts = new long[16];
+        int[][] stacks = new int[16][];
+        int count;
+
+        void add(long offset, int line, long lineStart, int[] stack) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lines = Arrays.copyOf(lines, count * 2);
+                lineStarts = Arrays.copyOf(lineStarts, count * 2);
+                stacks = Arrays.copyOf(stacks, count * 2);
+            }
+            if (count > 0 && Arrays.equals(stacks[count - 1], stack)) {
+                stack = stacks[count - 1];
+            }
+            offsets[count] = offset;
+            lines[count] = line;
+            lineStarts[count] = lineStart;
+            stacks[count] = stack;
+            count++;
+        }
+
+        /** Returns a copy of the first n checkpoints. */
+        Checkpoints prefix(int n) {
+            Checkpoints copy = new Checkpoints();
+            for (int i = 0; i < n; i++) {
+                copy.add(offsets[i], lines[i], lineStarts[i], stacks[i]);
+            }
+            return copy;
+        }
+
+        /** Returns the index of the last checkpoint at or before the offset. */
+        int lastAtOrBefore(long offset) {
+            int i = Arrays.binarySearch(offsets, 0, count, offset);
+            return i >= 0 ? i : -i - 2;
+        }
+
+        /** Returns the index of the first checkpoint at or after the offset. */
+        int firstAtOrAfter(long offset) {
+            int i = Arrays.binarySearch(offsets, 0, count, offset);
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+
+    /**
+     * Errors in the order they were found, held as parallel arrays; an error
+     * found at a closing tag keeps that tag's offset and line start, one
+     * found at the end of the document has {@link TagValidator#EOF_LINE}.
+     */
+    private static final class ErrorList implements ErrorSink {
+        boolean[] unexpected = new boolean[16];
+        int[] ids = new int[16];
+        int[] lines = new int[16];
+        long[] offsets = new long[16];
+        long[] lineStarts = new long[16];
+        int size;
+
+        @Override
+        public void unclosed(int id, int line, int column, long offset) {
+            add(false, id, line, offset, offset - column + 1);
+        }
+
+        @Override
+        public void unexpected(int id, int line, int column, long offset) {
+            add(true, id, line, offset, offset - column + 1);
+        }
+
+        @Override
+        public void finish(PrintStream out) {
+        }
+
+        void add(boolean isUnexpected, int id, int line, long offset, long lineStart) {
+            if (size == ids.length) {
+                unexpected = Arrays.copyOf(unexpected, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+                lines = Arrays.copyOf(lines, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lineStarts = Arrays.copyOf(lineStarts, size * 2);
+            }
+            unexpected[size] = isUnexpected;
+            ids[size] = id;
+            lines[size] = line;
+            offsets[size] = offset;
+            lineStarts[size] = lineStart;
+            size++;
+        }
+
+        /** Appends error i of this list to another with a new position. */
+        void copyTo(ErrorList to, int i, int line, long offset, long lineStart) {
+            to.add(unexpected[i], ids[i], line, offset, lineStart);
+        }
+
+        /** Returns a copy of the errors found at closing tags before the offset. */
+        ErrorList before(long offset) {
+            ErrorList copy = new ErrorList();
+            int end = firstAtOrAfter(offset);
+            for (int i = 0; i < end; i++) {
+                copyTo(copy, i, lines[i], offsets[i], lineStarts[i]);
+            }
+            return copy;
+        }
+
+        /**
+         * Returns the index of the first error at or after the offset, or at
+         * EOF. Errors found at closing tags are in offset order and those
+         * found at EOF all come last.
+         */
+        int firstAtOrAfter(long offset) {
+            int lo = 0;
+            int hi = size;
+            while (hi > 0 && lines[hi - 1] == TagValidator.EOF_LINE) {
+                hi--;
+            }
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (offsets[mid] < offset) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
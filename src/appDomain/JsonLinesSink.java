@@ -0,0 +1,186 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Error sink writing one JSON object per line for every error, in the order
+ * the errors are found:
+ * <pre>
+ * {"file":"a.xml","kind":"unexpected","tag":"i","line":8,"column":5,"offset":172}
+ * </pre>
+ * {@code kind} is {@code unclosed} or {@code unexpected}; the position is
+ * that of the closing tag at which the error was found, and is
+ * {@code null} for tags still open at the end of the document. Columns and
+ * offsets count bytes. A valid document produces no records.
+ * <p>
+ * Records are encoded straight into a reused byte buffer, which is written
+ * to the channel only when full and at the end, so no String is built per
+ * error. A record longer than the buffer is written out in pieces.
+ */
+public class JsonLinesSink implements ErrorSink {
+    /** Size of the encoding buffer. */
+    static final int BUFFER_SIZE = 64 * 1024;
+    /** Room kept for one record's fixed fields and numbers. */
+    private static final int RECORD_SLACK = 128;
+    /** Longest encoding of one char, as {@code \\u00XX}, plus a closing quote. */
+    private static final int CHAR_SLACK = 7;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final SymbolTable symbols;
+    private final WritableByteChannel out;
+    private final ByteBuffer buf;
+    private final byte[] digits = new byte[20];
+    /** Encoded {@code {"file":"...",} prefix shared by every record. */
+    private final byte[] prefix;
+
+    /**
+     * Creates a sink writing records for the given file to a channel.
+     *
+     * @param symbols table the error ids refer to
+     * @param fileName file name written into every record
+     * @param out destination of the records
+     */
+    public JsonLinesSink(SymbolTable symbols, String fileName, WritableByteChannel out) {
+        this.symbols = symbols;
+        this.out = out;
+        // Room for the prefix with every char of the name escaped, so the
+        // prefix is never split across writes
+        buf = ByteBuffer.allocate(Math.max(BUFFER_SIZE, fileName.length() * 6 + 2 * RECORD_SLACK));
+        putAscii("{\"file\":");
+        putString(fileName);
+        buf.put((byte) ',');
+        prefix = new byte[buf.position()];
+        buf.flip();
+        buf.get(prefix);
+        buf.clear();
+    }
+
+    @Override
+    public void unclosed(int id, int line, int column, long offset) {
+        record("unclosed", id, line, column, offset);
+    }
+
+    @Override
+    public void unexpected(int id, int line, int column, long offset) {
+        record("unexpected", id, line, column, offset);
+    }
+
+    /**
+     * Writes out the buffered records.
+     *
+     * @param out ignored; records go to the channel given at construction
+     * @throws IOException if the channel cannot be written
+     */
+    @Override
+    public void finish(PrintStream out) throws IOException {
+        drain();
+    }
+
+    /**
+     * Encodes one record into the buffer.
+     */
+    private void record(String kind, int id, int line, int column, long offset) {
+        String tag = symbols.name(id);
+        room(prefix.length + RECORD_SLACK);
+        buf.put(prefix);
+        putAscii("\"kind\":\"");
+        putAscii(kind);
+        putAscii("\",\"tag\":");
+        putString(tag);
+        room(RECORD_SLACK);
+        if (line == TagValidator.EOF_LINE) {
+            putAscii(",\"line\":null,\"column\":null,\"offset\":null}\n");
+        } else {
+            putAscii(",\"line\":");
+            putLong(line);
+            putAscii(",\"column\":");
+            putLong(column);
+            putAscii(",\"offset\":");
+            putLong(offset);
+            putAscii("}\n");
+        }
+    }
+
+    /**
+     * Writes out the buffer if it has less room left than given.
+     */
+    private void room(int bytes) {
+        if (buf.remaining() < bytes) {
+            try {
+                drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffer to the channel and clears it.
+     */
+    private void drain() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * Appends a string known to be ASCII and free of characters to escape.
+     */
+    private void putAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            buf.put((byte) s.charAt(i));
+        }
+    }
+
+    /**
+     * Appends a decimal number.
+     */
+    private void putLong(long n) {
+        if (n < 0) {
+            buf.put((byte) '-');
+            n = -n;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + n % 10);
+            n /= 10;
+        } while (n != 0);
+        buf.put(digits, i, digits.length - i);
+    }
+
+    /**
+     * Appends a quoted JSON string, encoded as UTF-8 with quotes,
+     * backslashes and control characters escaped. A string longer than
+     * the buffer's room is written out in pieces.
+     */
+    private void putString(String s) {
+        buf.put((byte) '"');
+        for (int i = 0; i < s.length(); i++) {
+            room(CHAR_SLACK);
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                buf.put((byte) '\\').put((byte) c);
+            } else if (c < 0x20) {
+                buf.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                        .put(HEX[c >> 4]).put(HEX[c & 0xF]);
+            } else if (c < 0x80) {
+                buf.put((byte) c);
+            } else if (c < 0x800) {
+                buf.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                        .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+            } else {
+                buf.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        buf.put((byte) '"');
+    }
+}
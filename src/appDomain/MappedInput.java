@@ -0,0 +1,116 @@
+package appDomain;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Feeds a file to an {@link XMLTokenizer} through memory-mapped windows.
+ * The tokenizer scans the mapped bytes directly, so nothing is decoded or
+ * copied on the way and repeated validations of the same file are served
+ * from the OS page cache. Files larger than one window (a mapping is limited
+ * to 2 GB) are mapped one window at a time.
+ */
+public final class MappedInput {
+    /** Size of each mapped window. */
+    static final long WINDOW_SIZE = 1L << 30;
+
+    private MappedInput() {
+    }
+
+    /**
+     * Maps and tokenizes a whole file, then finishes the tokenizer.
+     *
+     * @param file the XML file
+     * @param tokenizer receiver of the file's bytes
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static void scan(Path file, XMLTokenizer tokenizer) throws IOException {
+        scan(file, tokenizer, WINDOW_SIZE);
+    }
+
+    /**
+     * Maps and tokenizes a whole file in windows of the given size, then
+     * finishes the tokenizer.
+     *
+     * @param windowSize size of each mapped window
+     */
+    static void scan(Path file, XMLTokenizer tokenizer, long windowSize) throws IOException {
+        scan(file, tokenizer, windowSize, null);
+    }
+
+    /**
+     * Maps and tokenizes a whole file, then finishes the tokenizer, hashing
+     * the bytes scanned for the result cache.
+     *
+     * @param hash receiver of every byte the tokenizer consumed, or null
+     */
+    static void scan(Path file, XMLTokenizer tokenizer, ResultCache.ContentHash hash) throws IOException {
+        scan(file, tokenizer, WINDOW_SIZE, hash);
+    }
+
+    /**
+     * Maps and tokenizes a whole file in windows of the given size, then
+     * finishes the tokenizer, hashing the bytes scanned.
+     */
+    static void scan(Path file, XMLTokenizer tokenizer, long windowSize, ResultCache.ContentHash hash)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            scan(channel, 0, channel.size(), tokenizer, windowSize, hash);
+        }
+        tokenizer.finish();
+    }
+
+    /**
+     * Maps and tokenizes the byte range [from, to) of an open channel.
+     * The tokenizer is not finished, so a range may be continued by another.
+     * No further window is mapped once the tokenizer has been stopped.
+     *
+     * @param channel an open, readable file channel
+     * @param from offset of the first byte to scan
+     * @param to offset one past the last byte to scan
+     * @param tokenizer receiver of the range's bytes
+     * @throws IOException if the range cannot be mapped
+     */
+    public static void scan(FileChannel channel, long from, long to, XMLTokenizer tokenizer) throws IOException {
+        scan(channel, from, to, tokenizer, WINDOW_SIZE);
+    }
+
+    /**
+     * Maps and tokenizes a byte range in windows of the given size.
+     *
+     * @param windowSize size of each mapped window
+     */
+    static void scan(FileChannel channel, long from, long to, XMLTokenizer tokenizer, long windowSize)
+            throws IOException {
+        scan(channel, from, to, tokenizer, windowSize, null);
+    }
+
+    /**
+     * Maps and tokenizes a byte range in windows of the given size. The
+     * bytes of each window up to where the tokenizer stopped, if it did,
+     * are given to the hash while the window is still mapped.
+     *
+     * @param hash receiver of every byte the tokenizer consumed, or null
+     */
+    private static void scan(FileChannel channel, long from, long to, XMLTokenizer tokenizer, long windowSize,
+            ResultCache.ContentHash hash) throws IOException {
+        if (windowSize < 1 || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Window size out of range: " + windowSize);
+        }
+        for (long pos = from; pos < to && !tokenizer.isStopped(); pos += windowSize) {
+            long length = Math.min(windowSize, to - pos);
+            Object fill = FlightEvents.begin(FlightEvents.BUFFER_FILL);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+            FlightEvents.commit(fill, length);
+            Object scan = FlightEvents.begin(FlightEvents.CHUNK_SCAN);
+            tokenizer.feed(window);
+            FlightEvents.commit(scan, pos, length);
+            if (hash != null) {
+                hash.update(window, 0, window.position());
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Validates one large file on several cores. The file is split into byte
+ * ranges that start at a '&lt;'; each range is reduced to a
+ * {@link ChunkSummary} and the summaries are combined in a fork/join tree.
+ * <p>
+ * A split point is only trusted if the scan of the range before it ends
+ * between tokens exactly there. If that range ends inside a comment, CDATA
+ * section or quoted value instead, it scans on to the end of that token and
+ * the range after it is scanned again from there, so the result is always
+ * identical to a sequential scan.
+ */
+public class ParallelValidator {
+    /** Smallest range handed to one task. */
+    static final long MIN_CHUNK_SIZE = 1L << 20;
+    /** Bytes mapped at a time when continuing past a range end. */
+    private static final int OVERRUN_WINDOW = 64 * 1024;
+
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+
+    /**
+     * Creates a validator running on the given pool with ranges of about
+     * the given size.
+     *
+     * @param pool pool running the range tasks
+     * @param chunkSize target size of one range in bytes
+     */
+    public ParallelValidator(ForkJoinPool pool, long chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Picks a range size giving every worker a few ranges to balance load.
+     *
+     * @param fileSize size of the file in bytes
+     * @param parallelism number of workers
+     * @return range size in bytes
+     */
+    static long chunkSizeFor(long fileSize, int parallelism) {
+        return Math.max(MIN_CHUNK_SIZE, fileSize / (parallelism * 4L) + 1);
+    }
+
+    /**
+     * Validates a file. The returned validator has reached end of input and
+     * is ready to report.
+     *
+     * @param file the XML file
+     * @return validator holding the file's errors
+     * @throws IOException if the file cannot be read
+     */
+    public TagValidator validate(Path file) throws IOException {
+        TagValidator validator = new TagValidator();
+        validate(file, validator);
+        return validator;
+    }
+
+    /**
+     * Validates a file into the given validator, which must not have seen
+     * any tags yet. On return the validator has reached end of input.
+     *
+     * @param file the XML file
+     * @param validator receiver of the file's errors
+     * @throws IOException if the file cannot be read
+     */
+    public void validate(Path file, TagValidator validator) throws IOException {
+        SymbolTable symbols = validator.symbols();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] splits = splitPoints(channel);
+            ChunkSummary summary;
+            try {
+                summary = pool.invoke(new RangeTask(channel, symbols, splits, 0, splits.length - 1));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            summary.replay(validator);
+        }
+        validator.endOfInput();
+    }
+
+    /**
+     * Finds the range boundaries: offset 0, the first '&lt;' starting a tag
+     * at or after every multiple of the chunk size, and the file size.
+     */
+    private long[] splitPoints(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int max = (int) Math.min(Integer.MAX_VALUE - 1, size / chunkSize + 1);
+        long[] splits = new long[max + 1];
+        int count = 0;
+        splits[count++] = 0;
+        ByteBuffer probe = ByteBuffer.allocate(OVERRUN_WINDOW);
+        for (long nominal = chunkSize; nominal < size; nominal += chunkSize) {
+            long split = nextTagStart(channel, Math.max(nominal, splits[count - 1] + 1), probe);
+            if (split < 0) {
+                break;
+            }
+            if (split > splits[count - 1]) {
+                splits[count++] = split;
+            }
+        }
+        splits[count++] = size;
+        long[] result = new long[count];
+        System.arraycopy(splits, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Returns the offset of the next '&lt;' followed by a name or '/', or -1.
+     */
+    private static long nextTagStart(FileChannel channel, long from, ByteBuffer probe) throws IOException {
+        long pos = from;
+        while (true) {
+            probe.clear();
+            int n = channel.read(probe, pos);
+            if (n < 2) {
+                return -1;
+            }
+            for (int i = 0; i < n - 1; i++) {
+                if (probe.get(i) == '<') {
+                    byte next = probe.get(i + 1);
+                    if (next == '/' || (next > ' ' && next != '!' && next != '?' && next != '<' && next != '>')) {
+                        return pos + i;
+                    }
+                }
+            }
+            pos += n - 1;
+        }
+    }
+
+    /**
+     * Scans one range, continuing past its end if it ends inside a token.
+     */
+    static ChunkSummary scanRange(FileChannel channel, SymbolTable symbols, long from, long to) throws IOException {
+        Object scan = FlightEvents.begin(FlightEvents.CHUNK_SCAN);
+        ChunkSummary summary = new ChunkSummary(symbols, from);
+        XMLTokenizer tokenizer = new XMLTokenizer(summary);
+        long end = Math.max(from, to);
+        MappedInput.scan(channel, from, end, tokenizer);
+        long size = channel.size();
+        while (end < size) {
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, end, Math.min(OVERRUN_WINDOW, size - end));
+            boolean reached = tokenizer.feedToBoundary(window);
+            end += window.position();
+            if (reached) {
+                break;
+            }
+        }
+        tokenizer.finish();
+        long lastLineStart = tokenizer.currentLine() > 1 || from == 0 ? from + tokenizer.currentLineStart() : -1;
+        summary.complete(end, tokenizer.currentLine() - 1, lastLineStart);
+        FlightEvents.commit(scan, from, end - from);
+        return summary;
+    }
+
+    /**
+     * Fork/join task summarising the ranges between two split indices. A
+     * finished task keeps its subtasks, so when the range before it ended
+     * past its first split point only its first range is scanned again;
+     * the summaries of the ranges after that one are reused.
+     */
+    private static final class RangeTask extends RecursiveTask<ChunkSummary> {
+        private static final long serialVersionUID = 1L;
+        private final FileChannel channel;
+        private final SymbolTable symbols;
+        private final long[] splits;
+        private final int lo;
+        private final int hi;
+        private RangeTask left;
+        private RangeTask right;
+        /**
+         * Summary of a right subtask, kept as it was joined. A left
+         * subtask's summary is extended by combine and so is not kept.
+         */
+        private ChunkSummary summary;
+
+        RangeTask(FileChannel channel, SymbolTable symbols, long[] splits, int lo, int hi) {
+            this.channel = channel;
+            this.symbols = symbols;
+            this.splits = splits;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected ChunkSummary compute() {
+            try {
+                if (hi - lo == 1) {
+                    summary = scanRange(channel, symbols, splits[lo], splits[hi]);
+                    return summary;
+                }
+                int mid = (lo + hi) >>> 1;
+                left = new RangeTask(channel, symbols, splits, lo, mid);
+                right = new RangeTask(channel, symbols, splits, mid, hi);
+                right.fork();
+                ChunkSummary leftSummary = left.compute();
+                ChunkSummary rightSummary = right.join();
+                if (leftSummary.end() != rightSummary.start()) {
+                    // The left range ended inside a token, so the right split
+                    // point was not a tag boundary: rescan from where it ended
+                    rightSummary = right.resume(leftSummary.end());
+                }
+                summary = rightSummary != null ? leftSummary.combine(rightSummary) : leftSummary;
+                return summary;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Summarises this task's ranges again from an offset past its first
+         * split point, where the scan before it ended. Only the range
+         * holding the offset is scanned; the ranges after it reuse the
+         * summaries of the right subtasks.
+         *
+         * @param from offset the scan before this task's ranges ended at
+         * @return the summary from that offset, or null if the scan before
+         *         ended past all of this task's ranges
+         */
+        private ChunkSummary resume(long from) throws IOException {
+            if (from >= splits[hi]) {
+                return null;
+            }
+            if (left == null) {
+                return scanRange(channel, symbols, from, splits[hi]);
+            }
+            long mid = splits[left.hi];
+            ChunkSummary head = from < mid ? left.resume(from) : null;
+            long next = head != null ? head.end() : from;
+            ChunkSummary tail = next == mid ? right.summary : right.resume(next);
+            if (head == null) {
+                return tail;
+            }
+            return tail != null ? head.combine(tail) : head;
+        }
+    }
+}
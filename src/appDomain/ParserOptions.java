@@ -0,0 +1,300 @@
+package appDomain;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line options accepted by {@link XMLParser}.
+ */
+class ParserOptions {
+    /** Usage text printed when the arguments cannot be parsed. */
+    static final String USAGE = "Usage: java XMLParser [options] <xml_file|directory>...\n"
+            + "       java XMLParser [options] -     (validate standard input)\n"
+            + "       java XMLParser --serve=PORT\n"
+            + "       java XMLParser --watch [options] <directory>...\n"
+            + "  --mmap               scan files through memory-mapped windows\n"
+            + "  --async              keep reads in flight while the scanner works\n"
+            + "  --parallel[=N]       validate each file on N cores\n"
+            + "  --pipeline           read, scan, match and report on four threads\n"
+            + "  --files-from=LIST    also validate the paths listed in LIST, one per line\n"
+            + "  --threads=N          validate up to N files at once (batch mode)\n"
+            + "  --virtual            run batch workers on virtual threads when available\n"
+            + "  --stream-errors[=ordered]  print errors as they are found; 'ordered' keeps\n"
+            + "                       the classic order using a bounded reorder buffer\n"
+            + "  --reorder-buffer=N   errors held in memory before spilling to disk (ordered)\n"
+            + "  --format=jsonl       print one JSON object per error instead of text\n"
+            + "  --max-errors=N       stop reading a file after its first N errors\n"
+            + "  --fail-fast          stop reading a file at its first error (--max-errors=1)\n"
+            + "  --serve=PORT         validate documents POSTed to http://localhost:PORT/validate\n"
+            + "  --jfr=FILE           record flight recorder events of the parse phases to FILE\n"
+            + "  --jmx                publish validation metrics as the JMX MXBean\n"
+            + "                       " + ValidationMetrics.OBJECT_NAME + "\n"
+            + "  --cache=FILE         skip files unchanged since their result was cached in FILE\n"
+            + "  --cache-size=N[k|m|g]  limit of the cached results (default 64m)\n"
+            + "  --watch              keep running and validate files created or changed in\n"
+            + "                       the given directories\n"
+            + "  --debounce=MS        quiet time after a change before validating (default "
+            + DirectoryWatcher.DEFAULT_DEBOUNCE_MILLIS + ")";
+
+    /** Input name standing for standard input. */
+    static final String STDIN = "-";
+    /** Errors are buffered and printed at the end. */
+    static final int STREAM_OFF = 0;
+    /** Errors are printed in the order they are found. */
+    static final int STREAM_UNORDERED = 1;
+    /** Errors are printed as found, with stray closing tags held back to the end. */
+    static final int STREAM_ORDERED = 2;
+    /** Errors are printed as English sentences. */
+    static final int FORMAT_TEXT = 0;
+    /** Errors are printed as JSON Lines records. */
+    static final int FORMAT_JSONL = 1;
+    /** Default size of the reorder buffer, in errors. */
+    static final int DEFAULT_REORDER_BUFFER = 64 * 1024;
+
+    /** Paths given on the command line: files, directories or {@link #STDIN}. */
+    List<String> inputs = new ArrayList<>();
+    /** Files listing further paths to validate. */
+    List<String> fileLists = new ArrayList<>();
+    /** Scan the file through memory-mapped windows instead of a stream. */
+    boolean mapped;
+    /** Read the file asynchronously into a ring of buffers instead of a stream. */
+    boolean async;
+    /** Number of cores validating the file in parallel, or 0 for a sequential scan. */
+    int parallelism;
+    /** Read, scan, match tags and report on separate threads. */
+    boolean pipeline;
+    /** Number of files validated at once in batch mode, or 0 for the default. */
+    int threads;
+    /** Run batch workers on virtual threads. */
+    boolean virtualThreads;
+    /** Port of the validation service, or -1 to validate files and exit. */
+    int servePort = -1;
+    /** How errors are written out: one of the STREAM_ constants. */
+    int streamErrors = STREAM_OFF;
+    /** Errors held in memory by the ordered streaming mode. */
+    int reorderBuffer = DEFAULT_REORDER_BUFFER;
+    /** Report format: one of the FORMAT_ constants. */
+    int format = FORMAT_TEXT;
+    /** Errors after which a file is no longer read, or 0 to read every file to the end. */
+    int maxErrors;
+    /** Publish the validation metrics over JMX. */
+    boolean jmx;
+    /** File to write a flight recording of the parse phases to, or null. */
+    String jfrFile;
+    /** File the results of earlier runs are cached in, or null. */
+    String cacheFile;
+    /** Limit of the size of the cached results, in bytes. */
+    long cacheSize = ResultCache.DEFAULT_MAX_BYTES;
+    /** Results loaded from {@link #cacheFile} by main, or null when not caching. */
+    ResultCache cache;
+    /** Keep watching the input directories for changed files. */
+    boolean watch;
+    /** Quiet time after the last change to a watched file, in milliseconds. */
+    long debounceMillis = DirectoryWatcher.DEFAULT_DEBOUNCE_MILLIS;
+
+    /**
+     * Parses the command line.
+     *
+     * @param args the arguments passed to main
+     * @return the parsed options
+     * @throws IllegalArgumentException if an option is unknown, conflicts
+     *         with another or no file is given
+     */
+    static ParserOptions parse(String[] args) {
+        ParserOptions options = new ParserOptions();
+        for (String arg : args) {
+            if (arg.equals("--mmap")) {
+                options.mapped = true;
+            } else if (arg.equals("--async")) {
+                options.async = true;
+            } else if (arg.equals("--parallel")) {
+                options.parallelism = Runtime.getRuntime().availableProcessors();
+            } else if (arg.startsWith("--parallel=")) {
+                options.parallelism = positive(arg, arg.substring("--parallel=".length()));
+            } else if (arg.equals("--pipeline")) {
+                options.pipeline = true;
+            } else if (arg.startsWith("--files-from=")) {
+                options.fileLists.add(arg.substring("--files-from=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                options.threads = positive(arg, arg.substring("--threads=".length()));
+            } else if (arg.equals("--virtual")) {
+                options.virtualThreads = true;
+            } else if (arg.startsWith("--serve=")) {
+                options.servePort = port(arg, arg.substring("--serve=".length()));
+            } else if (arg.equals("--stream-errors")) {
+                options.streamErrors = STREAM_UNORDERED;
+            } else if (arg.equals("--stream-errors=ordered")) {
+                options.streamErrors = STREAM_ORDERED;
+            } else if (arg.startsWith("--reorder-buffer=")) {
+                options.reorderBuffer = positive(arg, arg.substring("--reorder-buffer=".length()));
+            } else if (arg.equals("--format=text")) {
+                options.format = FORMAT_TEXT;
+            } else if (arg.equals("--format=jsonl")) {
+                options.format = FORMAT_JSONL;
+            } else if (arg.startsWith("--max-errors=")) {
+                options.maxErrors = positive(arg, arg.substring("--max-errors=".length()));
+            } else if (arg.equals("--fail-fast")) {
+                options.maxErrors = 1;
+            } else if (arg.startsWith("--jfr=")) {
+                options.jfrFile = arg.substring("--jfr=".length());
+            } else if (arg.equals("--jmx")) {
+                options.jmx = true;
+            } else if (arg.startsWith("--cache=")) {
+                options.cacheFile = arg.substring("--cache=".length());
+            } else if (arg.startsWith("--cache-size=")) {
+                options.cacheSize = size(arg, arg.substring("--cache-size=".length()));
+            } else if (arg.equals("--watch")) {
+                options.watch = true;
+            } else if (arg.startsWith("--debounce=")) {
+                options.debounceMillis = positive(arg, arg.substring("--debounce=".length()));
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else {
+                options.inputs.add(arg);
+            }
+        }
+        options.checkModes();
+        if (options.inputs.isEmpty() && options.fileLists.isEmpty() && options.servePort < 0) {
+            throw new IllegalArgumentException("No XML file given");
+        }
+        if (options.inputs.contains(STDIN) && (options.inputs.size() > 1 || !options.fileLists.isEmpty())) {
+            throw new IllegalArgumentException("Standard input cannot be validated together with other files");
+        }
+        if (options.watch) {
+            if (options.inputs.isEmpty()) {
+                throw new IllegalArgumentException("No directory to watch");
+            }
+            for (String input : options.inputs) {
+                if (!new File(input).isDirectory()) {
+                    throw new IllegalArgumentException("Only directories can be watched: " + input);
+                }
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Rejects modes that exclude each other: the ways of reading a file,
+     * and the service with watching or with inputs of its own.
+     *
+     * @throws IllegalArgumentException naming two options that conflict
+     */
+    private void checkModes() {
+        List<String> readModes = new ArrayList<>();
+        if (mapped) {
+            readModes.add("--mmap");
+        }
+        if (async) {
+            readModes.add("--async");
+        }
+        if (parallelism > 0) {
+            readModes.add("--parallel");
+        }
+        if (pipeline) {
+            readModes.add("--pipeline");
+        }
+        if (readModes.size() > 1) {
+            throw conflict(readModes.get(0), readModes.get(1));
+        }
+        if (servePort >= 0) {
+            if (watch) {
+                throw conflict("--serve", "--watch");
+            }
+            if (!fileLists.isEmpty()) {
+                throw conflict("--serve", "--files-from");
+            }
+            if (!inputs.isEmpty()) {
+                throw conflict("--serve", inputs.get(0));
+            }
+        }
+    }
+
+    /**
+     * Returns the error for two options that cannot be used together.
+     */
+    private static IllegalArgumentException conflict(String first, String second) {
+        return new IllegalArgumentException(first + " cannot be used together with " + second);
+    }
+
+    /**
+     * Returns true if more than a single plain file is to be validated.
+     *
+     * @return true for batch mode
+     */
+    boolean isBatch() {
+        return inputs.size() != 1 || !fileLists.isEmpty() || new File(inputs.get(0)).isDirectory();
+    }
+
+    /**
+     * Parses a TCP port option value; 0 picks any free port.
+     *
+     * @param arg the whole argument, for the error message
+     * @param value the value to parse
+     * @return the parsed port
+     * @throws IllegalArgumentException if the value is not a valid port
+     */
+    static int port(String arg, String value) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= 0 && n <= 65535) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Expected a port number: " + arg);
+    }
+
+    /**
+     * Parses a positive integer option value.
+     *
+     * @param arg the whole argument, for the error message
+     * @param value the value to parse
+     * @return the parsed value
+     * @throws IllegalArgumentException if the value is not a positive integer
+     */
+    static int positive(String arg, String value) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Expected a positive number: " + arg);
+    }
+
+    /**
+     * Parses a size in bytes with an optional k, m or g suffix.
+     *
+     * @param arg the whole argument, for the error message
+     * @param value the value to parse
+     * @return the parsed size
+     * @throws IllegalArgumentException if the value is not a positive size
+     */
+    static long size(String arg, String value) {
+        long unit = 1;
+        String digits = value.toLowerCase();
+        if (digits.endsWith("k")) {
+            unit = 1L << 10;
+        } else if (digits.endsWith("m")) {
+            unit = 1L << 20;
+        } else if (digits.endsWith("g")) {
+            unit = 1L << 30;
+        }
+        if (unit > 1) {
+            digits = digits.substring(0, digits.length() - 1);
+        }
+        try {
+            long n = Long.parseLong(digits);
+            if (n > 0 && n <= Long.MAX_VALUE / unit) {
+                return n * unit;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Expected a size such as 64k, 10m or 2g: " + arg);
+    }
+}
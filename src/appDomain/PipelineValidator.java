@@ -0,0 +1,378 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Validates one document in four stages running on their own threads:
+ * reading raw buffers ({@link ReadAheadInputStream}), tokenizing them into
+ * tag records, matching the tags against the stack and writing the report.
+ * The stages hand work over through bounded queues, so waiting for the disk
+ * overlaps scanning, and scanning overlaps stack matching, on separate
+ * cores; memory is bounded by the queues whatever the document's size.
+ * <p>
+ * Tag records are handed over in batches of {@link #BATCH_SIZE}, held in
+ * parallel primitive arrays and recycled through a free queue, so the cost
+ * of a hand-off is spread over thousands of tags and nothing is allocated
+ * per tag. Errors go to the reporting stage the same way. The report is
+ * identical to a sequential validation's.
+ */
+public class PipelineValidator {
+    /** Tag records per batch handed from the scanner to the validator. */
+    public static final int BATCH_SIZE = 4096;
+    /** Batches in flight between two stages. */
+    static final int BATCHES = 4;
+
+    private final TagValidator validator;
+    private final SymbolTable symbols;
+
+    /**
+     * Creates a pipeline feeding the given validator. Give the validator a
+     * sink from {@link #reportStage(ErrorSink)} to run the report on its own
+     * thread too.
+     *
+     * @param validator the validator matching the tags, on the calling thread
+     */
+    public PipelineValidator(TagValidator validator) {
+        this.validator = validator;
+        this.symbols = validator.symbols();
+    }
+
+    /**
+     * Validates a document read from a stream and checks the tags still
+     * open at its end. Reading and tokenizing run on background threads;
+     * the tags are matched on the calling thread.
+     *
+     * @param in source of the document's bytes, read ahead on its own
+     *           thread and closed once scanned
+     * @param encoding the document's encoding, already detected
+     * @return number of bytes scanned
+     * @throws IOException if reading fails
+     */
+    public long validate(InputStream in, XMLEncoding encoding) throws IOException {
+        Scanner scanner = new Scanner(new ReadAheadInputStream(in), encoding);
+        Thread thread = new Thread(scanner, "xml-scanner");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            while (true) {
+                Batch batch = take(scanner.filled);
+                if (batch.last) {
+                    if (batch.error != null) {
+                        throw batch.error;
+                    }
+                    break;
+                }
+                if (!scanner.stopped && match(batch)) {
+                    scanner.stopped = true;
+                }
+                scanner.free.add(batch);
+            }
+        } finally {
+            // Unblocks a scanner waiting for a free batch after a failure;
+            // once stopped it adds no more records
+            scanner.stopped = true;
+            scanner.free.offer(new Batch(0));
+            join(thread);
+        }
+        validator.endOfInput();
+        return scanner.tokenizer.bytesConsumed();
+    }
+
+    /**
+     * Matches the tags of a batch.
+     *
+     * @return true if the error limit was reached
+     */
+    private boolean match(Batch batch) {
+        for (int i = 0; i < batch.size; i++) {
+            if (validator.tag(batch.types[i], batch.ids[i], batch.lines[i], batch.columns[i], batch.offsets[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wraps a sink so that errors are handed to a reporting thread in
+     * batches, which passes them on and completes the report. Errors are
+     * rare, so the thread is only started by the first batch of them.
+     *
+     * @param sink the sink producing the report
+     * @return a sink to give the validator
+     */
+    public static ErrorSink reportStage(ErrorSink sink) {
+        return new Reporter(sink);
+    }
+
+    /**
+     * Takes the next batch from a queue.
+     */
+    private static Batch take(BlockingQueue<Batch> queue) throws InterruptedIOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the pipeline");
+        }
+    }
+
+    /**
+     * Waits for a stage's thread to end.
+     */
+    private static void join(Thread thread) throws InterruptedIOException {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the pipeline");
+        }
+    }
+
+    /**
+     * Tag or error records in parallel arrays. The last batch of a stream
+     * carries no records, only the error that ended the stream, if any.
+     */
+    private static final class Batch {
+        final int[] types;
+        final int[] ids;
+        final int[] lines;
+        final int[] columns;
+        final long[] offsets;
+        int size;
+        boolean last;
+        IOException error;
+
+        Batch(int capacity) {
+            types = new int[capacity];
+            ids = new int[capacity];
+            lines = new int[capacity];
+            columns = new int[capacity];
+            offsets = new long[capacity];
+        }
+
+        /**
+         * Appends a record.
+         *
+         * @return true if the batch is now full
+         */
+        boolean add(int type, int id, int line, int column, long offset) {
+            types[size] = type;
+            ids[size] = id;
+            lines[size] = line;
+            columns[size] = column;
+            offsets[size] = offset;
+            return ++size == types.length;
+        }
+
+        /**
+         * Returns a batch marking the end of a stream.
+         */
+        static Batch end(IOException error) {
+            Batch batch = new Batch(0);
+            batch.last = true;
+            batch.error = error;
+            return batch;
+        }
+    }
+
+    /**
+     * The tokenizing stage: scans the read-ahead buffers and turns every tag
+     * into a record, interning its name.
+     */
+    private final class Scanner implements Runnable, XMLTokenizer.TokenListener {
+        final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(BATCHES + 1);
+        // One extra slot so the end marker never blocks the scanner
+        final BlockingQueue<Batch> filled = new ArrayBlockingQueue<>(BATCHES + 1);
+        final XMLTokenizer tokenizer = new XMLTokenizer(this);
+        private final InputStream in;
+        private final XMLEncoding encoding;
+        /** Set by the validating stage at the error limit or on failure. */
+        volatile boolean stopped;
+        private boolean interrupted;
+        private Batch batch;
+
+        Scanner(InputStream in, XMLEncoding encoding) {
+            this.in = in;
+            this.encoding = encoding;
+            for (int i = 0; i < BATCHES; i++) {
+                free.add(new Batch(BATCH_SIZE));
+            }
+        }
+
+        @Override
+        public void run() {
+            IOException error = null;
+            try {
+                batch = take(free);
+                encoding.parse(in, tokenizer);
+                if (interrupted) {
+                    error = new InterruptedIOException("Scanner interrupted");
+                } else if (batch.size > 0) {
+                    filled.put(batch);
+                }
+            } catch (IOException e) {
+                error = e;
+            } catch (InterruptedException e) {
+                error = new InterruptedIOException("Scanner interrupted");
+            } catch (RuntimeException e) {
+                error = new IOException(e);
+            }
+            try {
+                in.close();
+            } catch (IOException e) {
+                error = error != null ? error : e;
+            }
+            filled.offer(Batch.end(error));
+        }
+
+        @Override
+        public void token(XMLTokenizer t) {
+            int type = t.tokenType();
+            if (type != XMLTokenizer.START_TAG && type != XMLTokenizer.END_TAG && type != XMLTokenizer.EMPTY_TAG) {
+                return;
+            }
+            if (stopped) {
+                t.stop();
+                return;
+            }
+            int id = type == XMLTokenizer.EMPTY_TAG ? 0 : t.nameId(symbols);
+            if (batch.add(type, id, t.lineNumber(), t.column(), t.byteOffset())) {
+                try {
+                    filled.put(batch);
+                    batch = free.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    t.stop();
+                    return;
+                }
+                batch.size = 0;
+            }
+        }
+    }
+
+    /**
+     * The reporting stage: receives the validator's errors in batches on
+     * its own thread and passes them on to the report's sink. If the sink
+     * fails, the thread hands an empty batch back and ends, and the failure
+     * is rethrown to the validator by its next hand-over.
+     */
+    private static final class Reporter implements ErrorSink, Runnable {
+        private static final int UNCLOSED = 0;
+        private static final int UNEXPECTED = 1;
+
+        private final ErrorSink sink;
+        private final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(BATCHES + 1);
+        private final BlockingQueue<Batch> filled = new ArrayBlockingQueue<>(BATCHES + 1);
+        private Batch batch;
+        private Thread thread;
+        private volatile RuntimeException failure;
+
+        Reporter(ErrorSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void unclosed(int id, int line, int column, long offset) {
+            add(UNCLOSED, id, line, column, offset);
+        }
+
+        @Override
+        public void unexpected(int id, int line, int column, long offset) {
+            add(UNEXPECTED, id, line, column, offset);
+        }
+
+        /**
+         * Appends an error, starting the thread with the first one and
+         * handing the batch over once it is full.
+         *
+         * @throws RuntimeException the sink's failure, once it has failed
+         */
+        private void add(int kind, int id, int line, int column, long offset) {
+            checkFailure();
+            if (thread == null) {
+                for (int i = 0; i < BATCHES; i++) {
+                    free.add(new Batch(BATCH_SIZE));
+                }
+                batch = free.remove();
+                thread = new Thread(this, "xml-reporter");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            if (batch.add(kind, id, line, column, offset)) {
+                try {
+                    filled.put(batch);
+                    batch = free.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted handing over errors", e);
+                }
+                checkFailure();
+                batch.size = 0;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Batch next = filled.take();
+                    for (int i = 0; i < next.size; i++) {
+                        if (next.types[i] == UNCLOSED) {
+                            sink.unclosed(next.ids[i], next.lines[i], next.columns[i], next.offsets[i]);
+                        } else {
+                            sink.unexpected(next.ids[i], next.lines[i], next.columns[i], next.offsets[i]);
+                        }
+                    }
+                    if (next.last) {
+                        return;
+                    }
+                    free.add(next);
+                }
+            } catch (InterruptedException e) {
+                failure = new IllegalStateException("Reporter interrupted", e);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            if (failure != null) {
+                // Wakes a validator waiting for a free batch; it finds the
+                // failure once it has the batch
+                free.offer(new Batch(0));
+            }
+        }
+
+        /**
+         * Rethrows the sink's failure, if it has failed.
+         */
+        private void checkFailure() {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        /**
+         * Hands over the last errors, waits for the reporting thread and
+         * completes the report.
+         */
+        @Override
+        public void finish(PrintStream out) throws IOException {
+            if (thread != null) {
+                batch.last = true;
+                try {
+                    filled.put(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted handing over errors");
+                }
+                join(thread);
+                thread = null;
+                checkFailure();
+            }
+            sink.finish(out);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a source stream on a background thread into a fixed ring of
+ * buffers, so producing the bytes (for example inflating a compressed
+ * file) and consuming them (scanning the document) run on two cores at
+ * once. The reader fills free buffers and queues them; the consumer drains
+ * one buffer while the next ones are being filled, and hands it back when
+ * it is empty. Memory is bounded by the ring, whatever the input length.
+ */
+public class ReadAheadInputStream extends InputStream {
+    /** Default number of buffers in the ring. */
+    public static final int DEFAULT_BUFFERS = 4;
+    /** Default size of each buffer. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * One buffer of the ring. A chunk with a negative length marks the end
+     * of the source, and carries the error that ended it, if any.
+     */
+    private static final class Chunk {
+        final byte[] data;
+        int length;
+        IOException error;
+
+        Chunk(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    private final InputStream source;
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> filled;
+    private final Thread reader;
+    private Chunk current;
+    private int position;
+    private boolean ended;
+    private volatile boolean closed;
+
+    /**
+     * Starts reading a source ahead into {@link #DEFAULT_BUFFERS} buffers
+     * of {@link #DEFAULT_BUFFER_SIZE} bytes.
+     *
+     * @param source the stream to read; closed when this stream is closed
+     */
+    public ReadAheadInputStream(InputStream source) {
+        this(source, DEFAULT_BUFFERS, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Starts reading a source ahead into a ring of buffers.
+     *
+     * @param source the stream to read; closed when this stream is closed
+     * @param buffers number of buffers in the ring, at least 2
+     * @param bufferSize size of each buffer
+     */
+    public ReadAheadInputStream(InputStream source, int buffers, int bufferSize) {
+        if (buffers < 2 || bufferSize < 1) {
+            throw new IllegalArgumentException("Need at least two non-empty buffers");
+        }
+        this.source = source;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        // One extra slot so the end marker never blocks the reader
+        this.filled = new ArrayBlockingQueue<>(buffers + 1);
+        for (int i = 0; i < buffers; i++) {
+            free.add(new Chunk(new byte[bufferSize]));
+        }
+        reader = new Thread(this::readAhead, "xml-read-ahead");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Body of the background thread: fills free buffers until the source
+     * ends, fails or this stream is closed.
+     */
+    private void readAhead() {
+        Chunk end = new Chunk(null);
+        end.length = -1;
+        try {
+            while (!closed) {
+                Chunk chunk = free.take();
+                int n = 0;
+                int r = 0;
+                while (n < chunk.data.length && (r = source.read(chunk.data, n, chunk.data.length - n)) != -1) {
+                    n += r;
+                }
+                if (n > 0) {
+                    chunk.length = n;
+                    filled.put(chunk);
+                }
+                if (r == -1) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            end.error = e;
+        } catch (InterruptedException e) {
+            end.error = new InterruptedIOException("Read-ahead interrupted");
+        } catch (RuntimeException e) {
+            end.error = new IOException(e);
+        }
+        filled.offer(end);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current.data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.length - position;
+    }
+
+    /**
+     * Makes sure the current buffer has unread bytes, handing an empty one
+     * back to the reader and waiting for the next.
+     *
+     * @return false at the end of the source
+     */
+    private boolean fill() throws IOException {
+        if (current != null && position < current.length) {
+            return true;
+        }
+        if (ended) {
+            return false;
+        }
+        if (current != null) {
+            free.add(current);
+            current = null;
+        }
+        Chunk next;
+        try {
+            next = filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for input");
+        }
+        if (next.length < 0) {
+            ended = true;
+            if (next.error != null) {
+                throw next.error;
+            }
+            return false;
+        }
+        current = next;
+        position = 0;
+        return true;
+    }
+
+    /**
+     * Stops the reader and closes the source. Bytes read ahead but not
+     * consumed are discarded. The reader is waited for, as the source may
+     * not be closed under it; it stops after the read in progress.
+     *
+     * @throws IOException if closing the source fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reader.interrupt();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        source.close();
+    }
+}
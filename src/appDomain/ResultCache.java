@@ -0,0 +1,805 @@
+package appDomain;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Results of earlier validations, kept on disk so unchanged files are not
+ * validated again. An entry is keyed by the file's absolute path and holds
+ * its size, modification time and a 64-bit hash of its content, next to
+ * the errors found in it: tag names once each and then one record of a few
+ * varint bytes per error. A hit replays the records into a fresh sink, so
+ * the report comes out in whatever format is asked for without reading the
+ * file at all.
+ * <p>
+ * A file whose size and time match its entry is taken as unchanged, unless
+ * it was modified less than {@link #RACY_NANOS} before the entry was made,
+ * as it may have been written again within the same clock tick; the
+ * content hash then decides. A file that was only touched is also found
+ * unchanged by its hash.
+ * <p>
+ * The entries are kept in least recently used order and the eldest are
+ * evicted once their total size passes the limit. Every method is safe to
+ * call from parallel workers; files are read and hashed outside the lock.
+ * A file validated from a stream is hashed as it is read, through a
+ * {@link HashingInputStream}, rather than read again to be cached; a mapped
+ * or asynchronous read hashes the buffers it scans. A validation stopped at
+ * the error limit depends only on the bytes read up to the stop, so its
+ * entry holds the hash of just those, and the file is never read further
+ * to cache it.
+ */
+public class ResultCache {
+    /** Default limit of the memory and disk size of the entries, in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+    /** Modification times this close to the making of an entry are not trusted. */
+    static final long RACY_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private static final int MAGIC = 0x58524332; // "XRC2"
+    /** Saved bytes of an entry's fixed fields, from its size to its record length. */
+    private static final int ENTRY_FIELDS_SIZE = 5 * 8 + 4 + 1 + 4 + 4;
+    /** Approximate bytes an entry takes besides its path and records. */
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final int UNCLOSED = 0;
+    private static final int UNEXPECTED = 1;
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final long maxBytes;
+    /** Entries by path, least recently used first. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(1024, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private boolean modified;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxBytes limit of the total size of the entries
+     */
+    public ResultCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Reads a cache saved by {@link #save(Path)}. A missing file gives an
+     * empty cache, and so does a file in another format, which the next
+     * save replaces. A file holding a record longer than what is left of
+     * it, or than the limit, is corrupt: a warning is printed and the cache
+     * starts empty.
+     *
+     * @param file the cache file
+     * @param maxBytes limit of the total size of the entries
+     * @return the cache
+     * @throws IOException if the file exists but cannot be read
+     */
+    public static ResultCache load(Path file, long maxBytes) throws IOException {
+        ResultCache cache = new ResultCache(maxBytes);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            // At most the bytes left after the fields read so far; a path
+            // takes at least a byte per char
+            long remaining = Files.size(file) - 8;
+            if (in.readInt() != MAGIC) {
+                return cache;
+            }
+            int count = in.readInt();
+            // Saved eldest first, so the recency order is restored
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long modifiedNanos = in.readLong();
+                long recordedNanos = in.readLong();
+                long hash = in.readLong();
+                long hashLength = in.readLong();
+                int errorLimit = in.readInt();
+                boolean limitReached = in.readBoolean();
+                int errorCount = in.readInt();
+                int length = in.readInt();
+                remaining -= 2 + path.length() + ENTRY_FIELDS_SIZE;
+                if (length < 0 || length > remaining || length > maxBytes) {
+                    System.err.println("Warning: cache file " + file + " is corrupt; starting with an empty cache");
+                    return new ResultCache(maxBytes);
+                }
+                byte[] records = new byte[length];
+                in.readFully(records);
+                remaining -= length;
+                cache.add(path, new Entry(size, modifiedNanos, recordedNanos, hash, hashLength, errorLimit, limitReached,
+                        errorCount, records));
+            }
+        } catch (NoSuchFileException e) {
+            return cache;
+        } catch (EOFException e) {
+            // A truncated file: keep the entries read so far
+        }
+        cache.modified = false;
+        return cache;
+    }
+
+    /**
+     * Writes the cache to a file, eldest entries first. The file is written
+     * beside the target and renamed over it, so a crash or a concurrent
+     * reader never sees half a cache. Does nothing if no entry changed
+     * since the cache was loaded or last saved; a save that fails leaves
+     * the cache marked changed, so the next one writes it again.
+     *
+     * @param file the cache file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        List<Map.Entry<String, Entry>> snapshot;
+        synchronized (this) {
+            if (!modified) {
+                return;
+            }
+            snapshot = new ArrayList<>(entries.entrySet());
+            modified = false;
+        }
+        boolean saved = false;
+        Path temp = null;
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> e : snapshot) {
+                    Entry entry = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.modifiedNanos);
+                    out.writeLong(entry.recordedNanos);
+                    out.writeLong(entry.hash);
+                    out.writeLong(entry.hashLength);
+                    out.writeInt(entry.errorLimit);
+                    out.writeBoolean(entry.limitReached);
+                    out.writeInt(entry.errorCount);
+                    out.writeInt(entry.records.length);
+                    out.write(entry.records);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            saved = true;
+        } finally {
+            if (!saved) {
+                // Entries added since the snapshot set the flag anyway; the
+                // snapshot's own changes must still be saved by a later call
+                synchronized (this) {
+                    modified = true;
+                }
+            }
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Returns the result of an earlier validation of a file if the file has
+     * not changed since, hashing it only when its size and time alone do
+     * not prove that.
+     *
+     * @param file the XML file
+     * @param errorLimit the error limit the file is validated with
+     * @return the cached result, or null if the file must be validated
+     * @throws IOException if the file cannot be read
+     */
+    public Result get(Path file, int errorLimit) throws IOException {
+        String key = key(file);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.errorLimit == errorLimit) {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            long modifiedNanos = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            if (attributes.size() == entry.size) {
+                if (modifiedNanos == entry.modifiedNanos && modifiedNanos < entry.recordedNanos - RACY_NANOS) {
+                    return hit(entry);
+                }
+                long recorded = System.currentTimeMillis() * 1000000L;
+                if (hash(file, entry.hashLength) == entry.hash) {
+                    // Touched but not changed: trust the new time from now on
+                    synchronized (this) {
+                        if (entries.get(key) == entry) {
+                            entries.put(key, new Entry(entry, modifiedNanos, recorded));
+                            modified = true;
+                        }
+                    }
+                    return hit(entry);
+                }
+            }
+        }
+        synchronized (this) {
+            misses++;
+        }
+        return null;
+    }
+
+    /**
+     * Counts a hit and returns the entry's result.
+     */
+    private synchronized Result hit(Entry entry) {
+        hits++;
+        return new Result(entry);
+    }
+
+    /**
+     * Starts recording the errors of a file about to be validated. The
+     * recorder passes every error on to the given sink.
+     *
+     * @param file the XML file
+     * @param errorLimit the error limit the file is validated with
+     * @param symbols table the error ids refer to
+     * @param sink the sink producing the report
+     * @return a sink to give the validator
+     * @throws IOException if the file cannot be read
+     */
+    public Recorder record(Path file, int errorLimit, SymbolTable symbols, ErrorSink sink) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new Recorder(file, errorLimit, attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                System.currentTimeMillis() * 1000000L, maxBytes, symbols, sink);
+    }
+
+    /**
+     * Stores the errors recorded during a validation. A complete validation
+     * is stored under the hash of the whole file, taken while it was read
+     * if a stream given to {@link Recorder#hashedBy} read all of it, and
+     * otherwise now. A validation stopped at the error limit is stored
+     * under the hash of the bytes read up to the stop, or not at all if
+     * they were not hashed. Nothing is stored if the file changed during
+     * the validation, or if its errors outgrew the cache's limit.
+     *
+     * @param recorder the recorder the validator reported to
+     * @param limitReached true if the validation stopped at the error limit
+     * @throws IOException if the file cannot be read
+     */
+    public void put(Recorder recorder, boolean limitReached) throws IOException {
+        if (!recorder.isCacheable()) {
+            return;
+        }
+        ContentHash hashed = recorder.hashed;
+        long hashLength = hashed != null ? hashed.length() : -1;
+        long hash;
+        if (hashLength == recorder.size || (limitReached && hashLength >= 0)) {
+            hash = hashed.value();
+        } else if (limitReached) {
+            return;
+        } else {
+            hashLength = recorder.size;
+            hash = hash(recorder.file, hashLength);
+        }
+        BasicFileAttributes attributes = Files.readAttributes(recorder.file, BasicFileAttributes.class);
+        if (attributes.size() != recorder.size
+                || attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) != recorder.modifiedNanos) {
+            return;
+        }
+        Entry entry = new Entry(recorder.size, recorder.modifiedNanos, recorder.recordedNanos, hash, hashLength,
+                recorder.errorLimit, limitReached, recorder.count, recorder.encode());
+        synchronized (this) {
+            add(key(recorder.file), entry);
+        }
+    }
+
+    /**
+     * Adds an entry and evicts the least recently used ones over the limit.
+     */
+    private void add(String key, Entry entry) {
+        long size = sizeOf(key, entry);
+        Entry old = entries.remove(key);
+        if (old != null) {
+            bytes -= sizeOf(key, old);
+        }
+        modified = true;
+        if (size > maxBytes) {
+            return;
+        }
+        entries.put(key, entry);
+        bytes += size;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes) {
+            Map.Entry<String, Entry> e = eldest.next();
+            bytes -= sizeOf(e.getKey(), e.getValue());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Returns the number of files in the cache.
+     *
+     * @return entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the approximate size of the entries, which the limit applies to.
+     *
+     * @return size in bytes
+     */
+    public synchronized long byteSize() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return hit count
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that found no valid entry.
+     *
+     * @return miss count
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns the key of a file: its absolute, normalized path.
+     */
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Returns the approximate memory an entry takes.
+     */
+    private static long sizeOf(String key, Entry entry) {
+        return ENTRY_OVERHEAD + 2L * key.length() + entry.records.length;
+    }
+
+    /**
+     * Hashes the start of a file's content eight bytes at a time. Not
+     * cryptographic, but mixed well enough that an edited file of the same
+     * size is told apart.
+     *
+     * @param file the file to hash
+     * @param length number of bytes to hash, the file's size to hash all
+     *               of it
+     * @return 64-bit hash of the content
+     * @throws IOException if the file cannot be read
+     */
+    static long hash(Path file, long length) throws IOException {
+        int capacity = (int) Math.min(Math.max(length, 16), XMLTokenizer.BUFFER_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(capacity);
+        ContentHash hash = new ContentHash();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (long left = length; left > 0; buffer.clear()) {
+                buffer.limit((int) Math.min(capacity, left));
+                int n = channel.read(buffer);
+                if (n == -1) {
+                    break;
+                }
+                hash.update(buffer.array(), 0, n);
+                left -= n;
+            }
+        }
+        return hash.value();
+    }
+
+    /**
+     * Writes an unsigned variable-length number, seven bits per byte.
+     */
+    private static void writeVarLong(ByteArrayOutputStream out, long n) {
+        while ((n & ~0x7FL) != 0) {
+            out.write((int) (n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        out.write((int) n);
+    }
+
+    /**
+     * Reads an unsigned variable-length number at a position.
+     */
+    private static long readVarLong(ByteBuffer in) {
+        long n = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = in.get();
+            n |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return n;
+            }
+        }
+    }
+
+    /**
+     * The hash of {@link #hash(Path, long)}, computed as the bytes arrive:
+     * they are mixed in as little-endian words, eight at a time, with up to
+     * seven held back for the next chunk.
+     */
+    static final class ContentHash {
+        private final ByteBuffer tail = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        private long h = PRIME_2;
+        /** Bytes hashed; written after the hash, so reading it first publishes the hash. */
+        private volatile long length;
+
+        /**
+         * Mixes in the next bytes.
+         */
+        void update(byte[] b, int off, int len) {
+            mix(ByteBuffer.wrap(b, off, len).order(ByteOrder.LITTLE_ENDIAN));
+            length += len;
+        }
+
+        /**
+         * Mixes in the bytes of a buffer between two indexes, leaving its
+         * position alone, such as a mapped window the tokenizer has scanned.
+         *
+         * @param buffer the bytes
+         * @param from index of the first byte to hash
+         * @param to index one past the last byte to hash
+         */
+        void update(ByteBuffer buffer, int from, int to) {
+            ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            in.limit(to).position(from);
+            mix(in);
+            length += to - from;
+        }
+
+        /**
+         * Mixes in the remaining bytes of a little-endian buffer.
+         */
+        private void mix(ByteBuffer in) {
+            if (tail.position() > 0) {
+                while (tail.hasRemaining() && in.hasRemaining()) {
+                    tail.put(in.get());
+                }
+                if (tail.hasRemaining()) {
+                    return;
+                }
+                tail.flip();
+                h = Long.rotateLeft(h ^ tail.getLong() * PRIME_1, 31) * PRIME_2;
+                tail.clear();
+            }
+            while (in.remaining() >= 8) {
+                h = Long.rotateLeft(h ^ in.getLong() * PRIME_1, 31) * PRIME_2;
+            }
+            tail.put(in);
+        }
+
+        /**
+         * Returns the number of bytes hashed.
+         */
+        long length() {
+            return length;
+        }
+
+        /**
+         * Returns the hash of the bytes so far.
+         */
+        long value() {
+            long v = h;
+            for (int i = 0; i < tail.position(); i++) {
+                v = Long.rotateLeft(v ^ (tail.get(i) & 0xFF) * PRIME_1, 23) * PRIME_2;
+            }
+            v ^= length;
+            // Final avalanche, so every input bit reaches every output bit
+            v ^= v >>> 33;
+            v *= 0xFF51AFD7ED558CCDL;
+            v ^= v >>> 33;
+            v *= 0xC4CEB9FE1A85EC53L;
+            return v ^ v >>> 33;
+        }
+    }
+
+    /**
+     * Stream that hashes a file's bytes as they are read through it, as
+     * {@link ResultCache#hash(Path, long)} would, so a file validated from
+     * a stream need not be read a second time to be cached. Give it to the
+     * file's recorder with {@link Recorder#hashedBy}.
+     */
+    public static final class HashingInputStream extends FilterInputStream {
+        private final ContentHash hash = new ContentHash();
+        private final byte[] single = new byte[1];
+
+        /**
+         * Creates a stream hashing what it reads from another.
+         *
+         * @param in the file's stream, at its start
+         */
+        public HashingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                single[0] = (byte) b;
+                hash.update(single, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                hash.update(b, off, n);
+            }
+            return n;
+        }
+
+        /**
+         * Reads and hashes the skipped bytes.
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] scratch = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int r = read(scratch, 0, (int) Math.min(scratch.length, n - skipped));
+                if (r == -1) {
+                    break;
+                }
+                skipped += r;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * One cached file: its identity when validated and its errors.
+     */
+    private static final class Entry {
+        final long size;
+        final long modifiedNanos;
+        final long recordedNanos;
+        final long hash;
+        /** Number of bytes from the start of the file the hash covers. */
+        final long hashLength;
+        final int errorLimit;
+        final boolean limitReached;
+        final int errorCount;
+        /** Tag names and error records, see {@link Recorder#encode()}. */
+        final byte[] records;
+
+        Entry(long size, long modifiedNanos, long recordedNanos, long hash, long hashLength, int errorLimit,
+                boolean limitReached, int errorCount, byte[] records) {
+            this.size = size;
+            this.modifiedNanos = modifiedNanos;
+            this.recordedNanos = recordedNanos;
+            this.hash = hash;
+            this.hashLength = hashLength;
+            this.errorLimit = errorLimit;
+            this.limitReached = limitReached;
+            this.errorCount = errorCount;
+            this.records = records;
+        }
+
+        Entry(Entry entry, long modifiedNanos, long recordedNanos) {
+            this(entry.size, modifiedNanos, recordedNanos, entry.hash, entry.hashLength, entry.errorLimit,
+                    entry.limitReached, entry.errorCount, entry.records);
+        }
+    }
+
+    /**
+     * The cached result of a file, replayed instead of validating it.
+     */
+    public static final class Result {
+        private final Entry entry;
+
+        private Result(Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * Returns the number of errors in the file.
+         *
+         * @return error count
+         */
+        public int errorCount() {
+            return entry.errorCount;
+        }
+
+        /**
+         * Returns true if the validation stopped at the error limit.
+         *
+         * @return true if the file was not read to the end
+         */
+        public boolean isLimitReached() {
+            return entry.limitReached;
+        }
+
+        /**
+         * Sends the errors to a sink in the order they were found. The sink
+         * is not finished.
+         *
+         * @param symbols table to intern the tag names in; the sink must
+         *                refer to the same table
+         * @param sink destination of the errors
+         */
+        public void replay(SymbolTable symbols, ErrorSink sink) {
+            ByteBuffer in = ByteBuffer.wrap(entry.records);
+            int[] ids = new int[(int) readVarLong(in)];
+            for (int i = 0; i < ids.length; i++) {
+                byte[] name = new byte[(int) readVarLong(in)];
+                in.get(name);
+                ids[i] = symbols.intern(name, 0, name.length);
+            }
+            while (in.hasRemaining()) {
+                long head = readVarLong(in);
+                int id = ids[(int) (head >>> 1)];
+                int line = (int) readVarLong(in) - 1;
+                int column = (int) readVarLong(in);
+                long offset = readVarLong(in) - 1;
+                if ((head & 1) == UNCLOSED) {
+                    sink.unclosed(id, line, column, offset);
+                } else {
+                    sink.unexpected(id, line, column, offset);
+                }
+            }
+        }
+    }
+
+    /**
+     * Error sink that passes errors on and keeps a compact copy of them
+     * for the cache. A copy that outgrows the cache's limit could never be
+     * stored, so it is dropped and recording stops.
+     */
+    public static final class Recorder implements ErrorSink {
+        private final Path file;
+        private final int errorLimit;
+        private final long size;
+        private final long modifiedNanos;
+        private final long recordedNanos;
+        private final long maxBytes;
+        private final SymbolTable symbols;
+        private final ErrorSink sink;
+        /** Index of every tag name recorded, by symbol id. */
+        private final Map<Integer, Integer> nameIndex = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        /** The records, or null once they outgrew the limit. */
+        private ByteArrayOutputStream records = new ByteArrayOutputStream();
+        private int count;
+        private ContentHash hashed;
+
+        private Recorder(Path file, int errorLimit, long size, long modifiedNanos, long recordedNanos, long maxBytes,
+                SymbolTable symbols, ErrorSink sink) {
+            this.file = file;
+            this.errorLimit = errorLimit;
+            this.size = size;
+            this.modifiedNanos = modifiedNanos;
+            this.recordedNanos = recordedNanos;
+            this.maxBytes = maxBytes;
+            this.symbols = symbols;
+            this.sink = sink;
+        }
+
+        @Override
+        public void unclosed(int id, int line, int column, long offset) {
+            add(UNCLOSED, id, line, column, offset);
+            sink.unclosed(id, line, column, offset);
+        }
+
+        @Override
+        public void unexpected(int id, int line, int column, long offset) {
+            add(UNEXPECTED, id, line, column, offset);
+            sink.unexpected(id, line, column, offset);
+        }
+
+        @Override
+        public void finish(PrintStream out) throws IOException {
+            sink.finish(out);
+        }
+
+        /**
+         * Takes the file's hash from a stream reading it, instead of
+         * reading the file again when the result is stored. The stream's
+         * hash is only used if it read the whole file.
+         *
+         * @param in a stream reading the file from its start
+         */
+        public void hashedBy(HashingInputStream in) {
+            hashed = in.hash;
+        }
+
+        /**
+         * Starts a hash of the file for a read that scans its buffers
+         * directly, from the start of the file and in order, instead of
+         * through a {@link HashingInputStream}.
+         *
+         * @return the hash to give every scanned byte
+         */
+        ContentHash hash() {
+            hashed = new ContentHash();
+            return hashed;
+        }
+
+        /**
+         * Returns false once the recorded errors have outgrown the cache's
+         * limit, so the result will not be stored.
+         *
+         * @return true while the result can be cached
+         */
+        public boolean isCacheable() {
+            return records != null;
+        }
+
+        /**
+         * Appends one error record: the kind and name index, then the line,
+         * column and offset, shifted so that EOF's -1 values stay unsigned.
+         */
+        private void add(int kind, int id, int line, int column, long offset) {
+            if (records == null) {
+                return;
+            }
+            Integer index = nameIndex.get(id);
+            if (index == null) {
+                index = names.size();
+                nameIndex.put(id, index);
+                names.add(symbols.name(id));
+            }
+            writeVarLong(records, (long) index << 1 | kind);
+            writeVarLong(records, line + 1L);
+            writeVarLong(records, column);
+            writeVarLong(records, offset + 1);
+            count++;
+            if (records.size() > maxBytes) {
+                records = null;
+                names.clear();
+                nameIndex.clear();
+            }
+        }
+
+        /**
+         * Returns the recorded errors: the number of names, each name as a
+         * length and UTF-8 bytes, then the records.
+         */
+        private byte[] encode() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(records.size() + 16 * names.size() + 4);
+            writeVarLong(out, names.size());
+            for (String name : names) {
+                byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(out, utf8.length);
+                out.write(utf8, 0, utf8.length);
+            }
+            byte[] recorded = records.toByteArray();
+            out.write(recorded, 0, recorded.length);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package appDomain;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Error sink that writes errors out as they are found, so memory stays flat
+ * however broken the document is.
+ * <p>
+ * Unordered, every error is printed at once in the order it is found.
+ * Ordered, unclosed tags are printed at once but unexpected closing tags
+ * are held back until the end so the output matches the classic report.
+ * At most {@code reorderLimit} of them are kept in memory; beyond that they
+ * are spilled as compact records to a temporary file and read back in order.
+ * The reorder buffer is allocated by the first of them, and the temporary
+ * file is deleted by {@link #finish(PrintStream)}.
+ */
+public class StreamingErrorSink implements ErrorSink {
+    private final SymbolTable symbols;
+    private final PrintStream out;
+    private final boolean ordered;
+    private long count;
+
+    // === Reorder buffer for unexpected closing tags ===
+    private final int reorderLimit;
+    private int[] heldIds;
+    private int[] heldLines;
+    private int held;
+    private Path spillFile;
+    private DataOutputStream spill;
+
+    /**
+     * Creates a sink printing errors in the order they are found.
+     *
+     * @param symbols table the error ids refer to
+     * @param out destination of the errors
+     */
+    public StreamingErrorSink(SymbolTable symbols, PrintStream out) {
+        this.symbols = symbols;
+        this.out = out;
+        this.ordered = false;
+        this.reorderLimit = 0;
+    }
+
+    /**
+     * Creates a sink printing unclosed tags first and unexpected closing
+     * tags at the end, as the classic report does.
+     *
+     * @param symbols table the error ids refer to
+     * @param out destination of the errors
+     * @param reorderLimit number of held back errors kept in memory
+     */
+    public StreamingErrorSink(SymbolTable symbols, PrintStream out, int reorderLimit) {
+        if (reorderLimit < 1) {
+            throw new IllegalArgumentException("Reorder buffer must hold at least one error");
+        }
+        this.symbols = symbols;
+        this.out = out;
+        this.ordered = true;
+        this.reorderLimit = reorderLimit;
+    }
+
+    @Override
+    public void unclosed(int id, int line, int column, long offset) {
+        count++;
+        out.println(TagValidator.formatUnclosed(symbols.name(id), line));
+    }
+
+    @Override
+    public void unexpected(int id, int line, int column, long offset) {
+        count++;
+        if (!ordered) {
+            out.println(TagValidator.formatUnexpected(symbols.name(id), line));
+            return;
+        }
+        if (heldIds == null) {
+            heldIds = new int[reorderLimit];
+            heldLines = new int[reorderLimit];
+        } else if (held == heldIds.length) {
+            try {
+                spillHeld();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        heldIds[held] = id;
+        heldLines[held] = line;
+        held++;
+    }
+
+    /**
+     * Prints the held back closing tags, or the success message if no error
+     * was found, and flushes the output. The spill file is deleted even if
+     * it cannot be read back.
+     *
+     * @param out ignored; errors go to the stream given at construction
+     * @throws IOException if spilled errors cannot be read back
+     */
+    @Override
+    public void finish(PrintStream out) throws IOException {
+        try {
+            if (count == 0) {
+                this.out.println(TagValidator.SUCCESS);
+            }
+            if (spill != null) {
+                spill.close();
+                spill = null;
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillFile)))) {
+                    long spilled = Files.size(spillFile) / 8;
+                    for (long i = 0; i < spilled; i++) {
+                        int id = in.readInt();
+                        int line = in.readInt();
+                        this.out.println(TagValidator.formatUnexpected(symbols.name(id), line));
+                    }
+                }
+            }
+            for (int i = 0; i < held; i++) {
+                this.out.println(TagValidator.formatUnexpected(symbols.name(heldIds[i]), heldLines[i]));
+            }
+            held = 0;
+            this.out.flush();
+        } finally {
+            deleteSpill();
+        }
+    }
+
+    /**
+     * Closes and deletes the spill file, if there is one.
+     */
+    private void deleteSpill() throws IOException {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            if (spill != null) {
+                spill.close();
+                spill = null;
+            }
+        } finally {
+            Files.deleteIfExists(spillFile);
+            spillFile = null;
+        }
+    }
+
+    /**
+     * Moves the reorder buffer to the spill file.
+     */
+    private void spillHeld() throws IOException {
+        if (spill == null) {
+            spillFile = Files.createTempFile("xmlparser-errors", ".bin");
+            spill = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile)));
+        }
+        for (int i = 0; i < held; i++) {
+            spill.writeInt(heldIds[i]);
+            spill.writeInt(heldLines[i]);
+        }
+        held = 0;
+    }
+}
@@ -0,0 +1,182 @@
+package appDomain;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns tag names: maps the raw bytes of a name to a small int id. A
+ * lookup of a name already seen hashes and compares the bytes in place and
+ * allocates nothing; the name is decoded to a String once, when it is first
+ * added. Ids are dense, starting at 0, so they can index arrays.
+ * <p>
+ * Lookups are lock-free and may run on many threads; adding a new name
+ * takes the table's lock.
+ */
+public class SymbolTable {
+    /**
+     * One interned name. All fields are final, so a symbol read through a
+     * racy array reference is always seen fully constructed.
+     */
+    private static final class Symbol {
+        final byte[] bytes;
+        final int hash;
+        final int id;
+        final String name;
+
+        Symbol(byte[] bytes, int hash, int id, String name) {
+            this.bytes = bytes;
+            this.hash = hash;
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private final Charset charset;
+    /** Open-addressed hash slots; replaced, never shrunk, when growing. */
+    private volatile Symbol[] slots = new Symbol[64];
+    /** Symbols indexed by id. */
+    private volatile Symbol[] byId = new Symbol[32];
+    private int size;
+
+    /**
+     * Creates a table decoding names as UTF-8.
+     */
+    public SymbolTable() {
+        this(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a table decoding names with the given charset.
+     *
+     * @param charset charset of the name bytes
+     */
+    public SymbolTable(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Returns the id of a name, adding it if it is new.
+     *
+     * @param buf array holding the name bytes
+     * @param off offset of the first name byte
+     * @param len number of name bytes
+     * @return the name's id
+     */
+    public int intern(byte[] buf, int off, int len) {
+        int hash = hash(buf, off, len);
+        Symbol[] table = slots;
+        int mask = table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Symbol symbol = table[i];
+            if (symbol == null) {
+                return add(buf, off, len, hash);
+            }
+            if (symbol.hash == hash && matches(symbol.bytes, buf, off, len)) {
+                return symbol.id;
+            }
+        }
+    }
+
+    /**
+     * Returns the name with the given id.
+     *
+     * @param id an id returned by {@link #intern(byte[], int, int)}
+     * @return the decoded name
+     * @throws IndexOutOfBoundsException if no name has that id
+     */
+    public String name(int id) {
+        Symbol[] symbols = byId;
+        Symbol symbol = id < symbols.length ? symbols[id] : null;
+        if (symbol == null) {
+            synchronized (this) {
+                if (id < 0 || id >= size) {
+                    throw new IndexOutOfBoundsException("No symbol " + id);
+                }
+                symbol = byId[id];
+            }
+        }
+        return symbol.name;
+    }
+
+    /**
+     * Returns the number of distinct names interned so far.
+     *
+     * @return number of ids handed out
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Adds a name under the lock, unless another thread added it first.
+     */
+    private synchronized int add(byte[] buf, int off, int len, int hash) {
+        Symbol[] table = slots;
+        int mask = table.length - 1;
+        int i = hash & mask;
+        for (Symbol symbol = table[i]; symbol != null; symbol = table[i]) {
+            if (symbol.hash == hash && matches(symbol.bytes, buf, off, len)) {
+                return symbol.id;
+            }
+            i = (i + 1) & mask;
+        }
+        byte[] bytes = Arrays.copyOfRange(buf, off, off + len);
+        Symbol symbol = new Symbol(bytes, hash, size, new String(bytes, charset));
+        if (size == byId.length) {
+            byId = Arrays.copyOf(byId, size * 2);
+        }
+        byId[size++] = symbol;
+        if (size * 2 > table.length) {
+            // Build the larger table completely before publishing it
+            Symbol[] bigger = new Symbol[table.length * 2];
+            for (Symbol s : byId) {
+                if (s != null) {
+                    put(bigger, s);
+                }
+            }
+            slots = bigger;
+        } else {
+            table[i] = symbol;
+        }
+        return symbol.id;
+    }
+
+    /**
+     * Inserts a symbol into a table known to have room.
+     */
+    private static void put(Symbol[] table, Symbol symbol) {
+        int mask = table.length - 1;
+        int i = symbol.hash & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = symbol;
+    }
+
+    /**
+     * Returns true if the stored bytes equal the given range.
+     */
+    private static boolean matches(byte[] stored, byte[] buf, int off, int len) {
+        if (stored.length != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (stored[i] != buf[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes a byte range and spreads the bits for the power-of-two table.
+     */
+    private static int hash(byte[] buf, int off, int len) {
+        int h = len;
+        for (int i = off, end = off + len; i < end; i++) {
+            h = 31 * h + buf[i];
+        }
+        return h ^ (h >>> 16);
+    }
+}
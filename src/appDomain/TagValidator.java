@@ -0,0 +1,389 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Matches the tags reported by an {@link XMLTokenizer} against a stack of
+ * open tags and collects an error for every mismatched or unclosed tag.
+ * Errors found while unwinding the stack are reported before stray closing
+ * tags, exactly as {@link XMLParser} has always printed them.
+ * <p>
+ * Tag names are interned in a {@link SymbolTable}, so the stack and the
+ * error records hold int ids and matching is an integer compare; names are
+ * only decoded when the report is printed. A count of every id on the stack
+ * answers "is this tag open anywhere?" in constant time, so a stray closing
+ * tag costs O(1) however deep the nesting.
+ * <p>
+ * Errors go to an {@link ErrorSink}: by default an {@link ErrorBuffer}
+ * printing the classic report at the end, or a {@link StreamingErrorSink}
+ * writing them out as they are found.
+ */
+public class TagValidator implements XMLTokenizer.TokenListener {
+    /** Line recorded for errors found at the end of the document. */
+    public static final int EOF_LINE = -1;
+    /** Message printed for a document without errors. */
+    static final String SUCCESS = "XML document is constructed correctly.";
+
+    private final SymbolTable symbols;
+    private int[] tagStack = new int[32];
+    private int depth;
+    /** Number of times each tag id occurs on the stack. */
+    private int[] openCount = new int[32];
+    private final ErrorSink sink;
+    private long errorCount;
+    /** Number of errors after which the scan stops, or 0 for no limit. */
+    private long errorLimit;
+
+    // === Statistics for ValidationMetrics, plain fields as a validator has one thread ===
+    private long tagCount;
+    private int peakDepth;
+    private long unclosedCount;
+
+    /**
+     * Creates a validator with its own symbol table.
+     */
+    public TagValidator() {
+        this(new SymbolTable());
+    }
+
+    /**
+     * Creates a validator interning names in the given table.
+     *
+     * @param symbols table shared with other scans of the same document
+     */
+    public TagValidator(SymbolTable symbols) {
+        this(symbols, new ErrorBuffer(symbols));
+    }
+
+    /**
+     * Creates a validator interning names in the given table and handing
+     * every error to the given sink.
+     *
+     * @param symbols table the sink's ids refer to
+     * @param sink receiver of the errors
+     */
+    public TagValidator(SymbolTable symbols, ErrorSink sink) {
+        this.symbols = symbols;
+        this.sink = sink;
+    }
+
+    /**
+     * Stops the validation once the given number of errors has been found:
+     * the tokenizer is told to stop after the offending tag and any further
+     * errors, including tags left open at the end, are not recorded.
+     *
+     * @param limit maximum number of errors, or 0 for no limit
+     */
+    public void setErrorLimit(long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Error limit must not be negative");
+        }
+        errorLimit = limit;
+    }
+
+    /**
+     * Returns true if the error limit has been reached, so the document was
+     * not validated to the end.
+     *
+     * @return true if validation stopped early
+     */
+    public boolean isLimitReached() {
+        return errorLimit > 0 && errorCount >= errorLimit;
+    }
+
+    /**
+     * Returns the table tag names are interned in.
+     *
+     * @return the validator's symbol table
+     */
+    SymbolTable symbols() {
+        return symbols;
+    }
+
+    /**
+     * Pushes opening tags and matches closing tags; self-closing tags are
+     * only counted, and all other tokens (declarations, comments, CDATA)
+     * are ignored.
+     *
+     * @param tokenizer the tokenizer positioned on the token
+     */
+    @Override
+    public void token(XMLTokenizer tokenizer) {
+        int type = tokenizer.tokenType();
+        if (type == XMLTokenizer.START_TAG) {
+            tagCount++;
+            open(tokenizer.nameId(symbols));
+        } else if (type == XMLTokenizer.END_TAG) {
+            tagCount++;
+            close(tokenizer.nameId(symbols), tokenizer.lineNumber(), tokenizer.column(), tokenizer.byteOffset());
+            if (isLimitReached()) {
+                tokenizer.stop();
+            }
+        } else if (type == XMLTokenizer.EMPTY_TAG) {
+            tagCount++;
+        }
+    }
+
+    /**
+     * Handles a tag scanned on another thread, as {@link #token} does for a
+     * tokenizer positioned on it.
+     *
+     * @param type the token type: a start, end or empty tag
+     * @param id the tag's symbol id; ignored for an empty tag
+     * @param lineNo the line the tag is on
+     * @param column the byte column of the tag
+     * @param offset the byte offset of the tag
+     * @return true if the error limit has been reached
+     */
+    boolean tag(int type, int id, int lineNo, int column, long offset) {
+        tagCount++;
+        if (type == XMLTokenizer.START_TAG) {
+            open(id);
+        } else if (type == XMLTokenizer.END_TAG) {
+            close(id, lineNo, column, offset);
+        }
+        return isLimitReached();
+    }
+
+    /**
+     * Pushes an opening tag onto the stack.
+     *
+     * @param id the opening tag's symbol id
+     */
+    void open(int id) {
+        if (depth == tagStack.length) {
+            tagStack = Arrays.copyOf(tagStack, depth * 2);
+        }
+        tagStack[depth++] = id;
+        if (depth > peakDepth) {
+            peakDepth = depth;
+        }
+        if (id >= openCount.length) {
+            openCount = Arrays.copyOf(openCount, Math.max(id + 1, openCount.length * 2));
+        }
+        openCount[id]++;
+    }
+
+    /**
+     * Records an opening tag that is already known to be unclosed at the
+     * given line.
+     *
+     * @param id the unclosed tag's symbol id
+     * @param lineNo the line of the closing tag that unwound it
+     * @param column the byte column of that closing tag
+     * @param offset the byte offset of that closing tag
+     */
+    void unclosed(int id, int lineNo, int column, long offset) {
+        if (!isLimitReached()) {
+            errorCount++;
+            unclosedCount++;
+            sink.unclosed(id, lineNo, column, offset);
+        }
+    }
+
+    /**
+     * Matches a closing tag against the stack. If the tag is open further
+     * down, every tag above it is reported as an error; if it is not open
+     * at all, the closing tag itself is reported.
+     *
+     * @param id the closing tag's symbol id
+     * @param lineNo the line the closing tag is on
+     * @param column the byte column of the closing tag
+     * @param offset the byte offset of the closing tag
+     */
+    void close(int id, int lineNo, int column, long offset) {
+        if (depth > 0 && tagStack[depth - 1] == id) {
+            pop();
+        } else if (isOpen(id)) {
+            Object recovery = FlightEvents.begin(FlightEvents.RECOVERY);
+            int before = depth;
+            // Pop intermediate tags as errors
+            while (tagStack[depth - 1] != id) {
+                unclosed(pop(), lineNo, column, offset);
+            }
+            pop();
+            FlightEvents.commit(recovery, before - depth, lineNo);
+        } else if (!isLimitReached()) {
+            errorCount++;
+            sink.unexpected(id, lineNo, column, offset);
+        }
+    }
+
+    /**
+     * Returns a copy of the ids on the stack, bottom first.
+     *
+     * @return the open tags
+     */
+    int[] stack() {
+        return Arrays.copyOf(tagStack, depth);
+    }
+
+    /**
+     * Returns true if the stack holds exactly the given ids, bottom first.
+     *
+     * @param ids a stack returned by {@link #stack()}
+     * @return true if the stacks are equal
+     */
+    boolean stackEquals(int[] ids) {
+        if (ids.length != depth) {
+            return false;
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            if (tagStack[i] != ids[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Pops the top tag, keeping the open tag index in step.
+     */
+    private int pop() {
+        int id = tagStack[--depth];
+        openCount[id]--;
+        return id;
+    }
+
+    /**
+     * Returns true if a tag with the given id is open anywhere on the stack.
+     */
+    private boolean isOpen(int id) {
+        return id < openCount.length && openCount[id] > 0;
+    }
+
+    /**
+     * Reports every tag still open at the end of the document, up to the
+     * error limit.
+     */
+    public void endOfInput() {
+        while (depth > 0 && !isLimitReached()) {
+            unclosed(pop(), EOF_LINE, 0, -1);
+        }
+    }
+
+    /**
+     * Returns the number of opening, closing and self-closing tags seen.
+     *
+     * @return tag count
+     */
+    public long tagCount() {
+        return tagCount;
+    }
+
+    /**
+     * Returns the deepest the stack of open tags has been.
+     *
+     * @return peak nesting depth
+     */
+    public int peakDepth() {
+        return peakDepth;
+    }
+
+    /**
+     * Returns the number of opening tags found to be unclosed.
+     *
+     * @return unclosed tag errors
+     */
+    public long unclosedCount() {
+        return unclosedCount;
+    }
+
+    /**
+     * Returns the number of closing tags that matched no open tag.
+     *
+     * @return unexpected tag errors
+     */
+    public long unexpectedCount() {
+        return errorCount - unclosedCount;
+    }
+
+    /**
+     * Adds the statistics of tags that were scanned elsewhere, such as the
+     * ranges of a parallel scan, and only replayed here in summary.
+     *
+     * @param tags number of tags scanned
+     * @param depth peak nesting depth of the scan
+     */
+    void addScanned(long tags, int depth) {
+        tagCount += tags;
+        peakDepth = Math.max(peakDepth, depth);
+    }
+
+    /**
+     * Returns true if no errors have been collected.
+     *
+     * @return true if the document is constructed correctly so far
+     */
+    public boolean isValid() {
+        return errorCount == 0;
+    }
+
+    /**
+     * Returns the number of errors found so far.
+     *
+     * @return error count
+     */
+    public long errorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Completes the report: prints the collected errors, or a success
+     * message if there are none. A streaming sink has already written most
+     * errors and only prints what it held back.
+     *
+     * @param out destination of the report
+     * @throws IOException if the sink cannot read back held errors
+     */
+    public void report(PrintStream out) throws IOException {
+        Object flush = FlightEvents.begin(FlightEvents.REPORT_FLUSH);
+        sink.finish(out);
+        FlightEvents.commit(flush, errorCount);
+    }
+
+    /**
+     * Builds the message for an opening tag that was never closed.
+     *
+     * @param tag the tag name
+     * @param line the line of the closing tag that unwound it, or EOF_LINE
+     * @return formatted error string
+     */
+    static String formatUnclosed(String tag, int line) {
+        return line == EOF_LINE ? formatErrorEOF(tag) : formatError(line, tag);
+    }
+
+    /**
+     * Builds the message for a closing tag that matches no open tag.
+     *
+     * @param tag the tag name, without the '/'
+     * @param line the line the closing tag is on
+     * @return formatted error string
+     */
+    static String formatUnexpected(String tag, int line) {
+        return formatError(line, "/" + tag);
+    }
+
+    /**
+     * Builds an error message for a mismatched or unexpected tag.
+     *
+     * @param line the line number of the error
+     * @param tag the tag name, prefixed with '/' if a closing tag
+     * @return formatted error string
+     */
+    private static String formatError(int line, String tag) {
+        return "Error at line " + line + " <" + tag + "> is not constructed correctly.";
+    }
+
+    /**
+     * Builds an error message for tags left unclosed at end of file.
+     *
+     * @param tag the tag name that was not closed
+     * @return formatted EOF error string
+     */
+    private static String formatErrorEOF(String tag) {
+        return "Error at EOF: <" + tag + "> is not constructed correctly.";
+    }
+}
@@ -0,0 +1,169 @@
+package appDomain;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable {@link CharSequence} over raw document bytes, handed to an
+ * {@link XMLEventHandler} so text events allocate nothing. The view is
+ * pointed at new bytes for every event and is only valid during the
+ * callback; call {@link #toString()} to keep the text.
+ * <p>
+ * Pure ASCII text, the common case, is read straight from the bytes.
+ * Anything else is decoded on first access with the document's charset
+ * into a reused char buffer; malformed bytes become U+FFFD.
+ */
+public final class TextView implements CharSequence {
+    private final CharsetDecoder decoder;
+    private byte[] bytes;
+    private int byteLength;
+    /** Undecided until first access, then whether the bytes are all ASCII. */
+    private boolean checked;
+    private boolean ascii;
+    private ByteBuffer in;
+    private CharBuffer chars = CharBuffer.allocate(0);
+
+    /**
+     * Creates a view decoding bytes with the given charset.
+     *
+     * @param charset charset of the bytes
+     */
+    public TextView(Charset charset) {
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Points the view at the first length bytes of a buffer.
+     *
+     * @param buf the bytes, not copied
+     * @param length number of bytes
+     */
+    void set(byte[] buf, int length) {
+        if (buf != bytes) {
+            bytes = buf;
+            in = ByteBuffer.wrap(buf);
+        }
+        byteLength = length;
+        checked = false;
+    }
+
+    /**
+     * Returns the number of raw bytes the view covers.
+     *
+     * @return length in bytes
+     */
+    public int byteLength() {
+        return byteLength;
+    }
+
+    @Override
+    public int length() {
+        check();
+        return ascii ? byteLength : chars.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        check();
+        if (ascii) {
+            if (index < 0 || index >= byteLength) {
+                throw new IndexOutOfBoundsException("Index " + index + ", length " + byteLength);
+            }
+            return (char) bytes[index];
+        }
+        return chars.get(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    /**
+     * Returns true if the view holds the same characters as the given
+     * sequence, without allocating.
+     *
+     * @param text the characters to compare with
+     * @return true if both hold the same characters
+     */
+    public boolean contentEquals(CharSequence text) {
+        int length = length();
+        if (text.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the text is only XML whitespace.
+     *
+     * @return true for whitespace between tags
+     */
+    public boolean isWhitespace() {
+        for (int i = 0; i < byteLength; i++) {
+            byte b = bytes[i];
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        check();
+        if (ascii) {
+            return new String(bytes, 0, byteLength, StandardCharsets.US_ASCII);
+        }
+        return chars.toString();
+    }
+
+    /**
+     * Decides on first access whether the bytes are ASCII, decoding them
+     * into the reused char buffer if they are not.
+     */
+    private void check() {
+        if (checked) {
+            return;
+        }
+        checked = true;
+        ascii = true;
+        for (int i = 0; i < byteLength; i++) {
+            if (bytes[i] < 0) {
+                ascii = false;
+                break;
+            }
+        }
+        if (!ascii) {
+            decode();
+        }
+    }
+
+    /**
+     * Decodes the bytes into the char buffer, growing it if needed.
+     */
+    private void decode() {
+        int capacity = (int) Math.ceil(byteLength * (double) decoder.maxCharsPerByte());
+        if (chars.capacity() < capacity) {
+            chars = CharBuffer.allocate(capacity);
+        }
+        in.clear();
+        in.limit(byteLength);
+        chars.clear();
+        decoder.reset();
+        decoder.decode(in, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+    }
+}
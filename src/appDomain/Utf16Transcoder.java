@@ -0,0 +1,167 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts a UTF-16 document to UTF-8 on the fly and feeds it to an
+ * {@link XMLTokenizer}, so UTF-16 files are scanned by the same byte-level
+ * state machine. The conversion is written out by hand instead of going
+ * through a CharsetDecoder: ASCII units, which make up the markup, take a
+ * single branch each. Input may be split anywhere, even inside a code unit
+ * or a surrogate pair. Unpaired surrogates become U+FFFD.
+ */
+public class Utf16Transcoder {
+    /** Size of the input and output buffers. */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean bigEndian;
+    private final XMLTokenizer tokenizer;
+    private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+    /** First byte of a code unit split across buffers, or -1. */
+    private int pendingByte = -1;
+    /** High surrogate waiting for its low surrogate, or 0. */
+    private int pendingHigh;
+
+    /**
+     * Creates a transcoder feeding the given tokenizer.
+     *
+     * @param bigEndian true for UTF-16BE, false for UTF-16LE
+     * @param tokenizer receiver of the UTF-8 bytes
+     */
+    public Utf16Transcoder(boolean bigEndian, XMLTokenizer tokenizer) {
+        this.bigEndian = bigEndian;
+        this.tokenizer = tokenizer;
+    }
+
+    /**
+     * Reads the whole stream through a reused buffer, converts and
+     * tokenizes it, then finishes the tokenizer. The stream is not closed.
+     *
+     * @param in source of UTF-16 bytes
+     * @throws IOException if reading fails
+     */
+    public void parse(InputStream in) throws IOException {
+        byte[] array = new byte[BUFFER_SIZE];
+        ByteBuffer buf = ByteBuffer.wrap(array);
+        int n;
+        while (!tokenizer.isStopped() && (n = in.read(array)) != -1) {
+            buf.clear();
+            buf.limit(n);
+            feed(buf);
+        }
+        finish();
+    }
+
+    /**
+     * Converts the bytes between the buffer's position and limit and feeds
+     * them to the tokenizer. On return the buffer's position equals its
+     * limit.
+     *
+     * @param src the next slice of the UTF-16 document
+     */
+    public void feed(ByteBuffer src) {
+        int i = src.position();
+        final int limit = src.limit();
+        byte[] o = out.array();
+        int w = 0;
+        if (pendingByte >= 0 && i < limit) {
+            int unit = bigEndian ? pendingByte << 8 | (src.get(i) & 0xFF) : (src.get(i) & 0xFF) << 8 | pendingByte;
+            pendingByte = -1;
+            i++;
+            w = put(unit, o, w);
+        }
+        while (limit - i >= 2) {
+            if (w > o.length - 8) {
+                w = drain(w);
+            }
+            int unit = bigEndian
+                    ? (src.get(i) & 0xFF) << 8 | (src.get(i + 1) & 0xFF)
+                    : (src.get(i + 1) & 0xFF) << 8 | (src.get(i) & 0xFF);
+            i += 2;
+            if (unit < 0x80 && pendingHigh == 0) {
+                o[w++] = (byte) unit;
+            } else {
+                w = put(unit, o, w);
+            }
+        }
+        if (i < limit) {
+            pendingByte = src.get(i) & 0xFF;
+        }
+        src.position(limit);
+        drain(w);
+    }
+
+    /**
+     * Signals the end of the document: a dangling high surrogate becomes
+     * U+FFFD, an odd trailing byte is dropped, and the tokenizer is finished.
+     */
+    public void finish() {
+        byte[] o = out.array();
+        int w = 0;
+        if (pendingHigh != 0) {
+            w = replacement(o, w);
+            pendingHigh = 0;
+        }
+        pendingByte = -1;
+        drain(w);
+        tokenizer.finish();
+    }
+
+    /**
+     * Encodes one UTF-16 code unit, pairing surrogates.
+     */
+    private int put(int unit, byte[] o, int w) {
+        if (pendingHigh != 0) {
+            if (unit >= 0xDC00 && unit <= 0xDFFF) {
+                int cp = 0x10000 + ((pendingHigh - 0xD800) << 10) + (unit - 0xDC00);
+                pendingHigh = 0;
+                o[w++] = (byte) (0xF0 | cp >> 18);
+                o[w++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                o[w++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                o[w++] = (byte) (0x80 | cp & 0x3F);
+                return w;
+            }
+            pendingHigh = 0;
+            w = replacement(o, w);
+        }
+        if (unit < 0x80) {
+            o[w++] = (byte) unit;
+        } else if (unit < 0x800) {
+            o[w++] = (byte) (0xC0 | unit >> 6);
+            o[w++] = (byte) (0x80 | unit & 0x3F);
+        } else if (unit >= 0xD800 && unit <= 0xDBFF) {
+            pendingHigh = unit;
+        } else if (unit >= 0xDC00 && unit <= 0xDFFF) {
+            w = replacement(o, w);
+        } else {
+            o[w++] = (byte) (0xE0 | unit >> 12);
+            o[w++] = (byte) (0x80 | unit >> 6 & 0x3F);
+            o[w++] = (byte) (0x80 | unit & 0x3F);
+        }
+        return w;
+    }
+
+    /**
+     * Writes U+FFFD.
+     */
+    private static int replacement(byte[] o, int w) {
+        o[w++] = (byte) 0xEF;
+        o[w++] = (byte) 0xBF;
+        o[w++] = (byte) 0xBD;
+        return w;
+    }
+
+    /**
+     * Feeds the first w converted bytes to the tokenizer and returns 0.
+     */
+    private int drain(int w) {
+        if (w > 0 && !tokenizer.isStopped()) {
+            out.clear();
+            out.limit(w);
+            tokenizer.feed(out);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,182 @@
+package appDomain;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide totals of the validations run: documents, bytes, tags, peak
+ * depth, errors by kind and a histogram of per-document latency.
+ * <p>
+ * A {@link TagValidator} counts into plain fields of its own while it
+ * scans, and its totals are added here once per document, so the scanning
+ * loop pays nothing. The totals are striped {@link LongAdder}s, cheap to
+ * update from many batch workers at once. {@link #register()} publishes
+ * them as an MXBean for JVM monitoring tools.
+ */
+public final class ValidationMetrics implements ValidationMetricsMXBean {
+    /** JMX name the metrics are registered under. */
+    public static final String OBJECT_NAME = "appDomain:type=ValidationMetrics";
+    /** Number of latency buckets; the last one holds everything slower. */
+    static final int BUCKETS = 40;
+
+    private static final ValidationMetrics GLOBAL = new ValidationMetrics();
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder tags = new LongAdder();
+    private final LongAccumulator peakDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder unclosed = new LongAdder();
+    private final LongAdder unexpected = new LongAdder();
+    private final LongAdder[] latency = new LongAdder[BUCKETS];
+
+    /**
+     * Creates an empty set of totals. Most callers share {@link #global()}.
+     */
+    public ValidationMetrics() {
+        for (int i = 0; i < BUCKETS; i++) {
+            latency[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the totals of this process, fed by {@link XMLParser} and the
+     * validation service.
+     *
+     * @return the shared metrics
+     */
+    public static ValidationMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Publishes the shared metrics on the platform MBean server. Calling
+     * it again does nothing.
+     *
+     * @throws JMException if the MXBean cannot be registered
+     */
+    public static void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(GLOBAL, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // already published
+        }
+    }
+
+    /**
+     * Adds one validated document to the totals.
+     *
+     * @param scanned number of bytes scanned
+     * @param validator the validator that checked the document
+     * @param nanos time the validation took
+     */
+    public void record(long scanned, TagValidator validator, long nanos) {
+        files.increment();
+        bytes.add(scanned);
+        tags.add(validator.tagCount());
+        peakDepth.accumulate(validator.peakDepth());
+        unclosed.add(validator.unclosedCount());
+        unexpected.add(validator.unexpectedCount());
+        latency[bucket(nanos / 1000)].increment();
+    }
+
+    @Override
+    public long getFilesValidated() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytesScanned() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getTagsScanned() {
+        return tags.sum();
+    }
+
+    @Override
+    public long getPeakDepth() {
+        return peakDepth.get();
+    }
+
+    @Override
+    public long getUnclosedErrors() {
+        return unclosed.sum();
+    }
+
+    @Override
+    public long getUnexpectedErrors() {
+        return unexpected.sum();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = latency[i].sum();
+        }
+        return counts;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public void reset() {
+        files.reset();
+        bytes.reset();
+        tags.reset();
+        peakDepth.reset();
+        unclosed.reset();
+        unexpected.reset();
+        for (LongAdder bucket : latency) {
+            bucket.reset();
+        }
+    }
+
+    /**
+     * Returns the bucket of a latency: the number of bits of the
+     * microseconds, so bucket i holds latencies below 2^i.
+     */
+    static int bucket(long micros) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given share of the
+     * documents, or 0 if there are none.
+     */
+    private long percentile(double share) {
+        long[] counts = getLatencyHistogram();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * share);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return 1L << i;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+}
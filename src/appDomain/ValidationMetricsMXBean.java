@@ -0,0 +1,78 @@
+package appDomain;
+
+/**
+ * Management interface of {@link ValidationMetrics}, published over JMX as
+ * {@value ValidationMetrics#OBJECT_NAME}. All values are totals since the
+ * start of the process or the last {@link #reset()}.
+ */
+public interface ValidationMetricsMXBean {
+    /**
+     * Returns the number of documents validated.
+     *
+     * @return document count
+     */
+    long getFilesValidated();
+
+    /**
+     * Returns the number of bytes scanned, after decompression.
+     *
+     * @return byte count
+     */
+    long getBytesScanned();
+
+    /**
+     * Returns the number of opening, closing and self-closing tags scanned.
+     *
+     * @return tag count
+     */
+    long getTagsScanned();
+
+    /**
+     * Returns the deepest nesting of open tags seen in any document.
+     *
+     * @return peak stack depth
+     */
+    long getPeakDepth();
+
+    /**
+     * Returns the number of opening tags reported as never closed.
+     *
+     * @return unclosed tag errors
+     */
+    long getUnclosedErrors();
+
+    /**
+     * Returns the number of closing tags reported as matching no open tag.
+     *
+     * @return unexpected tag errors
+     */
+    long getUnexpectedErrors();
+
+    /**
+     * Returns the per-document latency histogram: entry i counts documents
+     * that took less than 2^i microseconds, and at least 2^(i-1) for i &gt; 0.
+     *
+     * @return document counts per latency bucket
+     */
+    long[] getLatencyHistogram();
+
+    /**
+     * Returns the median document latency, as the upper bound of its bucket.
+     *
+     * @return latency in microseconds, or 0 if no document was validated
+     */
+    long getLatencyP50Micros();
+
+    /**
+     * Returns the 99th percentile of the document latency, as the upper
+     * bound of its bucket.
+     *
+     * @return latency in microseconds, or 0 if no document was validated
+     */
+    long getLatencyP99Micros();
+
+    /**
+     * Sets every total back to zero.
+     */
+    void reset();
+}
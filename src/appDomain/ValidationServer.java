@@ -0,0 +1,291 @@
+package appDomain;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP service that keeps one warm JVM validating documents. A client
+ * POSTs XML to {@value #PATH} and receives the same lines the command line
+ * prints for standard input with the same options: report format, streamed
+ * errors and error limit. The request body is tokenized as it arrives
+ * through a fixed read buffer, so documents are never held in memory, and
+ * each request runs on a virtual thread when the JVM provides them, or else
+ * on a fixed pool.
+ */
+public class ValidationServer implements HttpHandler {
+    /** Context path accepting documents. */
+    public static final String PATH = "/validate";
+
+    private final ParserOptions options;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a server bound to the loopback interface, answering with
+     * classic reports. It is not started.
+     *
+     * @param port port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public ValidationServer(int port) throws IOException {
+        this(defaults(port));
+    }
+
+    /**
+     * Creates a server bound to the loopback interface, validating
+     * documents as the command line options specify: --serve=PORT and the
+     * report options. It is not started.
+     *
+     * @param args command line options, including --serve=PORT
+     * @throws IOException if the port cannot be bound
+     * @throws IllegalArgumentException if an option is invalid or no port is given
+     */
+    public ValidationServer(String... args) throws IOException {
+        this(serveOptions(args));
+    }
+
+    /**
+     * Creates a server bound to the loopback interface on the options'
+     * port, validating documents as the options specify. It is not started.
+     *
+     * @param options port, report and pool settings
+     * @throws IOException if the port cannot be bound
+     */
+    ValidationServer(ParserOptions options) throws IOException {
+        this.options = options;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), options.servePort), 0);
+        server.createContext(PATH, this);
+        executor = newExecutor(options);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Returns options for the public constructor.
+     */
+    private static ParserOptions defaults(int port) {
+        ParserOptions options = new ParserOptions();
+        options.servePort = port;
+        return options;
+    }
+
+    /**
+     * Parses options for the command line constructor.
+     */
+    private static ParserOptions serveOptions(String[] args) {
+        ParserOptions options = ParserOptions.parse(args);
+        if (options.servePort < 0) {
+            throw new IllegalArgumentException("No port to serve on");
+        }
+        return options;
+    }
+
+    /**
+     * Starts accepting requests in the background.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits up to the given delay for running
+     * requests to finish.
+     *
+     * @param delaySeconds seconds to wait for running requests
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the port the server is bound to.
+     *
+     * @return the local port
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Validates the request body and writes the report as the response.
+     * Gzip bodies are inflated and the encoding is sniffed like a file's;
+     * a body in an unsupported format or encoding is answered with 415, and
+     * one that cannot be read to its end, such as corrupt gzip data, with
+     * 400. A validation failing otherwise, such as in its error sink, is
+     * answered with 500. The response starts with the report's first byte,
+     * so streamed errors reach the client while the body is still
+     * arriving; a body or validation failing after that ends the report,
+     * with an error line in text format.
+     *
+     * @param exchange the HTTP request and response
+     * @throws IOException if the connection fails
+     */
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendText(exchange, 405, "Only POST is supported.");
+                return;
+            }
+            PushbackInputStream body;
+            XMLEncoding encoding;
+            try {
+                body = new PushbackInputStream(CompressedInput.decompress(exchange.getRequestBody()), XMLEncoding.HEAD_SIZE);
+                encoding = XMLEncoding.detect(body);
+            } catch (UnsupportedEncodingException e) {
+                sendText(exchange, 415, e.getMessage());
+                return;
+            } catch (IOException e) {
+                sendUnreadable(exchange, e);
+                return;
+            }
+            long started = System.nanoTime();
+            ReportStream response = new ReportStream(exchange, options.format == ParserOptions.FORMAT_JSONL
+                    ? "application/x-ndjson" : "text/plain; charset=utf-8");
+            PrintStream out = new PrintStream(response, false, "UTF-8");
+            SymbolTable symbols = encoding.newSymbolTable();
+            // Named as standard input is in JSON records
+            TagValidator validator = new TagValidator(symbols, XMLParser.newSink(symbols, ParserOptions.STDIN, options, out));
+            validator.setErrorLimit(options.maxErrors);
+            XMLTokenizer tokenizer = new XMLTokenizer(validator);
+            try {
+                encoding.parse(body, tokenizer);
+            } catch (IOException e) {
+                if (!response.isStarted()) {
+                    sendUnreadable(exchange, e);
+                } else if (options.format == ParserOptions.FORMAT_TEXT) {
+                    out.println("Error: " + e.getMessage());
+                    out.flush();
+                }
+                return;
+            } catch (RuntimeException e) {
+                // Such as an UncheckedIOException or IllegalStateException from the sink
+                if (!response.isStarted()) {
+                    sendText(exchange, 500, "Validation failed: " + message(e));
+                } else if (options.format == ParserOptions.FORMAT_TEXT) {
+                    out.println("Error: " + message(e));
+                    out.flush();
+                }
+                return;
+            } finally {
+                body.close();
+            }
+            validator.endOfInput();
+            ValidationMetrics.global().record(tokenizer.bytesConsumed(), validator, System.nanoTime() - started);
+            XMLParser.finish(validator, null, options, out);
+            out.flush();
+            response.start();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the message of a failed validation: the I/O error's own for
+     * an unchecked I/O exception, else the exception itself.
+     */
+    private static String message(RuntimeException e) {
+        return e instanceof UncheckedIOException ? e.getCause().getMessage() : e.toString();
+    }
+
+    /**
+     * Answers a body that failed to read with 400 and the reason.
+     */
+    private static void sendUnreadable(HttpExchange exchange, IOException e) throws IOException {
+        sendText(exchange, 400, "Cannot read the document: " + e.getMessage());
+    }
+
+    /**
+     * Sends a short plain text response.
+     */
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Creates a virtual thread per request executor if the JVM supports it,
+     * otherwise a fixed pool of the threads asked for, or one per processor.
+     */
+    private static ExecutorService newExecutor(ParserOptions options) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = options.threads > 0 ? options.threads : Runtime.getRuntime().availableProcessors();
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+
+    /**
+     * Response body that sends the 200 headers on its first write, so a
+     * request can still be refused until the report starts. The exchange
+     * closes it.
+     */
+    private static final class ReportStream extends OutputStream {
+        private final HttpExchange exchange;
+        private final String contentType;
+        private OutputStream body;
+
+        ReportStream(HttpExchange exchange, String contentType) {
+            this.exchange = exchange;
+            this.contentType = contentType;
+        }
+
+        /**
+         * Sends the headers, if not sent yet.
+         */
+        void start() throws IOException {
+            if (body == null) {
+                exchange.getResponseHeaders().set("Content-Type", contentType);
+                exchange.sendResponseHeaders(200, 0);
+                body = exchange.getResponseBody();
+            }
+        }
+
+        /**
+         * Returns true once the headers have been sent.
+         */
+        boolean isStarted() {
+            return body != null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            start();
+            body.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            start();
+            body.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (body != null) {
+                body.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package appDomain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+/**
+ * Pull-style reader: the caller drives the scan with {@link #next()} and
+ * looks at one token at a time, instead of receiving callbacks. The
+ * tokenizer is fed from a reused read buffer and paused after every token,
+ * so the cursor never builds a String per tag: {@link #nameEquals} compares
+ * the raw name bytes still held by the tokenizer.
+ * <p>
+ * {@link #depth()} counts opening and closing tags without matching them;
+ * use {@link TagValidator} or {@link XMLEventParser} to check the document.
+ * {@link #skipSubtree()} lets the scan run unpaused until the current
+ * element is closed, so skipping costs no more than validating.
+ * <p>
+ * Documents in any encoding {@link XMLEncoding} scans as raw bytes are
+ * supported; UTF-16 documents are not, as they are converted in blocks.
+ */
+public class XMLCursor implements Closeable {
+    /** Returned by {@link #next()} once the document is exhausted. */
+    public static final int END_DOCUMENT = 0;
+
+    private final InputStream in;
+    private final XMLTokenizer tokenizer;
+    private final SymbolTable symbols;
+    private final ByteBuffer buffer = ByteBuffer.allocate(XMLTokenizer.BUFFER_SIZE);
+    private int type = -1;
+    private int depth;
+    /** Depth to skip back to, or -1 when not skipping. */
+    private int skipTo = -1;
+    /** Set by the listener when a token is ready for the caller. */
+    private boolean ready;
+    private boolean ended;
+
+    /**
+     * Opens a cursor on a stream, sniffing its encoding first. The cursor
+     * is positioned before the first token.
+     *
+     * @param source source of the document's bytes; closed by {@link #close()}
+     * @throws IOException if reading fails or the document is UTF-16 or in
+     *                     an unsupported encoding
+     */
+    public XMLCursor(InputStream source) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(source, XMLEncoding.HEAD_SIZE);
+        XMLEncoding encoding = XMLEncoding.detect(pushback);
+        if (encoding.isUtf16()) {
+            throw new UnsupportedEncodingException("The cursor does not support UTF-16 documents");
+        }
+        this.in = pushback;
+        this.symbols = encoding.newSymbolTable();
+        this.tokenizer = new XMLTokenizer(this::token);
+        buffer.limit(0);
+    }
+
+    /**
+     * Receives every token from the tokenizer: tracks the depth and, unless
+     * a subtree is being skipped, pauses the scan so next() can return.
+     */
+    private void token(XMLTokenizer t) {
+        int tokenType = t.tokenType();
+        if (tokenType == XMLTokenizer.START_TAG) {
+            depth++;
+        } else if (tokenType == XMLTokenizer.END_TAG && depth > 0) {
+            depth--;
+        }
+        if (skipTo >= 0) {
+            if (tokenType != XMLTokenizer.END_TAG || depth > skipTo) {
+                return;
+            }
+            skipTo = -1;
+        }
+        ready = true;
+        t.pause();
+    }
+
+    /**
+     * Advances to the next token.
+     *
+     * @return the token type, one of the {@link XMLTokenizer} token
+     *         constants, or {@link #END_DOCUMENT}
+     * @throws IOException if reading fails
+     */
+    public int next() throws IOException {
+        ready = false;
+        while (!ended) {
+            if (buffer.hasRemaining()) {
+                tokenizer.feed(buffer);
+                if (ready) {
+                    type = tokenizer.tokenType();
+                    return type;
+                }
+            } else {
+                int n = in.read(buffer.array());
+                if (n == -1) {
+                    tokenizer.finish();
+                    ended = true;
+                } else {
+                    buffer.clear();
+                    buffer.limit(n);
+                }
+            }
+        }
+        skipTo = -1;
+        type = END_DOCUMENT;
+        return type;
+    }
+
+    /**
+     * Skips to the closing tag of the current element, which becomes the
+     * current token; everything in between is scanned without stopping. On
+     * any other token than an opening tag this is the same as
+     * {@link #next()}.
+     *
+     * @return the token type after skipping, {@link XMLTokenizer#END_TAG}
+     *         or, for an unclosed element, {@link #END_DOCUMENT}
+     * @throws IOException if reading fails
+     */
+    public int skipSubtree() throws IOException {
+        if (type == XMLTokenizer.START_TAG) {
+            skipTo = depth - 1;
+        }
+        return next();
+    }
+
+    /**
+     * Returns the type of the current token.
+     *
+     * @return the token type, or {@link #END_DOCUMENT}
+     */
+    public int tokenType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of elements open around the current position: an
+     * opening tag counts itself, a closing tag does not.
+     *
+     * @return the nesting depth
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Returns the line the current token starts on.
+     *
+     * @return 1-based line number
+     */
+    public int lineNumber() {
+        return tokenizer.lineNumber();
+    }
+
+    /**
+     * Returns the 1-based byte column the current token starts at.
+     *
+     * @return byte column
+     */
+    public int column() {
+        return tokenizer.column();
+    }
+
+    /**
+     * Returns true if the current tag's name equals the given characters.
+     * ASCII names are compared byte for byte without allocating; other
+     * names through the symbol table.
+     *
+     * @param name the name to compare with
+     * @return true if the current token is a tag with that name
+     */
+    public boolean nameEquals(CharSequence name) {
+        if (type != XMLTokenizer.START_TAG && type != XMLTokenizer.END_TAG && type != XMLTokenizer.EMPTY_TAG) {
+            return false;
+        }
+        int len = tokenizer.nameLength();
+        if (len != name.length()) {
+            // A name of more bytes than chars may still match non-ASCII text
+            return len > name.length() && symbols.name(tokenizer.nameId(symbols)).contentEquals(name);
+        }
+        byte[] bytes = tokenizer.nameBuffer();
+        for (int i = 0; i < len; i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80 || bytes[i] < 0) {
+                return symbols.name(tokenizer.nameId(symbols)).contentEquals(name);
+            }
+            if (bytes[i] != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the current tag's name, interned: the same String is returned
+     * for every tag with that name.
+     *
+     * @return the tag name
+     */
+    public String name() {
+        return symbols.name(tokenizer.nameId(symbols));
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
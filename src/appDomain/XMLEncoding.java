@@ -0,0 +1,274 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The character encoding of a document, sniffed from its first bytes as
+ * the XML specification describes: a byte order mark, else the byte pattern
+ * of {@code <?} in UTF-16, else the {@code encoding} pseudo-attribute of the
+ * XML declaration, else UTF-8.
+ * <p>
+ * Every encoding in which ASCII characters are single bytes that never occur
+ * inside a multi-byte character (UTF-8, ASCII, the ISO-8859 and windows-125x
+ * families) is scanned as raw bytes; only tag names are decoded, once per
+ * distinct name, with the document's charset. UTF-16 is converted to UTF-8
+ * on the fly by a {@link Utf16Transcoder}, so line numbers stay correct;
+ * columns and offsets of a UTF-16 document count bytes of its UTF-8 form.
+ */
+public final class XMLEncoding {
+    /** Number of leading bytes examined. */
+    public static final int HEAD_SIZE = 1024;
+    /** Encoding of a document without BOM or encoding declaration. */
+    public static final XMLEncoding UTF_8 = new XMLEncoding(StandardCharsets.UTF_8, false, false);
+
+    private final Charset charset;
+    private final boolean utf16;
+    private final boolean bigEndian;
+
+    private XMLEncoding(Charset charset, boolean utf16, boolean bigEndian) {
+        this.charset = charset;
+        this.utf16 = utf16;
+        this.bigEndian = bigEndian;
+    }
+
+    /**
+     * Sniffs the encoding of a file from its first bytes.
+     *
+     * @param file the XML file
+     * @return the document's encoding
+     * @throws IOException if the file cannot be read or its encoding is
+     *                     not supported
+     */
+    public static XMLEncoding detect(Path file) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(HEAD_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (head.hasRemaining() && channel.read(head) > 0) {
+                // keep reading until the head is full or the file ends
+            }
+        }
+        return detect(head.array(), head.position());
+    }
+
+    /**
+     * Sniffs the encoding of a stream from its first bytes and pushes them
+     * back, so the stream can then be parsed from its start.
+     *
+     * @param in a stream with a pushback buffer of at least {@link #HEAD_SIZE}
+     * @return the document's encoding
+     * @throws IOException if the stream cannot be read or its encoding is
+     *                     not supported
+     */
+    public static XMLEncoding detect(PushbackInputStream in) throws IOException {
+        byte[] head = new byte[HEAD_SIZE];
+        int len = 0;
+        int n;
+        while (len < head.length && (n = in.read(head, len, head.length - len)) != -1) {
+            len += n;
+        }
+        in.unread(head, 0, len);
+        return detect(head, len);
+    }
+
+    /**
+     * Sniffs the encoding from the first bytes of a document.
+     *
+     * @param head the first bytes of the document
+     * @param len number of bytes in head
+     * @return the document's encoding
+     * @throws UnsupportedEncodingException if the encoding is not supported
+     */
+    public static XMLEncoding detect(byte[] head, int len) throws UnsupportedEncodingException {
+        int b0 = len > 0 ? head[0] & 0xFF : -1;
+        int b1 = len > 1 ? head[1] & 0xFF : -1;
+        int b2 = len > 2 ? head[2] & 0xFF : -1;
+        int b3 = len > 3 ? head[3] & 0xFF : -1;
+        if ((b0 == 0 && b1 == 0) || (b2 == 0 && b3 == 0 && b0 == '<')) {
+            throw new UnsupportedEncodingException("Unsupported encoding: UTF-32 or UCS-4");
+        }
+        if ((b0 == 0xFE && b1 == 0xFF) || (b0 == 0 && b1 == '<')) {
+            return new XMLEncoding(StandardCharsets.UTF_16BE, true, true);
+        }
+        if ((b0 == 0xFF && b1 == 0xFE) || (b0 == '<' && b1 == 0)) {
+            return new XMLEncoding(StandardCharsets.UTF_16LE, true, false);
+        }
+        int start = b0 == 0xEF && b1 == 0xBB && b2 == 0xBF ? 3 : 0;
+        String declared = declaredEncoding(head, start, len);
+        if (declared == null) {
+            return UTF_8;
+        }
+        Charset charset;
+        try {
+            charset = Charset.forName(declared);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new UnsupportedEncodingException("Unsupported encoding: " + declared);
+        }
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            return UTF_8;
+        }
+        if (start > 0 || charset.name().startsWith("UTF-16")) {
+            throw new UnsupportedEncodingException("Declared encoding " + declared + " does not match the document's bytes");
+        }
+        if (!isAsciiCompatible(charset)) {
+            throw new UnsupportedEncodingException("Unsupported encoding: " + declared);
+        }
+        return new XMLEncoding(charset, false, false);
+    }
+
+    /**
+     * Returns the charset of the document.
+     *
+     * @return the document's charset
+     */
+    public Charset charset() {
+        return charset;
+    }
+
+    /**
+     * Returns true if the document is UTF-16 and is converted to UTF-8
+     * before scanning, so byte offsets do not match the file.
+     *
+     * @return true for UTF-16 documents
+     */
+    public boolean isUtf16() {
+        return utf16;
+    }
+
+    /**
+     * Creates a symbol table decoding tag names as the tokenizer will see
+     * them: in the document's charset, or as UTF-8 for UTF-16 documents.
+     *
+     * @return a new, empty table
+     */
+    public SymbolTable newSymbolTable() {
+        return new SymbolTable(utf16 ? StandardCharsets.UTF_8 : charset);
+    }
+
+    /**
+     * Tokenizes a whole stream in this encoding, then finishes the
+     * tokenizer. The stream is not closed.
+     *
+     * @param in source of the document's bytes
+     * @param tokenizer receiver of the document
+     * @throws IOException if reading fails
+     */
+    public void parse(InputStream in, XMLTokenizer tokenizer) throws IOException {
+        if (utf16) {
+            new Utf16Transcoder(bigEndian, tokenizer).parse(in);
+        } else {
+            tokenizer.parse(in);
+        }
+    }
+
+    /**
+     * Maps and tokenizes a whole file in this encoding, then finishes the
+     * tokenizer.
+     *
+     * @param file the XML file
+     * @param tokenizer receiver of the document
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public void scan(Path file, XMLTokenizer tokenizer) throws IOException {
+        if (!utf16) {
+            MappedInput.scan(file, tokenizer);
+            return;
+        }
+        Utf16Transcoder transcoder = new Utf16Transcoder(bigEndian, tokenizer);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long pos = 0; pos < size && !tokenizer.isStopped(); pos += MappedInput.WINDOW_SIZE) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MappedInput.WINDOW_SIZE, size - pos));
+                transcoder.feed(window);
+            }
+        }
+        transcoder.finish();
+    }
+
+    @Override
+    public String toString() {
+        return charset.name();
+    }
+
+    /**
+     * Returns the value of the encoding pseudo-attribute of an XML
+     * declaration at the given offset, or null if there is none.
+     */
+    private static String declaredEncoding(byte[] head, int start, int len) {
+        byte[] open = { '<', '?', 'x', 'm', 'l' };
+        if (len - start < open.length + 1 || !regionMatches(head, start, open)) {
+            return null;
+        }
+        byte[] name = { 'e', 'n', 'c', 'o', 'd', 'i', 'n', 'g' };
+        int i = start + open.length;
+        while (i < len && head[i] != '>') {
+            if (head[i] == 'e' && regionMatches(head, i, name) && i + name.length < len) {
+                int j = i + name.length;
+                while (j < len && isSpace(head[j])) {
+                    j++;
+                }
+                if (j < len && head[j] == '=') {
+                    j++;
+                    while (j < len && isSpace(head[j])) {
+                        j++;
+                    }
+                    if (j < len && (head[j] == '"' || head[j] == '\'')) {
+                        byte quote = head[j++];
+                        int valueStart = j;
+                        while (j < len && head[j] != quote) {
+                            j++;
+                        }
+                        if (j < len) {
+                            return new String(head, valueStart, j - valueStart, StandardCharsets.US_ASCII);
+                        }
+                    }
+                }
+            }
+            i++;
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the bytes at the offset equal the expected bytes.
+     */
+    private static boolean regionMatches(byte[] buf, int off, byte[] expected) {
+        if (off + expected.length > buf.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buf[off + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true for the whitespace allowed inside an XML declaration.
+     */
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Returns true if ASCII characters are single bytes in the charset and
+     * its multi-byte characters never contain bytes below 0x80, so markup
+     * can be found in the raw bytes.
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        String name = charset.name();
+        return charset.equals(StandardCharsets.US_ASCII) || name.startsWith("ISO-8859-")
+                || name.startsWith("windows-125") || name.startsWith("KOI8-");
+    }
+}
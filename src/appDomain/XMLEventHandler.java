@@ -0,0 +1,69 @@
+package appDomain;
+
+/**
+ * Receives the events of an {@link XMLEventParser} as the document is
+ * scanned, in document order. Every method does nothing by default, so a
+ * handler only overrides what it needs.
+ * <p>
+ * Names and text are passed as {@link CharSequence} views that are reused
+ * between events: they are only valid during the call. Tag names are the
+ * strings cached by the parser's {@link SymbolTable}, so keeping one is
+ * free; text must be copied with {@code toString()} to be kept.
+ */
+public interface XMLEventHandler {
+    /** Error kind of an opening tag that was never closed. */
+    int ERROR_UNCLOSED = 1;
+    /** Error kind of a closing tag that matches no open tag. */
+    int ERROR_UNEXPECTED = 2;
+
+    /**
+     * Called for an opening tag such as {@code <a x="1">}.
+     *
+     * @param name the tag name
+     * @param line the line the tag starts on
+     */
+    default void startTag(CharSequence name, int line) {
+    }
+
+    /**
+     * Called for a closing tag such as {@code </a>}, after any error it
+     * causes.
+     *
+     * @param name the tag name, without the '/'
+     * @param line the line the tag starts on
+     */
+    default void endTag(CharSequence name, int line) {
+    }
+
+    /**
+     * Called for a self-closing tag such as {@code <a/>}.
+     *
+     * @param name the tag name
+     * @param line the line the tag starts on
+     */
+    default void emptyTag(CharSequence name, int line) {
+    }
+
+    /**
+     * Called for the raw text between two pieces of markup, whitespace
+     * included. Entity references are not expanded and comments, CDATA
+     * sections and declarations are not reported.
+     *
+     * @param text the text; valid during this call only
+     * @param line the line the text starts on
+     */
+    default void text(TextView text, int line) {
+    }
+
+    /**
+     * Called for every tag mismatch, exactly as {@link TagValidator} finds
+     * them.
+     *
+     * @param kind {@link #ERROR_UNCLOSED} or {@link #ERROR_UNEXPECTED}
+     * @param name the tag name
+     * @param line the line of the closing tag that revealed the error, or
+     *             {@link TagValidator#EOF_LINE} at the end of the document
+     */
+    default void error(int kind, CharSequence name, int line) {
+    }
+}
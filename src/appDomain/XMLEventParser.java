@@ -0,0 +1,137 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Push-style parser: scans a document with the same tokenizer and tag
+ * matching as {@link XMLParser} and calls an {@link XMLEventHandler} for
+ * every tag, text run and tag mismatch, so other tools can build on the
+ * scanner without copying it.
+ * <p>
+ * Events allocate nothing in the steady state. Tag names are interned in a
+ * {@link SymbolTable} and passed as its cached strings; text is passed as a
+ * reused {@link TextView} over the tokenizer's own buffer. The encoding is
+ * sniffed as {@link XMLEncoding} describes; UTF-16 documents are converted
+ * to UTF-8 before scanning.
+ */
+public class XMLEventParser {
+    private final XMLEventHandler handler;
+    private SymbolTable symbols;
+    private TagValidator validator;
+    private TextView text;
+
+    /**
+     * Receives the tokens of one document and turns them into events.
+     */
+    private final class Events implements XMLTokenizer.TokenListener, ErrorSink {
+        /**
+         * Calls the handler for tags and text; closing tags are matched
+         * first, so their errors come before them.
+         */
+        @Override
+        public void token(XMLTokenizer tokenizer) {
+            switch (tokenizer.tokenType()) {
+                case XMLTokenizer.START_TAG: {
+                    int id = tokenizer.nameId(symbols);
+                    validator.open(id);
+                    handler.startTag(symbols.name(id), tokenizer.lineNumber());
+                    break;
+                }
+                case XMLTokenizer.END_TAG: {
+                    int id = tokenizer.nameId(symbols);
+                    validator.close(id, tokenizer.lineNumber(), tokenizer.column(), tokenizer.byteOffset());
+                    handler.endTag(symbols.name(id), tokenizer.lineNumber());
+                    break;
+                }
+                case XMLTokenizer.EMPTY_TAG:
+                    handler.emptyTag(symbols.name(tokenizer.nameId(symbols)), tokenizer.lineNumber());
+                    break;
+                case XMLTokenizer.TEXT:
+                    text.set(tokenizer.textBuffer(), tokenizer.textLength());
+                    handler.text(text, tokenizer.lineNumber());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void unclosed(int id, int line, int column, long offset) {
+            handler.error(XMLEventHandler.ERROR_UNCLOSED, symbols.name(id), line);
+        }
+
+        @Override
+        public void unexpected(int id, int line, int column, long offset) {
+            handler.error(XMLEventHandler.ERROR_UNEXPECTED, symbols.name(id), line);
+        }
+
+        @Override
+        public void finish(PrintStream out) {
+            // errors were all handed to the handler as they were found
+        }
+    }
+
+    /**
+     * Creates a parser calling the given handler.
+     *
+     * @param handler receiver of the events
+     */
+    public XMLEventParser(XMLEventHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Parses a whole stream, sniffing its encoding first. Tags left open
+     * at the end are reported as errors last. The stream is not closed.
+     *
+     * @param in source of the document's bytes
+     * @throws IOException if reading fails or the encoding is not supported
+     */
+    public void parse(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, XMLEncoding.HEAD_SIZE);
+        XMLEncoding encoding = XMLEncoding.detect(pushback);
+        encoding.parse(pushback, start(encoding));
+        validator.endOfInput();
+    }
+
+    /**
+     * Parses a whole file, mapped into memory, sniffing its encoding first.
+     * Tags left open at the end are reported as errors last.
+     *
+     * @param file the XML file
+     * @throws IOException if the file cannot be read or its encoding is
+     *                     not supported
+     */
+    public void parse(Path file) throws IOException {
+        XMLEncoding encoding = XMLEncoding.detect(file);
+        encoding.scan(file, start(encoding));
+        validator.endOfInput();
+    }
+
+    /**
+     * Returns the number of tag mismatches found by the last parse.
+     *
+     * @return error count
+     */
+    public long errorCount() {
+        return validator == null ? 0 : validator.errorCount();
+    }
+
+    /**
+     * Sets up the state of a new document and returns its tokenizer.
+     */
+    private XMLTokenizer start(XMLEncoding encoding) {
+        Events events = new Events();
+        symbols = encoding.newSymbolTable();
+        validator = new TagValidator(symbols, events);
+        text = new TextView(encoding.isUtf16() ? StandardCharsets.UTF_8 : encoding.charset());
+        XMLTokenizer tokenizer = new XMLTokenizer(events);
+        tokenizer.setTextCapture(true);
+        return tokenizer;
+    }
+}
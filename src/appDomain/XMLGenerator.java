@@ -0,0 +1,517 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Writes synthetic XML documents of any size for benchmarks and load
+ * tests. The same seed and settings always give the same bytes. Elements
+ * are generated depth first and written through one reused buffer, so
+ * memory use depends on the nesting depth only, never on the size.
+ * <p>
+ * Tag errors can be injected at a given rate, in the kinds
+ * {@link XMLParser} reports: mismatched closing tags, unclosed tags, stray
+ * closing tags and interleaved pairs such as {@code <b><i></b></i>}.
+ */
+public class XMLGenerator {
+    /** Error kind: an element closed with another tag's name. */
+    public static final int MISMATCHED = 1;
+    /** Error kind: an element whose closing tag is left out. */
+    public static final int UNCLOSED = 2;
+    /** Error kind: a closing tag whose element is not open. */
+    public static final int STRAY = 4;
+    /** Error kind: an element and its parent closed in the wrong order. */
+    public static final int INTERLEAVED = 8;
+    /** All error kinds. */
+    public static final int ALL_ERRORS = MISMATCHED | UNCLOSED | STRAY | INTERLEAVED;
+
+    /** Exit status when the document cannot be written, leaving it missing or partial. */
+    static final int EXIT_WRITE_FAILED = 3;
+
+    /** Usage text printed when the arguments cannot be parsed. */
+    static final String USAGE = "Usage: java appDomain.XMLGenerator [options] <output_file>\n"
+            + "  --size=N[k|m|g]      size of the document in bytes (default 1m)\n"
+            + "  --seed=N             seed of the random generator (default 1)\n"
+            + "  --depth=N            maximum nesting depth (default 8)\n"
+            + "  --fan-out=N          maximum children per element (default 8)\n"
+            + "  --vocabulary=N       number of distinct tag names (default 32)\n"
+            + "  --attributes=N       maximum attributes per tag (default 2)\n"
+            + "  --line-length=N      start a new line after N bytes (default 80)\n"
+            + "  --error-rate=R       share of elements with a tag error (default 0)";
+
+    private static final byte[] HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ROOT = "root".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STRAY_NAME = "stray".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WORDS = "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod tempor "
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private long seed = 1;
+    private int depth = 8;
+    private int fanOut = 8;
+    private int vocabulary = 32;
+    private int attributes = 2;
+    private int lineLength = 80;
+    private double errorRate;
+    private int errorKinds = ALL_ERRORS;
+
+    // === State of the document being written ===
+    private OutputStream out;
+    private final byte[] buf = new byte[64 * 1024];
+    private int count;
+    private long written;
+    private int column;
+    private long tags;
+    private long errors;
+    private SplittableRandom random;
+    private byte[][] names;
+
+    /**
+     * Sets the seed; the same seed and settings give the same document.
+     *
+     * @param seed seed of the random generator
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the maximum nesting depth, the root element included.
+     *
+     * @param depth maximum depth, at least 1
+     */
+    public void setDepth(int depth) {
+        this.depth = atLeast(1, depth, "Depth");
+    }
+
+    /**
+     * Sets the maximum number of children of an element. Every element
+     * gets between none and this many, so the root keeps taking children
+     * until the document has its size.
+     *
+     * @param fanOut maximum children per element, at least 1
+     */
+    public void setFanOut(int fanOut) {
+        this.fanOut = atLeast(1, fanOut, "Fan-out");
+    }
+
+    /**
+     * Sets the number of distinct tag names.
+     *
+     * @param vocabulary number of names, at least 1
+     */
+    public void setVocabulary(int vocabulary) {
+        this.vocabulary = atLeast(1, vocabulary, "Vocabulary");
+    }
+
+    /**
+     * Sets the maximum number of attributes on an opening tag; every tag
+     * gets between none and this many.
+     *
+     * @param attributes maximum attributes per tag
+     */
+    public void setAttributes(int attributes) {
+        this.attributes = atLeast(0, attributes, "Attribute count");
+    }
+
+    /**
+     * Sets the length after which a line is ended between two tags.
+     *
+     * @param lineLength line length in bytes, at least 1
+     */
+    public void setLineLength(int lineLength) {
+        this.lineLength = atLeast(1, lineLength, "Line length");
+    }
+
+    /**
+     * Sets the share of elements whose closing tag is broken.
+     *
+     * @param errorRate probability from 0 to 1
+     */
+    public void setErrorRate(double errorRate) {
+        if (!(errorRate >= 0 && errorRate <= 1)) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1");
+        }
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Sets the kinds of errors injected, picked at random for each error.
+     *
+     * @param errorKinds a combination of the error kind constants
+     */
+    public void setErrorKinds(int errorKinds) {
+        if (errorKinds == 0 || (errorKinds & ~ALL_ERRORS) != 0) {
+            throw new IllegalArgumentException("Unknown error kinds: " + errorKinds);
+        }
+        this.errorKinds = errorKinds;
+    }
+
+    /**
+     * Writes a document of at least the given size to a file. The document
+     * ends with the element that reaches the size, then closes the elements
+     * still open.
+     *
+     * @param file the file to write, replaced if it exists
+     * @param size size of the document in bytes
+     * @throws IOException if the file cannot be written
+     */
+    public void generate(Path file, long size) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file)) {
+            generate(stream, size);
+        }
+    }
+
+    /**
+     * Writes a document of at least the given size to a stream. The stream
+     * is flushed but not closed.
+     *
+     * @param stream destination of the document
+     * @param size size of the document in bytes
+     * @throws IOException if writing fails
+     */
+    public void generate(OutputStream stream, long size) throws IOException {
+        out = stream;
+        count = 0;
+        written = 0;
+        column = 0;
+        tags = 0;
+        errors = 0;
+        random = new SplittableRandom(seed);
+        names = vocabulary();
+
+        byte[][] nameStack = new byte[depth][];
+        int[] children = new int[depth];
+        write(HEADER);
+        column = 0;
+        openTag(ROOT, false);
+        nameStack[0] = ROOT;
+        children[0] = Integer.MAX_VALUE;
+        int top = 0;
+        while (true) {
+            if (children[top] > 0 && top + 1 < depth && written + count < size) {
+                if (top > 0) {
+                    children[top]--;
+                }
+                separator();
+                byte[] name = names[random.nextInt(names.length)];
+                if (random.nextInt(4) == 0) {
+                    openTag(name, true);
+                    continue;
+                }
+                openTag(name, false);
+                nameStack[++top] = name;
+                int n = top + 1 == depth ? 0 : random.nextInt(fanOut + 1);
+                if (n == 0) {
+                    text();
+                }
+                children[top] = n;
+            } else if (top == 0) {
+                separator();
+                closeTag(ROOT);
+                break;
+            } else {
+                separator();
+                top = close(nameStack, top);
+            }
+        }
+        write((byte) '\n');
+        out.write(buf, 0, count);
+        written += count;
+        count = 0;
+        out.flush();
+    }
+
+    /**
+     * Returns the size of the last document generated.
+     *
+     * @return bytes written
+     */
+    public long bytesWritten() {
+        return written;
+    }
+
+    /**
+     * Returns the number of tags in the last document generated: opening,
+     * closing and self-closing tags each count once.
+     *
+     * @return tag count
+     */
+    public long tagCount() {
+        return tags;
+    }
+
+    /**
+     * Returns the number of errors injected into the last document. The
+     * validator may report more, as one broken tag can unwind several.
+     *
+     * @return injected errors
+     */
+    public long injectedErrors() {
+        return errors;
+    }
+
+    /**
+     * Writes a document to the file named on the command line. Invalid
+     * arguments are reported on standard error with the exit status
+     * {@link XMLParser#EXIT_USAGE}, and a failed write with
+     * {@link #EXIT_WRITE_FAILED}.
+     *
+     * @param args options followed by the output file
+     */
+    public static void main(String[] args) {
+        XMLGenerator generator = new XMLGenerator();
+        long size = 1 << 20;
+        String file = null;
+        try {
+            for (String arg : args) {
+                String value = arg.substring(arg.indexOf('=') + 1);
+                if (arg.startsWith("--size=")) {
+                    size = ParserOptions.size(arg, value);
+                } else if (arg.startsWith("--seed=")) {
+                    generator.setSeed(Long.parseLong(value));
+                } else if (arg.startsWith("--depth=")) {
+                    generator.setDepth(ParserOptions.positive(arg, value));
+                } else if (arg.startsWith("--fan-out=")) {
+                    generator.setFanOut(ParserOptions.positive(arg, value));
+                } else if (arg.startsWith("--vocabulary=")) {
+                    generator.setVocabulary(ParserOptions.positive(arg, value));
+                } else if (arg.startsWith("--attributes=")) {
+                    generator.setAttributes(Integer.parseInt(value));
+                } else if (arg.startsWith("--line-length=")) {
+                    generator.setLineLength(ParserOptions.positive(arg, value));
+                } else if (arg.startsWith("--error-rate=")) {
+                    generator.setErrorRate(Double.parseDouble(value));
+                } else if (arg.startsWith("--") || file != null) {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                } else {
+                    file = arg;
+                }
+            }
+            if (file == null) {
+                throw new IllegalArgumentException("No output file given");
+            }
+        } catch (IllegalArgumentException e) {
+            // Kept off standard output, where the summary goes
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(XMLParser.EXIT_USAGE);
+        }
+        try {
+            generator.generate(Paths.get(file), size);
+            System.out.println("Wrote " + generator.bytesWritten() + " bytes, " + generator.tagCount() + " tags, "
+                    + generator.injectedErrors() + " injected error(s) to " + file);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(EXIT_WRITE_FAILED);
+        }
+    }
+
+    /**
+     * Closes the element on top of the stack, injecting an error at the
+     * configured rate, and returns the new top.
+     */
+    private int close(byte[][] nameStack, int top) throws IOException {
+        byte[] name = nameStack[top];
+        if (random.nextDouble() >= errorRate) {
+            closeTag(name);
+            return top - 1;
+        }
+        errors++;
+        switch (errorKind(top)) {
+            case MISMATCHED:
+                closeTag(otherName(name));
+                return top - 1;
+            case UNCLOSED:
+                return top - 1;
+            case STRAY:
+                closeTag(name);
+                closeTag(STRAY_NAME);
+                return top - 1;
+            default:
+                // Close the parent first; it takes no more children
+                closeTag(nameStack[top - 1]);
+                closeTag(name);
+                return top - 2;
+        }
+    }
+
+    /**
+     * Picks one of the enabled error kinds; interleaving needs a parent
+     * other than the root.
+     */
+    private int errorKind(int top) {
+        int kinds = top > 1 ? errorKinds : errorKinds & ~INTERLEAVED;
+        if (kinds == 0) {
+            kinds = STRAY;
+        }
+        int pick = random.nextInt(Integer.bitCount(kinds));
+        int kind = Integer.lowestOneBit(kinds);
+        for (int i = 0; i < pick; i++) {
+            kinds &= ~kind;
+            kind = Integer.lowestOneBit(kinds);
+        }
+        return kind;
+    }
+
+    /**
+     * Returns a tag name of the vocabulary other than the given one, or a
+     * made-up name if the vocabulary has a single name.
+     */
+    private byte[] otherName(byte[] name) {
+        if (names.length == 1) {
+            return STRAY_NAME;
+        }
+        byte[] other;
+        do {
+            other = names[random.nextInt(names.length)];
+        } while (other == name);
+        return other;
+    }
+
+    /**
+     * Writes a few words of text.
+     */
+    private void text() throws IOException {
+        int length = 1 + random.nextInt(24);
+        int from = random.nextInt(WORDS.length - length);
+        ensure(length);
+        System.arraycopy(WORDS, from, buf, count, length);
+        count += length;
+        column += length;
+    }
+
+    /**
+     * Writes an opening or self-closing tag with random attributes.
+     */
+    private void openTag(byte[] name, boolean empty) throws IOException {
+        write((byte) '<');
+        write(name);
+        int n = attributes == 0 ? 0 : random.nextInt(attributes + 1);
+        for (int i = 0; i < n; i++) {
+            ensure(24);
+            int start = count;
+            buf[count++] = ' ';
+            buf[count++] = 'a';
+            count = digits(i, count);
+            buf[count++] = '=';
+            buf[count++] = '"';
+            count = digits(random.nextInt(100000), count);
+            buf[count++] = '"';
+            column += count - start;
+        }
+        if (empty) {
+            write((byte) '/');
+        }
+        write((byte) '>');
+        tags++;
+    }
+
+    /**
+     * Writes a closing tag.
+     */
+    private void closeTag(byte[] name) throws IOException {
+        write((byte) '<');
+        write((byte) '/');
+        write(name);
+        write((byte) '>');
+        tags++;
+    }
+
+    /**
+     * Ends the line between two tags once it is long enough.
+     */
+    private void separator() throws IOException {
+        if (column >= lineLength) {
+            write((byte) '\n');
+        }
+    }
+
+    /**
+     * Builds the tag names: short lower-case words, distinct, from the seed.
+     */
+    private byte[][] vocabulary() {
+        byte[][] vocab = new byte[vocabulary][];
+        for (int i = 0; i < vocabulary; i++) {
+            int length = 1 + random.nextInt(8);
+            byte[] name = new byte[length + 10];
+            for (int j = 0; j < length; j++) {
+                name[j] = (byte) ('a' + random.nextInt(26));
+            }
+            // A numeric suffix keeps the names distinct
+            int end = digits(i, name, length);
+            vocab[i] = Arrays.copyOf(name, end);
+        }
+        return vocab;
+    }
+
+    /**
+     * Writes a non-negative number into the buffer and returns the new count.
+     */
+    private int digits(int n, int at) {
+        return digits(n, buf, at);
+    }
+
+    /**
+     * Writes a non-negative number of at most 10 digits into an array.
+     */
+    private static int digits(int n, byte[] into, int at) {
+        int start = at;
+        do {
+            into[at++] = (byte) ('0' + n % 10);
+            n /= 10;
+        } while (n > 0);
+        // Digits came out last first
+        for (int i = start, j = at - 1; i < j; i++, j--) {
+            byte b = into[i];
+            into[i] = into[j];
+            into[j] = b;
+        }
+        return at;
+    }
+
+    /**
+     * Appends bytes, flushing the buffer as needed.
+     */
+    private void write(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+        column += bytes.length;
+    }
+
+    /**
+     * Appends one byte, flushing the buffer as needed.
+     */
+    private void write(byte b) throws IOException {
+        ensure(1);
+        buf[count++] = b;
+        column = b == '\n' ? 0 : column + 1;
+    }
+
+    /**
+     * Makes room for n bytes by writing out the buffer if needed.
+     */
+    private void ensure(int n) throws IOException {
+        if (count + n > buf.length) {
+            out.write(buf, 0, count);
+            written += count;
+            count = 0;
+        }
+    }
+
+    /**
+     * Checks a lower bound of a setting.
+     */
+    private static int atLeast(int min, int value, String what) {
+        if (value < min) {
+            throw new IllegalArgumentException(what + " must be at least " + min);
+        }
+        return value;
+    }
+}
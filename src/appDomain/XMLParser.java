@@ -1,114 +1,394 @@
 package appDomain;
 
-import implementations.MyStack;
-import implementations.MyQueue;
-import utilities.StackADT;
-import utilities.QueueADT;
-import exceptions.EmptyQueueException;
-
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.JMException;
 
 /**
  * Parses an XML file and reports any mismatched or unclosed tags.
  */
 public class XMLParser {
+    /** Exit status when a file was rejected at the error limit without being read to the end. */
+    static final int EXIT_LIMIT_REACHED = 2;
+    /** Exit status when the command line options cannot be parsed. */
+    static final int EXIT_USAGE = 1;
+
     /**
      * Reads an XML file path from args, validates tag matching, and prints
      * errors with line information. If no errors are found, reports success.
+     * Several files, directories or file lists are validated as a batch;
+     * "-" validates standard input as it streams in.
+     * Exits with {@link #EXIT_USAGE} if the options are invalid and with
+     * {@link #EXIT_LIMIT_REACHED} if any file hit the error limit.
      *
-     * @param args args[0] must be the path to the XML file to parse
+     * @param args options followed by the paths of the XML files to parse
      */
     public static void main(String[] args) {
-        if (args.length < 1) {
-            System.out.println("Usage: java XMLParser <xml_file>");
+        // Buffered and flushed once, so streamed errors do not flush per line
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+        // Unbuffered descriptor: the tokenizer's fixed buffer is the only one
+        int status = run(args, new FileInputStream(FileDescriptor.in), out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs the command line with the given standard streams and returns
+     * its exit status instead of exiting. The validation service keeps
+     * running after this returns.
+     *
+     * @param args options followed by the paths of the XML files to parse
+     * @param stdin the document validated when the path is "-"
+     * @param out destination of the reports; flushed before returning
+     * @param err destination of option and I/O errors
+     * @return 0, {@link #EXIT_USAGE} if the options are invalid, or
+     *         {@link #EXIT_LIMIT_REACHED} if any file hit the error limit
+     */
+    public static int run(String[] args, InputStream stdin, PrintStream out, PrintStream err) {
+        ParserOptions options;
+        try {
+            options = ParserOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            if (args.length == 0) {
+                out.println(ParserOptions.USAGE);
+                out.flush();
+                return 0;
+            }
+            err.println(e.getMessage());
+            err.println(ParserOptions.USAGE);
+            return EXIT_USAGE;
+        }
+
+        startRecording(options, err);
+        if (options.jmx) {
+            try {
+                ValidationMetrics.register();
+            } catch (JMException e) {
+                err.println("Warning: metrics not published over JMX: " + e.getMessage());
+            }
+        }
+        if (options.cacheFile != null) {
+            try {
+                options.cache = ResultCache.load(Paths.get(options.cacheFile), options.cacheSize);
+            } catch (IOException e) {
+                err.println("Warning: results not cached: " + e.getMessage());
+            }
+        }
+
+        boolean limitReached = false;
+        try {
+            if (options.servePort >= 0) {
+                ValidationServer server = new ValidationServer(options);
+                server.start();
+                out.println("Listening on http://localhost:" + server.port() + ValidationServer.PATH);
+            } else if (options.watch) {
+                watch(options, out);
+            } else if (options.inputs.equals(Collections.singletonList(ParserOptions.STDIN))) {
+                limitReached = validate(ParserOptions.STDIN, CompressedInput.decompress(stdin), options, out);
+            } else if (options.isBatch()) {
+                limitReached = new BatchValidator(options).run(out);
+            } else {
+                limitReached = validate(options.inputs.get(0), options, out);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            out.flush();
+            err.println("Error: " + e.getMessage());
+        } finally {
+            out.flush();
+            if (options.servePort < 0) {
+                saveCache(options, err);
+                stopRecording(err);
+            }
+        }
+        return limitReached ? EXIT_LIMIT_REACHED : 0;
+    }
+
+    /**
+     * Validates files as they change in the input directories, until the
+     * JVM is stopped.
+     */
+    private static void watch(ParserOptions options, PrintStream out) throws IOException {
+        try (DirectoryWatcher watcher = new DirectoryWatcher(options, out)) {
+            for (String dir : options.inputs) {
+                watcher.watch(Paths.get(dir));
+            }
+            out.println("Watching " + String.join(", ", options.inputs) + " for changed XML files");
+            out.flush();
+            watcher.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the result cache back to its file, if one is used.
+     *
+     * @param options the options holding the cache
+     * @param err destination of the warning if the cache cannot be written
+     */
+    static void saveCache(ParserOptions options, PrintStream err) {
+        if (options.cache == null) {
+            return;
+        }
+        try {
+            options.cache.save(Paths.get(options.cacheFile));
+        } catch (IOException e) {
+            err.println("Warning: results not cached: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts the flight recording the options ask for, if any.
+     *
+     * @param options the options naming the recording's file
+     * @param err destination of the warning if no recording can be started
+     */
+    static void startRecording(ParserOptions options, PrintStream err) {
+        if (options.jfrFile == null) {
             return;
         }
+        try {
+            FlightEvents.start(Paths.get(options.jfrFile));
+        } catch (IOException e) {
+            err.println("Warning: " + e.getMessage());
+        }
+    }
 
-        String fileName = args[0];
-        StackADT<String> tagStack = new MyStack<>();
-        QueueADT<String> errors = new MyQueue<>();
-        QueueADT<String> extras = new MyQueue<>();
-        // Pattern: group(1)=leading slash, group(2)=tag name, group(3)=self-close slash
-        Pattern tagPattern = Pattern.compile("<(/?)([^\\s>/]+)(/?)>");
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
-            String line;
-            int lineNo = 0;
-            while ((line = reader.readLine()) != null) {
-                lineNo++;
-                Matcher matcher = tagPattern.matcher(line);
-                while (matcher.find()) {
-                    String slashOpen = matcher.group(1);
-                    String name = matcher.group(2);
-                    String slashClose = matcher.group(3);
-
-                    // Skip XML declarations and self-closing tags
-                    if (line.trim().startsWith("<?") && line.trim().endsWith("?>")) continue;
-                    if ("/".equals(slashClose)) continue;
-
-                    // Opening tag
-                    if (slashOpen.isEmpty()) {
-                        tagStack.push(name);
-                    } else {
-                        // Closing tag
-                        if (!tagStack.isEmpty() && name.equals(tagStack.peek())) {
-                            tagStack.pop();
-                        } else {
-                            int depth = tagStack.search(name);
-                            if (depth > 0) {
-                                // Pop intermediate tags as errors
-                                while (!name.equals(tagStack.peek())) {
-                                    errors.enqueue(formatError(lineNo, tagStack.pop()));
-                                }
-                                tagStack.pop();
-                            } else if (tagStack.isEmpty()) {
-                                extras.enqueue(formatError(lineNo, "/" + name));
-                            } else {
-                                extras.enqueue(formatError(lineNo, "/" + name));
-                            }
-                        }
-                    }
+    /**
+     * Writes the flight recording, if one was started. The validation
+     * service keeps running after main returns, so its recording is only
+     * written when the JVM exits.
+     *
+     * @param err destination of the warning if the recording cannot be written
+     */
+    static void stopRecording(PrintStream err) {
+        try {
+            FlightEvents.stop();
+        } catch (IOException e) {
+            err.println("Warning: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Validates one file and prints its report. With an error limit the
+     * file is read sequentially and closed as soon as the limit is reached;
+     * a parallel scan would only learn which errors come first after
+     * reading every range. UTF-16 and compressed files are also read
+     * sequentially, as they are converted on the way in. In pipeline mode
+     * reading, scanning, matching and reporting run on four threads. With a
+     * result cache, an unchanged file is not read at all: its cached errors
+     * are replayed into the report.
+     *
+     * @param fileName path of the XML file
+     * @param options how the file should be read
+     * @param out destination of the report
+     * @return true if the error limit was reached before the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    static boolean validate(String fileName, ParserOptions options, PrintStream out) throws IOException {
+        long started = System.nanoTime();
+        Path file = Paths.get(fileName);
+        if (options.cache != null) {
+            ResultCache.Result cached = options.cache.get(file, options.maxErrors);
+            if (cached != null) {
+                SymbolTable symbols = new SymbolTable();
+                ErrorSink sink = newSink(symbols, fileName, options, out);
+                cached.replay(symbols, sink);
+                sink.finish(out);
+                return limitMessage(cached.isLimitReached(), cached.errorCount(), options, out);
+            }
+        }
+        Object open = FlightEvents.begin(FlightEvents.FILE_OPEN);
+        if (CompressedInput.isCompressed(file)) {
+            // The raw stream is closed even if its header is rejected
+            try (InputStream raw = new FileInputStream(fileName)) {
+                ResultCache.HashingInputStream hashed = options.cache != null ? new ResultCache.HashingInputStream(raw) : null;
+                try (InputStream in = CompressedInput.decompress(hashed != null ? hashed : raw)) {
+                    FlightEvents.commit(open, fileName);
+                    return validate(fileName, file, hashed, in, options, out);
                 }
             }
-            // Any unclosed tags at EOF
-            while (!tagStack.isEmpty()) {
-                errors.enqueue(formatErrorEOF(tagStack.pop()));
+        }
+        XMLEncoding encoding = XMLEncoding.detect(file);
+        FlightEvents.commit(open, fileName);
+        SymbolTable symbols = encoding.newSymbolTable();
+        ResultCache.Recorder recorder = recorder(file, symbols, fileName, options, out);
+        ErrorSink sink = recorder != null ? recorder : newSink(symbols, fileName, options, out);
+        TagValidator validator = new TagValidator(symbols, options.pipeline ? PipelineValidator.reportStage(sink) : sink);
+        validator.setErrorLimit(options.maxErrors);
+        long scanned;
+        if (options.parallelism > 0 && options.maxErrors == 0 && !encoding.isUtf16()) {
+            // Chunks are scanned out of order and never stop early, so the
+            // cache hashes the whole file after the validation
+            ForkJoinPool pool = new ForkJoinPool(options.parallelism);
+            try {
+                scanned = Files.size(file);
+                long chunkSize = ParallelValidator.chunkSizeFor(scanned, options.parallelism);
+                new ParallelValidator(pool, chunkSize).validate(file, validator);
+            } finally {
+                pool.shutdown();
             }
-            // Print results
-            if (errors.isEmpty() && extras.isEmpty()) {
-                System.out.println("XML document is constructed correctly.");
+        } else if (options.pipeline) {
+            scanned = new PipelineValidator(validator).validate(open(fileName, recorder), encoding);
+        } else {
+            XMLTokenizer tokenizer = new XMLTokenizer(validator);
+            if (options.mapped && !encoding.isUtf16()) {
+                MappedInput.scan(file, tokenizer, recorder != null ? recorder.hash() : null);
+            } else if (options.mapped) {
+                // The transcoder scans copies of the windows, so the cache
+                // hashes the file itself
+                encoding.scan(file, tokenizer);
+            } else if (options.async && !encoding.isUtf16()) {
+                AsyncFileInput.scan(file, tokenizer, recorder != null ? recorder.hash() : null);
             } else {
-                while (!errors.isEmpty()) System.out.println(errors.dequeue());
-                while (!extras.isEmpty()) System.out.println(extras.dequeue());
+                try (InputStream in = open(fileName, recorder)) {
+                    encoding.parse(in, tokenizer);
+                }
             }
+            // Any unclosed tags at EOF
+            validator.endOfInput();
+            scanned = tokenizer.bytesConsumed();
+        }
+        ValidationMetrics.global().record(scanned, validator, System.nanoTime() - started);
+        return finish(validator, recorder, options, out);
+    }
 
-        } catch (IOException | EmptyQueueException e) {
-            System.err.println("Error: " + e.getMessage());
+    /**
+     * Validates a document read from a stream, such as a decompressed
+     * file, and prints its report. The stream is read sequentially whatever
+     * the options say and is not closed.
+     *
+     * @param name name of the document, written into JSON records
+     * @param in source of the document's bytes
+     * @param options the output options
+     * @param out destination of the report
+     * @return true if the error limit was reached before the end of the stream
+     * @throws IOException if the stream cannot be read
+     */
+    static boolean validate(String name, InputStream in, ParserOptions options, PrintStream out) throws IOException {
+        return validate(name, null, null, in, options, out);
+    }
+
+    /**
+     * Validates a stream read from a file, caching the result under the
+     * file if a cache is used.
+     *
+     * @param file the file the stream reads, or null if it is not a file
+     * @param hashed the stream reading the file's raw bytes, or null
+     */
+    private static boolean validate(String name, Path file, ResultCache.HashingInputStream hashed, InputStream in,
+            ParserOptions options, PrintStream out) throws IOException {
+        long started = System.nanoTime();
+        PushbackInputStream pushback = new PushbackInputStream(in, XMLEncoding.HEAD_SIZE);
+        XMLEncoding encoding = XMLEncoding.detect(pushback);
+        SymbolTable symbols = encoding.newSymbolTable();
+        ResultCache.Recorder recorder = file != null ? recorder(file, symbols, name, options, out) : null;
+        if (recorder != null && hashed != null) {
+            recorder.hashedBy(hashed);
         }
+        TagValidator validator = new TagValidator(symbols, recorder != null ? recorder : newSink(symbols, name, options, out));
+        validator.setErrorLimit(options.maxErrors);
+        XMLTokenizer tokenizer = new XMLTokenizer(validator);
+        encoding.parse(pushback, tokenizer);
+        validator.endOfInput();
+        ValidationMetrics.global().record(tokenizer.bytesConsumed(), validator, System.nanoTime() - started);
+        return finish(validator, recorder, options, out);
     }
 
     /**
-     * Builds an error message for a mismatched or unexpected tag.
+     * Creates the sink the options ask for, wrapped in a recorder of its
+     * errors if results are cached.
      *
-     * @param line the line number of the error
-     * @param tag the tag name, prefixed with '/' if a closing tag
-     * @return formatted error string
+     * @return the recorder, or null if results are not cached
      */
-    private static String formatError(int line, String tag) {
-        return "Error at line " + line + " <" + tag + "> is not constructed correctly.";
+    private static ResultCache.Recorder recorder(Path file, SymbolTable symbols, String fileName, ParserOptions options,
+            PrintStream out) throws IOException {
+        if (options.cache == null) {
+            return null;
+        }
+        return options.cache.record(file, options.maxErrors, symbols, newSink(symbols, fileName, options, out));
+    }
+
+    /**
+     * Opens a file for a sequential read. If its result is cached, the
+     * file is hashed as it is read, so it need not be read again.
+     */
+    private static InputStream open(String fileName, ResultCache.Recorder recorder) throws IOException {
+        InputStream in = new FileInputStream(fileName);
+        if (recorder == null) {
+            return in;
+        }
+        ResultCache.HashingInputStream hashed = new ResultCache.HashingInputStream(in);
+        recorder.hashedBy(hashed);
+        return hashed;
     }
 
     /**
-     * Builds an error message for tags left unclosed at end of file.
+     * Prints the report of a completed validation and caches its errors.
      *
-     * @param tag the tag name that was not closed
-     * @return formatted EOF error string
+     * @param validator the validator, after the end of its input
+     * @param recorder the recorder the errors went through, or null
+     * @param options the output options
+     * @param out destination of the report
+     * @return true if the error limit was reached
+     * @throws IOException if the result cannot be cached
      */
-    private static String formatErrorEOF(String tag) {
-        return "Error at EOF: <" + tag + "> is not constructed correctly.";
+    static boolean finish(TagValidator validator, ResultCache.Recorder recorder, ParserOptions options,
+            PrintStream out) throws IOException {
+        validator.report(out);
+        if (recorder != null) {
+            options.cache.put(recorder, validator.isLimitReached());
+        }
+        return limitMessage(validator.isLimitReached(), validator.errorCount(), options, out);
+    }
+
+    /**
+     * Prints that validation stopped at the error limit, if it did.
+     *
+     * @return true if the error limit was reached
+     */
+    private static boolean limitMessage(boolean limitReached, long errors, ParserOptions options, PrintStream out) {
+        if (limitReached && options.format == ParserOptions.FORMAT_TEXT) {
+            out.println("Validation stopped after " + errors + " error(s).");
+        }
+        return limitReached;
+    }
+
+    /**
+     * Creates the error sink the options ask for: the classic buffered
+     * report, errors streamed out as they are found, or JSON Lines records.
+     *
+     * @param symbols table the error ids refer to
+     * @param fileName name of the file, written into JSON records
+     * @param options the output options
+     * @param out destination of the report
+     * @return a new sink
+     */
+    static ErrorSink newSink(SymbolTable symbols, String fileName, ParserOptions options, PrintStream out) {
+        if (options.format == ParserOptions.FORMAT_JSONL) {
+            return new JsonLinesSink(symbols, fileName, Channels.newChannel(out));
+        }
+        if (options.streamErrors == ParserOptions.STREAM_UNORDERED) {
+            return new StreamingErrorSink(symbols, out);
+        }
+        if (options.streamErrors == ParserOptions.STREAM_ORDERED) {
+            return new StreamingErrorSink(symbols, out, options.reorderBuffer);
+        }
+        return new ErrorBuffer(symbols);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,880 @@
+package appDomain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single-pass, byte-level XML tokenizer implemented as a hand-written state
+ * machine. Input is pushed in buffers of any size; a token may span buffer
+ * boundaries and lines. Start, end, self-closing, declaration, processing
+ * instruction, comment, CDATA and DOCTYPE tokens are recognised, attributes
+ * (including quoted values containing '&gt;') are skipped, and line numbers
+ * are tracked as the bytes go by. No per-line or per-token objects are
+ * allocated; the tag name of the current token is kept in a reused buffer.
+ * <p>
+ * Text, attribute values, comments and CDATA sections are crossed eight
+ * bytes at a time: each long read from the buffer is tested for the byte
+ * that ends the run and for newlines at once, with SWAR arithmetic.
+ */
+public class XMLTokenizer {
+    /** Token type of an opening tag such as {@code <a x="1">}. */
+    public static final int START_TAG = 1;
+    /** Token type of a closing tag such as {@code </a>}. */
+    public static final int END_TAG = 2;
+    /** Token type of a self-closing tag such as {@code <a/>}. */
+    public static final int EMPTY_TAG = 3;
+    /** Token type of the XML declaration {@code <?xml ...?>}. */
+    public static final int DECLARATION = 4;
+    /** Token type of any other processing instruction {@code <?target ...?>}. */
+    public static final int PROCESSING_INSTRUCTION = 5;
+    /** Token type of a comment {@code <!-- ... -->}. */
+    public static final int COMMENT = 6;
+    /** Token type of a CDATA section {@code <![CDATA[ ... ]]>}. */
+    public static final int CDATA = 7;
+    /** Token type of a markup declaration such as {@code <!DOCTYPE ...>}. */
+    public static final int DOCTYPE = 8;
+    /** Token type of the text between two tokens; only reported when text capture is on. */
+    public static final int TEXT = 9;
+
+    /** Default size of the read buffer used by {@link #parse(InputStream)}. */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives tokens as they are recognised. The tokenizer passes itself so
+     * the listener can query the current token without any allocation.
+     */
+    public interface TokenListener {
+        /**
+         * Called once for every complete token.
+         *
+         * @param tokenizer the tokenizer positioned on the token
+         */
+        void token(XMLTokenizer tokenizer);
+    }
+
+    // === Scanner states ===
+    private static final int S_TEXT = 0;
+    private static final int S_LT = 1;
+    private static final int S_START_NAME = 2;
+    private static final int S_ATTRS = 3;
+    private static final int S_ATTR_DQ = 4;
+    private static final int S_ATTR_SQ = 5;
+    private static final int S_EMPTY_SLASH = 6;
+    private static final int S_END_NAME = 7;
+    private static final int S_END_TAIL = 8;
+    private static final int S_PI_NAME = 9;
+    private static final int S_PI_BODY = 10;
+    private static final int S_PI_Q = 11;
+    private static final int S_BANG = 12;
+    private static final int S_BANG_DASH = 13;
+    private static final int S_COMMENT = 14;
+    private static final int S_COMMENT_D1 = 15;
+    private static final int S_COMMENT_D2 = 16;
+    private static final int S_CDATA_OPEN = 17;
+    private static final int S_CDATA = 18;
+    private static final int S_CDATA_B1 = 19;
+    private static final int S_CDATA_B2 = 20;
+    private static final int S_DECL = 21;
+    private static final int S_DECL_DQ = 22;
+    private static final int S_DECL_SQ = 23;
+
+    /** Remainder of the "<![CDATA[" opener after "<!". */
+    private static final byte[] CDATA_OPEN = { '[', 'C', 'D', 'A', 'T', 'A', '[' };
+
+    // === Bytes ending a run, repeated in every byte of a long ===
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long NEWLINES = ONES * '\n';
+    private static final long LESS_THANS = ONES * '<';
+    private static final long DOUBLE_QUOTES = ONES * '"';
+    private static final long SINGLE_QUOTES = ONES * '\'';
+    private static final long DASHES = ONES * '-';
+    private static final long BRACKETS = ONES * ']';
+
+    private final TokenListener listener;
+    private int state;
+    /** Set by feedToBoundary: return as soon as the scanner is back in text. */
+    private boolean stopAtText;
+    /** Set by stop: no further tokens are scanned until reset. */
+    private boolean stopped;
+    /** Progress through CDATA_OPEN, or bracket depth inside a DOCTYPE. */
+    private int counter;
+
+    // === Position tracking ===
+    private long consumed;
+    private int line;
+    private long lineStart;
+
+    // === Current token ===
+    private int tokenType;
+    private int tokenLine;
+    private long tokenOffset;
+    private long tokenLineStart;
+    private byte[] nameBuf = new byte[64];
+    private int nameLen;
+
+    // === Text capture, off unless requested ===
+    private boolean captureText;
+    /** Bytes since the end of the last token; the text is a prefix of them. */
+    private byte[] textBuf;
+    private int textCount;
+    private int textLen;
+    private long textStart;
+    private int textLine;
+    private long textLineStart;
+    /** Buffer being fed, its index of offset 0, and the first byte not yet captured. */
+    private ByteBuffer feedBuf;
+    private long feedBase;
+    private int captureFrom;
+
+    private ByteBuffer readBuffer;
+
+    /**
+     * Creates a tokenizer that reports every token to the given listener.
+     *
+     * @param listener receiver of recognised tokens
+     */
+    public XMLTokenizer(TokenListener listener) {
+        this.listener = listener;
+        reset();
+    }
+
+    /**
+     * Returns the tokenizer to its initial state so it can scan a new
+     * document. Internal buffers are kept.
+     */
+    public void reset() {
+        state = S_TEXT;
+        counter = 0;
+        consumed = 0;
+        line = 1;
+        lineStart = 0;
+        tokenType = 0;
+        nameLen = 0;
+        stopped = false;
+        textCount = 0;
+        textLen = 0;
+        textStart = 0;
+        textLine = 1;
+        textLineStart = 0;
+    }
+
+    /**
+     * Turns reporting of text on or off. When on, the text between two
+     * tokens, or before the first or after the last, is reported as a
+     * {@link #TEXT} token just before the token that ends it; whitespace
+     * counts as text. Text is collected in a reused buffer, whole, so a
+     * single huge text run needs as much memory. Off by default, as tag
+     * matching does not need it.
+     *
+     * @param capture true to report text tokens
+     */
+    public void setTextCapture(boolean capture) {
+        captureText = capture;
+        if (capture && textBuf == null) {
+            textBuf = new byte[256];
+        }
+    }
+
+    /**
+     * Restarts the tokenizer between tokens at a known position of a
+     * document, so a scan can be resumed from a checkpoint instead of the
+     * first byte. The next buffer fed must start at that offset.
+     *
+     * @param offset offset of the next byte to scan
+     * @param line the line that byte is on
+     * @param lineStart offset of the first byte of that line
+     */
+    public void resume(long offset, int line, long lineStart) {
+        reset();
+        this.consumed = offset;
+        this.line = line;
+        this.lineStart = lineStart;
+        this.textStart = offset;
+        this.textLine = line;
+        this.textLineStart = lineStart;
+    }
+
+    /**
+     * Reads the whole stream through a reused buffer and tokenizes it.
+     * The stream is not closed.
+     *
+     * @param in source of XML bytes
+     * @throws IOException if reading fails
+     */
+    public void parse(InputStream in) throws IOException {
+        if (readBuffer == null) {
+            readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        byte[] array = readBuffer.array();
+        while (!stopped) {
+            Object fill = FlightEvents.begin(FlightEvents.BUFFER_FILL);
+            int n = in.read(array);
+            FlightEvents.commit(fill, n);
+            if (n == -1) {
+                break;
+            }
+            readBuffer.clear();
+            readBuffer.limit(n);
+            Object scan = FlightEvents.begin(FlightEvents.CHUNK_SCAN);
+            long offset = consumed;
+            feed(readBuffer);
+            FlightEvents.commit(scan, offset, consumed - offset);
+        }
+        finish();
+    }
+
+    /**
+     * Scans the bytes between the buffer's position and limit. Tokens that
+     * are incomplete at the limit are continued by the next call. On return
+     * the buffer's position equals its limit, unless the scan was stopped.
+     *
+     * @param buf the next slice of the document
+     */
+    public void feed(ByteBuffer buf) {
+        int i = buf.position();
+        final int limit = buf.limit();
+        final long base = consumed - i;
+        final boolean bigEndian = buf.order() == ByteOrder.BIG_ENDIAN;
+        feedBuf = buf;
+        feedBase = base;
+        captureFrom = i;
+        scan:
+        while (i < limit) {
+            byte b = buf.get(i);
+            switch (state) {
+                case S_TEXT:
+                    if (stopAtText || stopped) {
+                        stopAtText = false;
+                        if (captureText) {
+                            appendText(buf, i);
+                        }
+                        consumed = base + i;
+                        buf.position(i);
+                        return;
+                    }
+                    if (b != '<' && limit - i > 8) {
+                        i = skipTo(buf, i, limit, base, LESS_THANS, bigEndian);
+                        b = buf.get(i);
+                    }
+                    while (b != '<') {
+                        if (b == '\n') {
+                            line++;
+                            lineStart = base + i + 1;
+                        }
+                        if (++i == limit) {
+                            break scan;
+                        }
+                        b = buf.get(i);
+                    }
+                    tokenLine = line;
+                    tokenOffset = base + i;
+                    tokenLineStart = lineStart;
+                    state = S_LT;
+                    break;
+                case S_LT:
+                    nameLen = 0;
+                    if (b == '/') {
+                        state = S_END_NAME;
+                    } else if (b == '?') {
+                        state = S_PI_NAME;
+                    } else if (b == '!') {
+                        state = S_BANG;
+                    } else if (isNameTerminator(b) || b == '<') {
+                        // Not markup after all; rescan the byte as text
+                        state = S_TEXT;
+                        continue;
+                    } else {
+                        appendName(b);
+                        state = S_START_NAME;
+                    }
+                    break;
+                case S_START_NAME:
+                    if (b == '>') {
+                        emit(START_TAG, i);
+                    } else if (b == '/') {
+                        state = S_EMPTY_SLASH;
+                    } else if (b == '<') {
+                        state = S_TEXT;
+                        continue;
+                    } else if (isWhitespace(b)) {
+                        state = S_ATTRS;
+                    } else {
+                        appendName(b);
+                    }
+                    break;
+                case S_ATTRS:
+                    if (b == '>') {
+                        emit(START_TAG, i);
+                    } else if (b == '"') {
+                        state = S_ATTR_DQ;
+                    } else if (b == '\'') {
+                        state = S_ATTR_SQ;
+                    } else if (b == '/') {
+                        state = S_EMPTY_SLASH;
+                    } else if (b == '<') {
+                        state = S_TEXT;
+                        continue;
+                    }
+                    break;
+                case S_ATTR_DQ:
+                    if (b != '"' && limit - i > 8) {
+                        i = skipTo(buf, i, limit, base, DOUBLE_QUOTES, bigEndian);
+                        b = buf.get(i);
+                    }
+                    if (b == '"') {
+                        state = S_ATTRS;
+                    }
+                    break;
+                case S_ATTR_SQ:
+                    if (b != '\'' && limit - i > 8) {
+                        i = skipTo(buf, i, limit, base, SINGLE_QUOTES, bigEndian);
+                        b = buf.get(i);
+                    }
+                    if (b == '\'') {
+                        state = S_ATTRS;
+                    }
+                    break;
+                case S_EMPTY_SLASH:
+                    if (b == '>') {
+                        emit(EMPTY_TAG, i);
+                    } else {
+                        state = S_ATTRS;
+                        continue;
+                    }
+                    break;
+                case S_END_NAME:
+                    if (b == '>' && nameLen > 0) {
+                        emit(END_TAG, i);
+                    } else if (b == '<' || (nameLen == 0 && isNameTerminator(b))) {
+                        state = S_TEXT;
+                        continue;
+                    } else if (isNameTerminator(b)) {
+                        state = S_END_TAIL;
+                    } else {
+                        appendName(b);
+                    }
+                    break;
+                case S_END_TAIL:
+                    if (b == '>') {
+                        emit(END_TAG, i);
+                    } else if (b == '<') {
+                        state = S_TEXT;
+                        continue;
+                    }
+                    break;
+                case S_PI_NAME:
+                    if (b == '?') {
+                        state = S_PI_Q;
+                    } else if (isWhitespace(b)) {
+                        state = S_PI_BODY;
+                    } else {
+                        appendName(b);
+                    }
+                    break;
+                case S_PI_BODY:
+                    if (b == '?') {
+                        state = S_PI_Q;
+                    }
+                    break;
+                case S_PI_Q:
+                    if (b == '>') {
+                        emit(isXmlTarget() ? DECLARATION : PROCESSING_INSTRUCTION, i);
+                    } else if (b != '?') {
+                        state = S_PI_BODY;
+                    }
+                    break;
+                case S_BANG:
+                    if (b == '-') {
+                        state = S_BANG_DASH;
+                    } else if (b == '[') {
+                        counter = 1;
+                        state = S_CDATA_OPEN;
+                    } else {
+                        counter = 0;
+                        state = S_DECL;
+                        continue;
+                    }
+                    break;
+                case S_BANG_DASH:
+                    counter = 0;
+                    if (b == '-') {
+                        state = S_COMMENT;
+                    } else {
+                        state = S_DECL;
+                        continue;
+                    }
+                    break;
+                case S_COMMENT:
+                    if (b != '-' && limit - i > 8) {
+                        i = skipTo(buf, i, limit, base, DASHES, bigEndian);
+                        b = buf.get(i);
+                    }
+                    if (b == '-') {
+                        state = S_COMMENT_D1;
+                    }
+                    break;
+                case S_COMMENT_D1:
+                    state = b == '-' ? S_COMMENT_D2 : S_COMMENT;
+                    break;
+                case S_COMMENT_D2:
+                    if (b == '>') {
+                        emit(COMMENT, i);
+                    } else if (b != '-') {
+                        state = S_COMMENT;
+                    }
+                    break;
+                case S_CDATA_OPEN:
+                    if (b != CDATA_OPEN[counter]) {
+                        // Conditional section or other bracketed declaration
+                        counter = 1;
+                        state = S_DECL;
+                        continue;
+                    }
+                    if (++counter == CDATA_OPEN.length) {
+                        state = S_CDATA;
+                    }
+                    break;
+                case S_CDATA:
+                    if (b != ']' && limit - i > 8) {
+                        i = skipTo(buf, i, limit, base, BRACKETS, bigEndian);
+                        b = buf.get(i);
+                    }
+                    if (b == ']') {
+                        state = S_CDATA_B1;
+                    }
+                    break;
+                case S_CDATA_B1:
+                    state = b == ']' ? S_CDATA_B2 : S_CDATA;
+                    break;
+                case S_CDATA_B2:
+                    if (b == '>') {
+                        emit(CDATA, i);
+                    } else if (b != ']') {
+                        state = S_CDATA;
+                    }
+                    break;
+                case S_DECL:
+                    if (b == '[') {
+                        counter++;
+                    } else if (b == ']') {
+                        counter--;
+                    } else if (b == '"') {
+                        state = S_DECL_DQ;
+                    } else if (b == '\'') {
+                        state = S_DECL_SQ;
+                    } else if (b == '>' && counter <= 0) {
+                        emit(DOCTYPE, i);
+                    }
+                    break;
+                case S_DECL_DQ:
+                    if (b == '"') {
+                        state = S_DECL;
+                    }
+                    break;
+                case S_DECL_SQ:
+                    if (b == '\'') {
+                        state = S_DECL;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown scanner state " + state);
+            }
+            if (b == '\n') {
+                line++;
+                lineStart = base + i + 1;
+            }
+            i++;
+        }
+        if (captureText) {
+            // Keep text and tags that may yet turn out to be text; skip the
+            // bodies of comments, CDATA and other markup
+            appendText(buf, state <= S_END_TAIL ? limit : (int) Math.min(limit, tokenOffset - base));
+        }
+        consumed = base + limit;
+        buf.position(limit);
+    }
+
+    /**
+     * Scans only until the token in progress is complete, so that a range
+     * scanned by another tokenizer can be continued up to the next point
+     * where the scanner is between tokens. On return the buffer's position
+     * is the first byte not consumed.
+     *
+     * @param buf the next slice of the document
+     * @return true if a token boundary was reached within the buffer
+     */
+    public boolean feedToBoundary(ByteBuffer buf) {
+        if (state == S_TEXT) {
+            return true;
+        }
+        stopAtText = true;
+        feed(buf);
+        boolean reached = !stopAtText;
+        stopAtText = false;
+        return reached;
+    }
+
+    /**
+     * Makes {@link #feed(ByteBuffer)} return right after the current token,
+     * leaving the buffer's position after it. Unlike {@link #stop()} this
+     * holds for one return only: the next feed continues the scan. Called
+     * by a listener that pulls the document one token at a time.
+     */
+    void pause() {
+        stopAtText = true;
+    }
+
+    /**
+     * Stops the scan after the current token. Called by a listener that has
+     * seen enough: {@link #feed(ByteBuffer)} returns as soon as the token is
+     * complete, leaving the buffer's position after it, and
+     * {@link #parse(InputStream)} reads no further.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Returns true if {@link #stop()} was called since the last reset.
+     *
+     * @return true if the scan has been stopped
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Returns true if the scanner is in text content, i.e. not inside a tag,
+     * comment, CDATA section or other markup.
+     *
+     * @return true between tokens
+     */
+    public boolean isBetweenTokens() {
+        return state == S_TEXT;
+    }
+
+    /**
+     * Signals the end of the document. A token left open at this point is
+     * unterminated and is dropped.
+     */
+    public void finish() {
+        if (captureText) {
+            emitText(Math.min(textCount, consumed - textStart));
+            textCount = 0;
+            textStart = consumed;
+        }
+        state = S_TEXT;
+    }
+
+    /**
+     * Returns the type of the current token, one of the token constants.
+     *
+     * @return current token type
+     */
+    public int tokenType() {
+        return tokenType;
+    }
+
+    /**
+     * Returns the 1-based line on which the current token starts.
+     *
+     * @return line number of the token's '&lt;'
+     */
+    public int lineNumber() {
+        return tokenLine;
+    }
+
+    /**
+     * Returns the 1-based byte column at which the current token starts.
+     *
+     * @return column of the token's '&lt;'
+     */
+    public int column() {
+        return (int) (tokenOffset - tokenLineStart + 1);
+    }
+
+    /**
+     * Returns the 0-based byte offset of the current token in the document.
+     *
+     * @return offset of the token's '&lt;'
+     */
+    public long byteOffset() {
+        return tokenOffset;
+    }
+
+    /**
+     * Returns the number of bytes in the current token's name.
+     *
+     * @return name length in bytes
+     */
+    public int nameLength() {
+        return nameLen;
+    }
+
+    /**
+     * Returns the byte at the given index of the current token's name.
+     *
+     * @param index index into the name
+     * @return the raw name byte
+     */
+    public byte nameByteAt(int index) {
+        if (index < 0 || index >= nameLen) {
+            throw new IndexOutOfBoundsException();
+        }
+        return nameBuf[index];
+    }
+
+    /**
+     * Returns the number of bytes of the current {@link #TEXT} token.
+     *
+     * @return text length in bytes
+     */
+    public int textLength() {
+        return textLen;
+    }
+
+    /**
+     * Returns the byte at the given index of the current {@link #TEXT} token.
+     *
+     * @param index index into the text
+     * @return the raw text byte
+     */
+    public byte textByteAt(int index) {
+        if (index < 0 || index >= textLen) {
+            throw new IndexOutOfBoundsException();
+        }
+        return textBuf[index];
+    }
+
+    /**
+     * Returns the buffer holding the current token's name in its first
+     * {@link #nameLength()} bytes. Valid until the next token.
+     */
+    byte[] nameBuffer() {
+        return nameBuf;
+    }
+
+    /**
+     * Returns the buffer holding the current text token in its first
+     * {@link #textLength()} bytes. Valid until the next token.
+     */
+    byte[] textBuffer() {
+        return textBuf;
+    }
+
+    /**
+     * Returns the id of the current token's name in a symbol table. A name
+     * already in the table is looked up without allocating.
+     *
+     * @param symbols the table interning names
+     * @return the name's id
+     */
+    public int nameId(SymbolTable symbols) {
+        return symbols.intern(nameBuf, 0, nameLen);
+    }
+
+    /**
+     * Decodes the current token's name. This allocates a new String and is
+     * meant for reporting, not for the per-tag hot path.
+     *
+     * @return the tag or processing instruction target name
+     */
+    public String name() {
+        return new String(nameBuf, 0, nameLen, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of bytes scanned so far.
+     *
+     * @return total bytes consumed
+     */
+    public long bytesConsumed() {
+        return consumed;
+    }
+
+    /**
+     * Returns the line the scanner is currently on.
+     *
+     * @return 1-based current line
+     */
+    public int currentLine() {
+        return line;
+    }
+
+    /**
+     * Returns the offset of the first byte of the line the scanner is on.
+     *
+     * @return offset just past the last line break scanned, or 0
+     */
+    public long currentLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * Completes the current token and hands it to the listener, preceded by
+     * the text before it if text is captured.
+     *
+     * @param type the token type
+     * @param end index in the buffer being fed of the token's last byte
+     */
+    private void emit(int type, int end) {
+        if (captureText) {
+            appendText(feedBuf, (int) (tokenOffset - feedBase));
+            emitText(tokenOffset - textStart);
+        }
+        tokenType = type;
+        state = S_TEXT;
+        listener.token(this);
+        if (captureText) {
+            textCount = 0;
+            textStart = feedBase + end + 1;
+            textLine = line;
+            textLineStart = lineStart;
+            captureFrom = end + 1;
+        }
+    }
+
+    /**
+     * Reports the first length captured bytes as a text token, keeping the
+     * position of the token in progress.
+     */
+    private void emitText(long length) {
+        if (length <= 0) {
+            return;
+        }
+        int savedType = tokenType;
+        int savedLine = tokenLine;
+        long savedOffset = tokenOffset;
+        long savedLineStart = tokenLineStart;
+        tokenType = TEXT;
+        textLen = (int) length;
+        tokenLine = textLine;
+        tokenOffset = textStart;
+        tokenLineStart = textLineStart;
+        listener.token(this);
+        tokenType = savedType;
+        tokenLine = savedLine;
+        tokenOffset = savedOffset;
+        tokenLineStart = savedLineStart;
+    }
+
+    /**
+     * Appends the bytes of the buffer being fed from the first byte not yet
+     * captured up to, but excluding, the given index.
+     */
+    private void appendText(ByteBuffer buf, int to) {
+        int from = captureFrom;
+        if (to <= from) {
+            return;
+        }
+        int n = to - from;
+        if (textCount + n > textBuf.length) {
+            byte[] bigger = new byte[Math.max(textBuf.length * 2, textCount + n)];
+            System.arraycopy(textBuf, 0, bigger, 0, textCount);
+            textBuf = bigger;
+        }
+        if (buf.hasArray()) {
+            System.arraycopy(buf.array(), buf.arrayOffset() + from, textBuf, textCount, n);
+        } else {
+            for (int k = 0; k < n; k++) {
+                textBuf[textCount + k] = buf.get(from + k);
+            }
+        }
+        textCount += n;
+        captureFrom = to;
+    }
+
+    /**
+     * Appends a byte to the name buffer, growing it when full.
+     */
+    private void appendName(byte b) {
+        if (nameLen == nameBuf.length) {
+            byte[] bigger = new byte[nameBuf.length * 2];
+            System.arraycopy(nameBuf, 0, bigger, 0, nameLen);
+            nameBuf = bigger;
+        }
+        nameBuf[nameLen++] = b;
+    }
+
+    /**
+     * Returns true if the name buffer holds the reserved "xml" target.
+     */
+    private boolean isXmlTarget() {
+        return nameLen == 3 && nameBuf[0] == 'x' && nameBuf[1] == 'm' && nameBuf[2] == 'l';
+    }
+
+    /**
+     * Skips to the next byte equal to the one repeated in a pattern, eight
+     * bytes per step, counting the newlines skipped. The last one to eight
+     * bytes of the buffer are left to the byte loop.
+     *
+     * @param buf the buffer being scanned
+     * @param i index of the first byte to test
+     * @param limit the buffer's limit
+     * @param base document offset of index 0
+     * @param pattern the byte to find, in every byte of a long
+     * @param bigEndian true if the buffer reads longs high byte first
+     * @return the index of that byte, or of the first byte of the tail
+     */
+    private int skipTo(ByteBuffer buf, int i, int limit, long base, long pattern, boolean bigEndian) {
+        while (limit - i > 8) {
+            long word = buf.getLong(i);
+            long found = zeroBytes(word ^ pattern);
+            long newlines = zeroBytes(word ^ NEWLINES);
+            if (found != 0) {
+                int at = (bigEndian ? Long.numberOfLeadingZeros(found) : Long.numberOfTrailingZeros(found)) >>> 3;
+                // Only the newlines before the byte found
+                newlines &= bigEndian ? ~(-1L >>> (at << 3)) : ~(-1L << (at << 3));
+                countNewlines(newlines, base + i, bigEndian);
+                return i + at;
+            }
+            countNewlines(newlines, base + i, bigEndian);
+            i += 8;
+        }
+        return i;
+    }
+
+    /**
+     * Counts the newlines flagged in one eight-byte word and moves the line
+     * start past the last of them.
+     *
+     * @param newlines the high bit of every newline byte set
+     * @param offset document offset of the word's first byte
+     * @param bigEndian true if the word was read high byte first
+     */
+    private void countNewlines(long newlines, long offset, boolean bigEndian) {
+        if (newlines != 0) {
+            line += Long.bitCount(newlines);
+            int last = bigEndian ? 7 - (Long.numberOfTrailingZeros(newlines) >>> 3)
+                    : (63 - Long.numberOfLeadingZeros(newlines)) >>> 3;
+            lineStart = offset + last + 1;
+        }
+    }
+
+    /**
+     * Returns a word with the high bit set in every byte of x that is zero
+     * and nothing else; unlike the shorter (x - ONES) & ~x trick, no carry
+     * runs into the next byte, so the result is exact.
+     */
+    private static long zeroBytes(long x) {
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+
+    /**
+     * Returns true for the whitespace bytes matched by the regex class \s.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * Returns true for bytes that end a tag name.
+     */
+    private static boolean isNameTerminator(byte b) {
+        return b == '>' || b == '/' || isWhitespace(b);
+    }
+}
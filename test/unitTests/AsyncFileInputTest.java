@@ -0,0 +1,163 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.AsyncFileInput;
+import appDomain.TagValidator;
+import appDomain.XMLGenerator;
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test for asynchronous reads through a ring of buffers.
+ */
+
+public class AsyncFileInputTest
+{
+	// Attributes
+	private Path file;
+
+	/**
+	 * Creates the test file.
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		file = Files.createTempFile( "async", ".xml" );
+	}
+
+	/**
+	 * Deletes the test file.
+	 * @throws Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		Files.deleteIfExists( file );
+	}
+
+	/**
+	 * Validates a document read from memory and returns the report.
+	 */
+	private static String validate( byte[] xml, int errorLimit ) throws Exception
+	{
+		TagValidator validator = new TagValidator();
+		validator.setErrorLimit( errorLimit );
+		new XMLTokenizer( validator ).parse( new ByteArrayInputStream( xml ) );
+		validator.endOfInput();
+		return report( validator );
+	}
+
+	/**
+	 * Validates the test file through asynchronous reads and returns the
+	 * report.
+	 */
+	private String validateAsync( int buffers, int bufferSize, int errorLimit ) throws Exception
+	{
+		TagValidator validator = new TagValidator();
+		validator.setErrorLimit( errorLimit );
+		XMLTokenizer tokenizer = new XMLTokenizer( validator );
+		AsyncFileInput.scan( file, tokenizer, buffers, bufferSize );
+		validator.endOfInput();
+		if ( errorLimit == 0 )
+		{
+			assertEquals( Files.size( file ), tokenizer.bytesConsumed() );
+		}
+		return report( validator );
+	}
+
+	/**
+	 * Prints a validator's report into a string.
+	 */
+	private static String report( TagValidator validator ) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream( bytes, true, "UTF-8" );
+		validator.report( out );
+		return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Test method for {@link appDomain.AsyncFileInput#scan(Path, XMLTokenizer, int, int)}
+	 * to report what a stream read reports, whatever the ring: tags and
+	 * lines cut across buffers, a last buffer exactly full or nearly empty.
+	 * @throws Exception
+	 */
+	@Test
+	public void testMatchesStream() throws Exception
+	{
+		XMLGenerator generator = new XMLGenerator();
+		generator.setErrorRate( 0.02 );
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		generator.generate( bytes, 300000 );
+		byte[] xml = bytes.toByteArray();
+		Files.write( file, xml );
+		String expected = validate( xml, 0 );
+		int[][] rings = { { 2, 7 }, { 3, 4096 }, { 4, xml.length / 4 }, { 2, xml.length - 1 }, { 4, 1 << 20 } };
+		for ( int[] ring : rings )
+		{
+			assertEquals( ring[0] + "x" + ring[1], expected, validateAsync( ring[0], ring[1], 0 ) );
+		}
+		assertEquals( validate( xml, 3 ), validateAsync( 2, 1024, 3 ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.AsyncFileInput#scan(Path, XMLTokenizer, int, int)}
+	 * to report correctly from a reused ring: after a scan stopped at the
+	 * error limit with reads still in flight, and on a smaller file than the
+	 * ring last held, whose stale bytes must not be scanned.
+	 * @throws Exception
+	 */
+	@Test
+	public void testReusedRing() throws Exception
+	{
+		XMLGenerator generator = new XMLGenerator();
+		generator.setErrorRate( 0.05 );
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		generator.generate( bytes, 200000 );
+		byte[] large = bytes.toByteArray();
+		byte[] small = "<a>\n<b></a>\n</c>".getBytes( StandardCharsets.UTF_8 );
+		for ( int round = 0; round < 3; round++ )
+		{
+			Files.write( file, large );
+			assertEquals( validate( large, 2 ), validateAsync( 4, 4096, 2 ) );
+			assertEquals( validate( large, 0 ), validateAsync( 4, 4096, 0 ) );
+			Files.write( file, small );
+			assertEquals( validate( small, 0 ), validateAsync( 4, 4096, 0 ) );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.AsyncFileInput#scan(Path, XMLTokenizer)}
+	 * on an empty file and on files smaller than one buffer.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSmallFiles() throws Exception
+	{
+		String[] documents = { "", "<a><b/></a>", "<a>\n<b></a>\n</c>" };
+		for ( String document : documents )
+		{
+			byte[] xml = document.getBytes( StandardCharsets.UTF_8 );
+			Files.write( file, xml );
+			TagValidator validator = new TagValidator();
+			XMLTokenizer tokenizer = new XMLTokenizer( validator );
+			AsyncFileInput.scan( file, tokenizer );
+			validator.endOfInput();
+			assertEquals( xml.length, tokenizer.bytesConsumed() );
+			assertEquals( validate( xml, 0 ), report( validator ) );
+		}
+	}
+}
@@ -0,0 +1,331 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.BatchValidator;
+import appDomain.XMLGenerator;
+import appDomain.XMLParser;
+
+/**
+ * Class Description:
+ * Test for batch mode: expanding the inputs, scheduling the files and
+ * printing their reports.
+ */
+
+public class BatchValidatorTest
+{
+	// Attributes
+	private Path dir;
+
+	/**
+	 * Creates an empty directory for the test files.
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		dir = Files.createTempDirectory( "batch" );
+	}
+
+	/**
+	 * Deletes the test files.
+	 * @throws Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		try ( Stream<Path> walk = Files.walk( dir ) )
+		{
+			walk.sorted( ( a, b ) -> b.compareTo( a ) ).forEach( p -> p.toFile().delete() );
+		}
+	}
+
+	/**
+	 * Writes a generated document with tag errors.
+	 */
+	private Path generate( String name, long seed, long size ) throws Exception
+	{
+		XMLGenerator generator = new XMLGenerator();
+		generator.setSeed( seed );
+		generator.setErrorRate( 0.05 );
+		Path file = dir.resolve( name );
+		try ( OutputStream out = Files.newOutputStream( file ) )
+		{
+			generator.generate( out, size );
+		}
+		return file;
+	}
+
+	/**
+	 * Writes a small file.
+	 */
+	private Path write( String name, String content ) throws Exception
+	{
+		Path file = dir.resolve( name );
+		Files.createDirectories( file.getParent() );
+		Files.write( file, content.getBytes( StandardCharsets.UTF_8 ) );
+		return file;
+	}
+
+	/**
+	 * Returns what the command line prints for the arguments.
+	 */
+	private static String run( List<String> args ) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream( bytes, true, "UTF-8" );
+		XMLParser.run( args.toArray( new String[0] ), new ByteArrayInputStream( new byte[0] ), out, System.err );
+		return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Returns what the options print for the files one at a time, each
+	 * headed by its path.
+	 */
+	private static String sequential( String[] mode, List<Path> files ) throws Exception
+	{
+		StringBuilder report = new StringBuilder();
+		for ( Path file : files )
+		{
+			report.append( "== " ).append( file ).append( System.lineSeparator() );
+			List<String> args = new ArrayList<String>( Arrays.asList( mode ) );
+			args.add( file.toString() );
+			report.append( run( args ) );
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Test method for {@link appDomain.BatchValidator#run(PrintStream)} to
+	 * walk directories for XML files in path order and read file lists,
+	 * skipping comments and blank lines.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCollectFiles() throws Exception
+	{
+		Path tree = dir.resolve( "tree" );
+		Path a = write( "tree/a.xml", "<a/>" );
+		Path c = write( "tree/sub/c.XML", "<c/>" );
+		Path d = write( "tree/sub/deep/d.xml", "<d/>" );
+		Path z = write( "tree/z.xml", "<z/>" );
+		write( "tree/notes.txt", "<n/>" );
+		Path listed = write( "listed.xml", "<l/>" );
+		Path list = write( "files.lst", "# inputs\n\n  " + listed + "  \n#" + a + "\n" + dir.resolve( "tree/sub" ) + "\n" );
+
+		List<Path> headed = new ArrayList<Path>();
+		for ( String line : run( Arrays.asList( tree.toString(), "--files-from=" + list ) ).split( "\\R" ) )
+		{
+			if ( line.startsWith( "== " ) )
+			{
+				headed.add( Paths.get( line.substring( 3 ) ) );
+			}
+		}
+		assertEquals( Arrays.asList( a, c, d, z, listed, c, d ), headed );
+	}
+
+	/**
+	 * Returns true if this JVM has a flight recorder.
+	 */
+	private static boolean hasFlightRecorder()
+	{
+		try
+		{
+			Class.forName( "jdk.jfr.EventFactory" );
+			return true;
+		}
+		catch ( ClassNotFoundException e )
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Runs the command line with a flight recording and returns the files
+	 * it validated, in the order they were opened, each as its path, the
+	 * id of its thread, and the times its first and last recorded phase
+	 * started and ended. A file's phases are those its thread recorded
+	 * from its FileOpen event until the next one. The events are read
+	 * through reflection as the sources target Java 8.
+	 */
+	private List<Object[]> recordFiles( List<String> args ) throws Exception
+	{
+		Path recording = dir.resolve( "batch.jfr" );
+		List<String> recorded = new ArrayList<String>( args );
+		recorded.add( 0, "--jfr=" + recording );
+		run( recorded );
+		Class<?> recordingFile = Class.forName( "jdk.jfr.consumer.RecordingFile" );
+		List<?> events = (List<?>) recordingFile.getMethod( "readAllEvents", Path.class ).invoke( null, recording );
+		List<Object[]> phases = new ArrayList<Object[]>();
+		for ( Object event : events )
+		{
+			Object type = event.getClass().getMethod( "getEventType" ).invoke( event );
+			String name = (String) type.getClass().getMethod( "getName" ).invoke( type );
+			if ( !name.startsWith( "appDomain." ) )
+			{
+				continue;
+			}
+			Object thread = event.getClass().getMethod( "getThread" ).invoke( event );
+			long threadId = (Long) thread.getClass().getMethod( "getJavaThreadId" ).invoke( thread );
+			java.time.Instant start = (java.time.Instant) event.getClass().getMethod( "getStartTime" ).invoke( event );
+			java.time.Instant end = (java.time.Instant) event.getClass().getMethod( "getEndTime" ).invoke( event );
+			String path = name.equals( "appDomain.FileOpen" )
+					? (String) event.getClass().getMethod( "getString", String.class ).invoke( event, "path" )
+					: null;
+			phases.add( new Object[] { path, threadId, start, end } );
+		}
+		phases.sort( ( a, b ) -> ( (java.time.Instant) a[2] ).compareTo( (java.time.Instant) b[2] ) );
+
+		List<Object[]> files = new ArrayList<Object[]>();
+		java.util.Map<Long, Object[]> current = new java.util.HashMap<Long, Object[]>();
+		for ( Object[] phase : phases )
+		{
+			Object[] file = current.get( phase[1] );
+			if ( phase[0] != null )
+			{
+				file = new Object[] { phase[0], phase[1], phase[2], phase[3] };
+				files.add( file );
+				current.put( (Long) phase[1], file );
+			}
+			else if ( file != null && ( (java.time.Instant) phase[3] ).isAfter( (java.time.Instant) file[3] ) )
+			{
+				file[3] = phase[3];
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Test method for {@link appDomain.BatchValidator#run(PrintStream)} to
+	 * start the largest files first, keeping input order among equals,
+	 * seen in the order one worker opens them.
+	 * @throws Exception
+	 */
+	@Test
+	public void testLargestFirst() throws Exception
+	{
+		assumeTrue( hasFlightRecorder() );
+		Path small = write( "small.xml", "<a/>" );
+		Path large = write( "large.xml", "<a><b/><c/></a>" );
+		Path equal = write( "equal.xml", "<a/><b/>" );
+		Path empty = write( "empty.xml", "" );
+		Path same = write( "same.xml", "<a> </a>" );
+		Path largeToo = write( "largeToo.xml", "<a><b></b>x</a>" );
+		List<String> args = new ArrayList<String>( Arrays.asList( "--threads=1", small.toString(), large.toString(),
+				equal.toString(), empty.toString(), same.toString(), largeToo.toString() ) );
+		List<String> opened = new ArrayList<String>();
+		for ( Object[] file : recordFiles( args ) )
+		{
+			opened.add( (String) file[0] );
+		}
+		assertEquals( Arrays.asList( large.toString(), largeToo.toString(), equal.toString(), same.toString(),
+				small.toString(), empty.toString() ), opened );
+	}
+
+	/**
+	 * Test method for {@link appDomain.BatchValidator#run(PrintStream)} to
+	 * validate no more files at once than --threads asks for, and to use
+	 * no more threads than processors when virtual threads were asked for
+	 * but the JVM has none.
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrency() throws Exception
+	{
+		assumeTrue( hasFlightRecorder() );
+		int processors = Runtime.getRuntime().availableProcessors();
+		List<String> files = new ArrayList<String>();
+		for ( int i = 0; i < 4 * processors + 4; i++ )
+		{
+			files.add( generate( "file" + i + ".xml", i, 8 << 10 ).toString() );
+		}
+
+		List<String> args = new ArrayList<String>( files );
+		args.add( 0, "--threads=2" );
+		List<Object[]> validated = recordFiles( args );
+		assertEquals( files.size(), validated.size() );
+		for ( Object[] file : validated )
+		{
+			int running = 0;
+			for ( Object[] other : validated )
+			{
+				// Files whose phases overlap the start of this one's
+				if ( !( (java.time.Instant) other[2] ).isAfter( (java.time.Instant) file[2] )
+						&& !( (java.time.Instant) other[3] ).isBefore( (java.time.Instant) file[2] ) )
+				{
+					running++;
+				}
+			}
+			assertTrue( "Files at once: " + running, running <= 2 );
+		}
+
+		boolean virtualThreads;
+		try
+		{
+			Thread.class.getMethod( "ofVirtual" );
+			virtualThreads = true;
+		}
+		catch ( NoSuchMethodException e )
+		{
+			virtualThreads = false;
+		}
+		if ( !virtualThreads )
+		{
+			args = new ArrayList<String>( files );
+			args.add( 0, "--virtual" );
+			java.util.Set<Object> threads = new java.util.HashSet<Object>();
+			for ( Object[] file : recordFiles( args ) )
+			{
+				threads.add( file[1] );
+			}
+			assertTrue( "Threads: " + threads.size(), threads.size() <= processors );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.BatchValidator#run(PrintStream)}
+	 * to print every report whole and in input order, whichever file ends
+	 * first, in each report format.
+	 * @throws Exception
+	 */
+	@Test
+	public void testReportsInInputOrder() throws Exception
+	{
+		List<Path> files = Arrays.asList( generate( "small.xml", 1, 20 << 10 ), generate( "large.xml", 2, 1 << 20 ),
+				write( "valid.xml", "<a><b/></a>" ), generate( "medium.xml", 3, 200 << 10 ) );
+		String[][] modes = { {}, { "--stream-errors" }, { "--stream-errors=ordered", "--reorder-buffer=16" }, { "--format=jsonl" } };
+		for ( String[] mode : modes )
+		{
+			List<String> args = new ArrayList<String>( Arrays.asList( mode ) );
+			args.add( "--threads=3" );
+			for ( Path file : files )
+			{
+				args.add( file.toString() );
+			}
+			String expected = sequential( mode, files );
+			if ( Arrays.asList( mode ).contains( "--format=jsonl" ) )
+			{
+				expected = expected.replaceAll( "== .*\\R", "" );
+			}
+			assertEquals( Arrays.toString( mode ), expected, run( args ) );
+		}
+	}
+}
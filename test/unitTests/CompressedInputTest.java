@@ -0,0 +1,155 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import appDomain.CompressedInput;
+import appDomain.ReadAheadInputStream;
+
+/**
+ * Class Description:
+ * Test for the compressed input and the read-ahead buffer ring of the
+ * XMLParser.
+ */
+
+public class CompressedInputTest
+{
+	/**
+	 * Compresses bytes as one gzip member.
+	 */
+	private static byte[] gzip( byte[] data ) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try ( GZIPOutputStream out = new GZIPOutputStream( bytes ) )
+		{
+			out.write( data );
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads a stream to the end in small, uneven reads.
+	 */
+	private static byte[] readAll( InputStream in ) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buf = new byte[777];
+		int n;
+		while ( ( n = in.read( buf ) ) != -1 )
+		{
+			bytes.write( buf, 0, n );
+		}
+		in.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Returns random document-like bytes.
+	 */
+	private static byte[] data( int size )
+	{
+		byte[] data = new byte[size];
+		Random random = new Random( size );
+		for ( int i = 0; i < size; i++ )
+		{
+			data[i] = (byte) "<a>text</a>\n".charAt( random.nextInt( 12 ) );
+		}
+		return data;
+	}
+
+	/**
+	 * Test method for {@link appDomain.CompressedInput#decompress(InputStream)}
+	 * to inflate gzip input, including concatenated members.
+	 * @throws Exception
+	 */
+	@Test
+	public void testGzip() throws Exception
+	{
+		byte[] first = data( 300000 );
+		byte[] second = data( 1234 );
+		ByteArrayOutputStream both = new ByteArrayOutputStream();
+		both.write( gzip( first ) );
+		both.write( gzip( second ) );
+		byte[] result = readAll( CompressedInput.decompress( new ByteArrayInputStream( both.toByteArray() ) ) );
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.write( first );
+		expected.write( second );
+		assertArrayEquals( expected.toByteArray(), result );
+	}
+
+	/**
+	 * Test method for {@link appDomain.CompressedInput#decompress(InputStream)}
+	 * to pass plain input through and reject Zstandard frames.
+	 * @throws Exception
+	 */
+	@Test
+	public void testPlainAndZstd() throws Exception
+	{
+		byte[] plain = data( 5000 );
+		assertArrayEquals( plain, readAll( CompressedInput.decompress( new ByteArrayInputStream( plain ) ) ) );
+		assertArrayEquals( new byte[] { '<' }, readAll( CompressedInput.decompress( new ByteArrayInputStream( new byte[] { '<' } ) ) ) );
+		try
+		{
+			CompressedInput.decompress( new ByteArrayInputStream( new byte[] { 0x28, (byte) 0xB5, 0x2F, (byte) 0xFD, 0 } ) );
+			fail( "zstd accepted" );
+		}
+		catch ( UnsupportedEncodingException e )
+		{
+			// expected
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.ReadAheadInputStream#read(byte[], int, int)}
+	 * with a ring smaller than the input, and an error from the source.
+	 * @throws Exception
+	 */
+	@Test
+	public void testReadAheadRing() throws Exception
+	{
+		byte[] data = data( 100000 );
+		assertArrayEquals( data, readAll( new ReadAheadInputStream( new ByteArrayInputStream( data ), 2, 1000 ) ) );
+
+		InputStream failing = new InputStream()
+		{
+			private int left = 5000;
+
+			@Override
+			public int read() throws IOException
+			{
+				byte[] one = new byte[1];
+				return read( one, 0, 1 ) == -1 ? -1 : one[0];
+			}
+
+			@Override
+			public int read( byte[] b, int off, int len ) throws IOException
+			{
+				if ( left == 0 )
+				{
+					throw new IOException( "disk gone" );
+				}
+				int n = Math.min( len, left );
+				left -= n;
+				return n;
+			}
+		};
+		try
+		{
+			readAll( new ReadAheadInputStream( failing, 3, 512 ) );
+			fail( "error lost" );
+		}
+		catch ( IOException e )
+		{
+			assertEquals( "disk gone", e.getMessage() );
+		}
+	}
+}
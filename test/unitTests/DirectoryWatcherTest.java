@@ -0,0 +1,140 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.DirectoryWatcher;
+
+/**
+ * Class Description:
+ * Test for watch mode, validating files as they change on disk.
+ */
+
+public class DirectoryWatcherTest
+{
+	// Attributes
+	private Path dir;
+	private ByteArrayOutputStream bytes;
+	private DirectoryWatcher watcher;
+	private Thread thread;
+
+	/**
+	 * Starts a watcher on an empty directory.
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		dir = Files.createTempDirectory( "watch" );
+		bytes = new ByteArrayOutputStream();
+		watcher = new DirectoryWatcher( new PrintStream( bytes, true, "UTF-8" ), 2, 50 );
+		watcher.watch( dir );
+		thread = new Thread( () ->
+		{
+			try
+			{
+				watcher.run();
+			}
+			catch ( Exception e )
+			{
+				throw new RuntimeException( e );
+			}
+		} );
+		thread.start();
+	}
+
+	/**
+	 * Stops the watcher and deletes the test files.
+	 * @throws Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		watcher.close();
+		thread.join( 5000 );
+		try ( Stream<Path> walk = Files.walk( dir ) )
+		{
+			walk.sorted( ( a, b ) -> b.compareTo( a ) ).forEach( p -> p.toFile().delete() );
+		}
+	}
+
+	/**
+	 * Returns the output once it contains the given text, failing after a
+	 * few seconds.
+	 */
+	private String await( String text ) throws Exception
+	{
+		long deadline = System.currentTimeMillis() + 10000;
+		while ( System.currentTimeMillis() < deadline )
+		{
+			String output = new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+			if ( output.contains( text ) )
+			{
+				return output;
+			}
+			Thread.sleep( 20 );
+		}
+		fail( "Timed out waiting for: " + text );
+		return null;
+	}
+
+	/**
+	 * Counts the occurrences of a text.
+	 */
+	private static int count( String output, String text )
+	{
+		int n = 0;
+		for ( int i = output.indexOf( text ); i >= 0; i = output.indexOf( text, i + 1 ) )
+		{
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Test method for {@link appDomain.DirectoryWatcher#run()} to validate
+	 * a new file once, after a burst of writes has settled.
+	 * @throws Exception
+	 */
+	@Test
+	public void testValidatesChangedFile() throws Exception
+	{
+		Path file = dir.resolve( "a.xml" );
+		Files.write( file, "<a>\n".getBytes( StandardCharsets.UTF_8 ) );
+		Files.write( file, "<a>\n<b>\n".getBytes( StandardCharsets.UTF_8 ) );
+		Files.write( file, "<a>\n<b></a>\n".getBytes( StandardCharsets.UTF_8 ) );
+		Files.write( dir.resolve( "notes.txt" ), "<a>".getBytes( StandardCharsets.UTF_8 ) );
+		String output = await( "Error at line 2 <b> is not constructed correctly." );
+		assertEquals( 1, count( output, "== " + file ) );
+		assertFalse( output.contains( "notes.txt" ) );
+
+		Files.write( file, "<a><b></b></a>\n".getBytes( StandardCharsets.UTF_8 ) );
+		output = await( "XML document is constructed correctly." );
+		assertEquals( 2, count( output, "== " + file ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.DirectoryWatcher#watch(Path)} to
+	 * also watch directories created later.
+	 * @throws Exception
+	 */
+	@Test
+	public void testWatchesNewDirectory() throws Exception
+	{
+		Path sub = Files.createDirectory( dir.resolve( "sub" ) );
+		Path file = sub.resolve( "b.xml" );
+		Files.write( file, "<b></c>\n".getBytes( StandardCharsets.UTF_8 ) );
+		String output = await( "Error at line 1 </c> is not constructed correctly." );
+		assertTrue( output.contains( "== " + file ) );
+	}
+}
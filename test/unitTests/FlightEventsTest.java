@@ -0,0 +1,111 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import appDomain.XMLParser;
+
+/**
+ * Class Description:
+ * Test that --jfr records the flight recorder events of the parse phases.
+ */
+
+public class FlightEventsTest
+{
+	/**
+	 * Returns the names of the event types in a recording, read through
+	 * reflection as the sources target Java 8.
+	 */
+	private static Set<String> eventNames( Path recording ) throws Exception
+	{
+		Class<?> recordingFile = Class.forName( "jdk.jfr.consumer.RecordingFile" );
+		List<?> events = (List<?>) recordingFile.getMethod( "readAllEvents", Path.class ).invoke( null, recording );
+		Set<String> names = new HashSet<String>();
+		for ( Object event : events )
+		{
+			Object type = event.getClass().getMethod( "getEventType" ).invoke( event );
+			names.add( (String) type.getClass().getMethod( "getName" ).invoke( type ) );
+		}
+		return names;
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLParser#run(String[], java.io.InputStream, PrintStream, PrintStream)}
+	 * with --jfr, recording every phase of a validation that has to recover
+	 * from a mismatched closing tag.
+	 * @throws Exception
+	 */
+	@Test
+	public void testRecordsParsePhases() throws Exception
+	{
+		boolean available;
+		try
+		{
+			Class.forName( "jdk.jfr.EventFactory" );
+			available = true;
+		}
+		catch ( ClassNotFoundException e )
+		{
+			available = false;
+		}
+		assumeTrue( available );
+
+		Path xml = Files.createTempFile( "jfr", ".xml" );
+		Path recording = Files.createTempFile( "jfr", ".jfr" );
+		try
+		{
+			Files.write( xml, "<a><b></a>\n".getBytes( StandardCharsets.UTF_8 ) );
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			XMLParser.run( new String[] { "--jfr=" + recording, xml.toString() }, new ByteArrayInputStream( new byte[0] ),
+					new PrintStream( bytes, true, "UTF-8" ), System.err );
+			assertTrue( new String( bytes.toByteArray(), StandardCharsets.UTF_8 ).contains( "<b>" ) );
+			Set<String> names = eventNames( recording );
+			for ( String phase : new String[] { "FileOpen", "BufferFill", "ChunkScan", "Recovery", "ReportFlush" } )
+			{
+				assertTrue( phase, names.contains( "appDomain." + phase ) );
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists( xml );
+			Files.deleteIfExists( recording );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLParser#run(String[], java.io.InputStream, PrintStream, PrintStream)}
+	 * to warn on the given error stream when the recording cannot be
+	 * written.
+	 * @throws Exception
+	 */
+	@Test
+	public void testWarningOnErrorStream() throws Exception
+	{
+		Path xml = Files.createTempFile( "jfr", ".xml" );
+		try
+		{
+			Files.write( xml, "<a></a>\n".getBytes( StandardCharsets.UTF_8 ) );
+			Path recording = xml.resolveSibling( "missing-" + xml.getFileName() ).resolve( "out.jfr" );
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			XMLParser.run( new String[] { "--jfr=" + recording, xml.toString() }, new ByteArrayInputStream( new byte[0] ),
+					new PrintStream( new ByteArrayOutputStream(), true, "UTF-8" ), new PrintStream( err, true, "UTF-8" ) );
+			assertTrue( new String( err.toByteArray(), StandardCharsets.UTF_8 ).startsWith( "Warning: " ) );
+		}
+		finally
+		{
+			Files.deleteIfExists( xml );
+		}
+	}
+}
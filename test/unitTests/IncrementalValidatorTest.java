@@ -0,0 +1,155 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import appDomain.IncrementalValidator;
+import appDomain.JsonLinesSink;
+import appDomain.SymbolTable;
+import appDomain.TagValidator;
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test that incremental re-validation after edits reports exactly what a
+ * full scan of the edited document reports.
+ */
+
+public class IncrementalValidatorTest
+{
+	// Attributes
+	private static final String[] SNIPPETS = { "<a>", "</a>", "<b x='>'>", "</b>", "<c/>", "\n", "text ",
+			"<!-- <a> -->", "<![CDATA[</b>]]>", "<i>\n</i>", "</x>", "<", ">", "</", "<!--", "<>", "<a<" };
+
+	/**
+	 * Builds a random document from markup snippets.
+	 */
+	private static String randomDocument( Random random, int snippets )
+	{
+		StringBuilder xml = new StringBuilder( "<root>\n" );
+		for ( int i = 0; i < snippets; i++ )
+		{
+			xml.append( SNIPPETS[random.nextInt( SNIPPETS.length )] );
+		}
+		return xml.append( "</root>\n" ).toString();
+	}
+
+	/**
+	 * Returns the JSON Lines records of a full sequential scan.
+	 */
+	private static String fullScan( String xml ) throws Exception
+	{
+		SymbolTable symbols = new SymbolTable();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TagValidator validator = new TagValidator( symbols, new JsonLinesSink( symbols, "f", Channels.newChannel( bytes ) ) );
+		new XMLTokenizer( validator ).parse( new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+		validator.endOfInput();
+		validator.report( null );
+		return bytes.toString( "UTF-8" );
+	}
+
+	/**
+	 * Returns the JSON Lines records of the engine's current version.
+	 */
+	private static String records( IncrementalValidator engine, SymbolTable symbols ) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		engine.report( new JsonLinesSink( symbols, "f", Channels.newChannel( bytes ) ), null );
+		return bytes.toString( "UTF-8" );
+	}
+
+	/**
+	 * Wraps a document in a buffer.
+	 */
+	private static ByteBuffer buffer( String xml )
+	{
+		return ByteBuffer.wrap( xml.getBytes( StandardCharsets.UTF_8 ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.IncrementalValidator#update(ByteBuffer, long, long, long)}
+	 * with random inserts, deletes and replacements, comparing every
+	 * position against a full scan.
+	 * @throws Exception
+	 */
+	@Test
+	public void testRandomEditsMatchFullScan() throws Exception
+	{
+		Random random = new Random( 11 );
+		for ( int interval : new int[] { 7, 32, 200 } )
+		{
+			String xml = randomDocument( random, 300 );
+			SymbolTable symbols = new SymbolTable();
+			IncrementalValidator engine = new IncrementalValidator( symbols, interval );
+			engine.validate( buffer( xml ) );
+			assertEquals( fullScan( xml ), records( engine, symbols ) );
+			for ( int edit = 0; edit < 100; edit++ )
+			{
+				int offset = random.nextInt( xml.length() + 1 );
+				int removed = random.nextInt( Math.min( 12, xml.length() - offset ) + 1 );
+				String inserted = random.nextBoolean() ? SNIPPETS[random.nextInt( SNIPPETS.length )] : "";
+				xml = xml.substring( 0, offset ) + inserted + xml.substring( offset + removed );
+				engine.update( buffer( xml ), offset, removed, inserted.length() );
+				assertEquals( "Interval " + interval + ", edit " + edit, fullScan( xml ), records( engine, symbols ) );
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.IncrementalValidator#update(ByteBuffer, long, long, long)}
+	 * to rescan only around a small edit in a large document.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSmallEditRescansLittle() throws Exception
+	{
+		StringBuilder xml = new StringBuilder( "<root>\n" );
+		for ( int i = 0; i < 20000; i++ )
+		{
+			xml.append( "<item id='" ).append( i ).append( "'><b>x</b></item>\n" );
+		}
+		xml.append( "</root>\n" );
+		String before = xml.toString();
+		IncrementalValidator engine = new IncrementalValidator( new SymbolTable(), 4096 );
+		engine.validate( buffer( before ) );
+		assertTrue( engine.isValid() );
+
+		int offset = before.length() / 2;
+		offset = before.indexOf( "<b>", offset );
+		String after = before.substring( 0, offset ) + "<i>" + before.substring( offset );
+		engine.update( buffer( after ), offset, 0, 3 );
+		assertEquals( 1, engine.errorCount() );
+		assertTrue( engine.lastScanned() <= 3 * 4096 );
+
+		engine.update( buffer( before ), offset, 3, 0 );
+		assertTrue( engine.isValid() );
+		assertTrue( engine.lastScanned() <= 3 * 4096 );
+	}
+
+	/**
+	 * Test method for {@link appDomain.IncrementalValidator#update(ByteBuffer, long, long, long)}
+	 * with an edit starting right after a '&lt;' that was taken as text,
+	 * where a checkpoint was recorded: the '&lt;' starts a tag once the
+	 * edit puts a name after it.
+	 * @throws Exception
+	 */
+	@Test
+	public void testEditAfterBareLessThan() throws Exception
+	{
+		SymbolTable symbols = new SymbolTable();
+		IncrementalValidator engine = new IncrementalValidator( symbols, 1 );
+		engine.validate( buffer( "<>" ) );
+		assertEquals( fullScan( "<>" ), records( engine, symbols ) );
+		engine.update( buffer( "<x >" ), 1, 0, 2 );
+		assertFalse( engine.isValid() );
+		assertEquals( fullScan( "<x >" ), records( engine, symbols ) );
+	}
+}
@@ -0,0 +1,156 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.MappedInput;
+import appDomain.TagValidator;
+import appDomain.XMLGenerator;
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test for scanning files through memory-mapped windows.
+ */
+
+public class MappedInputTest
+{
+	// Attributes
+	private Path file;
+
+	/**
+	 * Creates the test file.
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		file = Files.createTempFile( "mapped", ".xml" );
+	}
+
+	/**
+	 * Deletes the test file.
+	 * @throws Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		Files.deleteIfExists( file );
+	}
+
+	/**
+	 * Returns a tokenizer recording every token as
+	 * "type:name@line:column+offset".
+	 */
+	private static XMLTokenizer recorder( final List<String> tokens )
+	{
+		return new XMLTokenizer( new XMLTokenizer.TokenListener()
+		{
+			@Override
+			public void token( XMLTokenizer t )
+			{
+				tokens.add( t.tokenType() + ":" + t.name() + "@" + t.lineNumber() + ":" + t.column() + "+" + t.byteOffset() );
+			}
+		} );
+	}
+
+	/**
+	 * Scans the test file through the public range scan, one range of the
+	 * given size after another, so tokens are cut at every range edge as
+	 * they are at window edges, then finishes the tokenizer.
+	 */
+	private void scanInRanges( XMLTokenizer tokenizer, long range ) throws Exception
+	{
+		try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+		{
+			long size = channel.size();
+			for ( long from = 0; from < size; from += range )
+			{
+				MappedInput.scan( channel, from, Math.min( from + range, size ), tokenizer );
+			}
+		}
+		tokenizer.finish();
+	}
+
+	/**
+	 * Prints a validator's report into a string.
+	 */
+	private static String report( TagValidator validator ) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		validator.report( new PrintStream( bytes, true, "UTF-8" ) );
+		return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Test method for {@link appDomain.MappedInput#scan(FileChannel, long, long, XMLTokenizer)}
+	 * to produce the tokens of a stream read whatever the range size, with
+	 * tags, comments, CDATA and newlines cut by range edges.
+	 * @throws Exception
+	 */
+	@Test
+	public void testTokensAcrossWindows() throws Exception
+	{
+		String xml = "<?xml version=\"1.0\"?>\n<root a=\"1>2\">\r\n<!-- a\ncomment -->\n<b/><c x='y'>\n"
+				+ "<![CDATA[ <d> ]]></c>\n\u00e9t\u00e9<e\n  f=\"g\">text\n</e></root>\n";
+		byte[] bytes = xml.getBytes( StandardCharsets.UTF_8 );
+		Files.write( file, bytes );
+		List<String> expected = new ArrayList<String>();
+		recorder( expected ).parse( new ByteArrayInputStream( bytes ) );
+		assertFalse( expected.isEmpty() );
+		for ( int range = 1; range <= bytes.length; range++ )
+		{
+			List<String> tokens = new ArrayList<String>();
+			scanInRanges( recorder( tokens ), range );
+			assertEquals( "Range " + range, expected, tokens );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.MappedInput#scan(Path, XMLTokenizer)}
+	 * and {@link appDomain.MappedInput#scan(FileChannel, long, long, XMLTokenizer)}
+	 * to report what a stream read reports on a document spanning many
+	 * ranges, and on the whole file.
+	 * @throws Exception
+	 */
+	@Test
+	public void testMatchesStream() throws Exception
+	{
+		XMLGenerator generator = new XMLGenerator();
+		generator.setErrorRate( 0.02 );
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		generator.generate( bytes, 300000 );
+		byte[] xml = bytes.toByteArray();
+		Files.write( file, xml );
+
+		TagValidator streamed = new TagValidator();
+		new XMLTokenizer( streamed ).parse( new ByteArrayInputStream( xml ) );
+		streamed.endOfInput();
+		String expected = report( streamed );
+		for ( long range : new long[] { 4093, 65536, xml.length - 1 } )
+		{
+			TagValidator mapped = new TagValidator();
+			scanInRanges( new XMLTokenizer( mapped ), range );
+			mapped.endOfInput();
+			assertEquals( "Range " + range, expected, report( mapped ) );
+		}
+		TagValidator mapped = new TagValidator();
+		MappedInput.scan( file, new XMLTokenizer( mapped ) );
+		mapped.endOfInput();
+		assertEquals( expected, report( mapped ) );
+	}
+}
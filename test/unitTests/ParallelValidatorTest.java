@@ -0,0 +1,282 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.JsonLinesSink;
+import appDomain.ParallelValidator;
+import appDomain.SymbolTable;
+import appDomain.TagValidator;
+import appDomain.XMLGenerator;
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test that parallel chunked validation reports exactly what a sequential
+ * scan reports.
+ */
+
+public class ParallelValidatorTest
+{
+	// Attributes
+	private ForkJoinPool pool;
+	private Path file;
+
+	/**
+	 * Creates a pool and a temporary file before each test.
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		pool = new ForkJoinPool( 4 );
+		file = Files.createTempFile( "parallel", ".xml" );
+	}
+
+	/**
+	 * Shuts the pool down and deletes the temporary file after each test.
+	 * @throws java.lang.Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		pool.shutdown();
+		Files.deleteIfExists( file );
+	}
+
+	/**
+	 * Writes a document mixing valid markup, comments and CDATA containing
+	 * tags, and every kind of tag error.
+	 */
+	private void writeDocument( long seed ) throws Exception
+	{
+		Random random = new Random( seed );
+		String[] names = { "a", "b", "c", "Language", "i" };
+		StringBuilder xml = new StringBuilder( "<?xml version=\"1.0\"?>\n<root>\n" );
+		for ( int i = 0; i < 400; i++ )
+		{
+			String name = names[random.nextInt( names.length )];
+			switch ( random.nextInt( 8 ) )
+			{
+				case 0:
+					xml.append( "<" ).append( name ).append( " k=\"<x> v\">\n" );
+					break;
+				case 1:
+					xml.append( "</" ).append( name ).append( ">\n" );
+					break;
+				case 2:
+					xml.append( "<!-- <" ).append( name ).append( "> </b> -->\n" );
+					break;
+				case 3:
+					xml.append( "<![CDATA[ </" ).append( name ).append( "> ]]>\n" );
+					break;
+				case 4:
+					xml.append( "<" ).append( name ).append( "/>text\n" );
+					break;
+				default:
+					xml.append( "<" ).append( name ).append( ">body</" ).append( name ).append( ">\n" );
+					break;
+			}
+		}
+		xml.append( "</root>\n" );
+		Files.write( file, xml.toString().getBytes( StandardCharsets.UTF_8 ) );
+	}
+
+	/**
+	 * Returns the report printed by a validator.
+	 */
+	private static String report( TagValidator validator ) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		validator.report( new PrintStream( bytes, true, "UTF-8" ) );
+		return bytes.toString( "UTF-8" );
+	}
+
+	/**
+	 * Returns the report of a sequential scan of the file.
+	 */
+	private String sequential() throws Exception
+	{
+		TagValidator validator = new TagValidator();
+		try ( InputStream in = new FileInputStream( file.toFile() ) )
+		{
+			new XMLTokenizer( validator ).parse( in );
+		}
+		validator.endOfInput();
+		return report( validator );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ParallelValidator#validate(Path)}
+	 * with ranges small enough to split inside comments, CDATA and quoted
+	 * attribute values.
+	 * @throws Exception
+	 */
+	@Test
+	public void testMatchesSequentialReport() throws Exception
+	{
+		for ( long seed = 1; seed <= 5; seed++ )
+		{
+			writeDocument( seed );
+			String expected = sequential();
+			for ( int chunk : new int[] { 5, 17, 64, 1000 } )
+			{
+				TagValidator validator = new ParallelValidator( pool, chunk ).validate( file );
+				assertEquals( "Seed " + seed + ", chunk " + chunk, expected, report( validator ) );
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.ParallelValidator#validate(Path)}
+	 * with comments, CDATA and attribute values running over several
+	 * ranges, so a range ends past the next split points and the ranges
+	 * after it are summarised again from there.
+	 * @throws Exception
+	 */
+	@Test
+	public void testTokensSpanningRanges() throws Exception
+	{
+		Random random = new Random( 7 );
+		StringBuilder xml = new StringBuilder( "<root>\n" );
+		for ( int i = 0; i < 60; i++ )
+		{
+			StringBuilder filler = new StringBuilder();
+			for ( int n = random.nextInt( 300 ); n > 0; n-- )
+			{
+				filler.append( n % 40 == 0 ? "\n" : n % 7 == 0 ? "<x> " : "</y>" );
+			}
+			switch ( random.nextInt( 4 ) )
+			{
+				case 0:
+					xml.append( "<!--" ).append( filler ).append( "-->\n" );
+					break;
+				case 1:
+					xml.append( "<![CDATA[" ).append( filler ).append( "]]>\n" );
+					break;
+				case 2:
+					xml.append( "<a v=\"" ).append( filler ).append( "\">\n" );
+					break;
+				default:
+					xml.append( "</a><b>\n" );
+					break;
+			}
+		}
+		xml.append( "</root>\n" );
+		Files.write( file, xml.toString().getBytes( StandardCharsets.UTF_8 ) );
+		String expected = sequential();
+		for ( int chunk : new int[] { 3, 11, 97, 400 } )
+		{
+			TagValidator validator = new ParallelValidator( pool, chunk ).validate( file );
+			assertEquals( "Chunk " + chunk, expected, report( validator ) );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.ParallelValidator#validate(Path)}
+	 * on a valid document.
+	 * @throws Exception
+	 */
+	@Test
+	public void testValidDocument() throws Exception
+	{
+		Files.write( file, "<a>\n<b x='1'>\n</b>\n<c/>\n</a>\n".getBytes( StandardCharsets.UTF_8 ) );
+		assertTrue( new ParallelValidator( pool, 3 ).validate( file ).isValid() );
+	}
+
+	/**
+	 * Returns the JSON Lines records of a validation, run in parallel if a
+	 * chunk size is given and sequentially otherwise.
+	 */
+	private String jsonRecords( int chunk ) throws Exception
+	{
+		SymbolTable symbols = new SymbolTable();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TagValidator validator = new TagValidator( symbols, new JsonLinesSink( symbols, "doc.xml", Channels.newChannel( bytes ) ) );
+		if ( chunk > 0 )
+		{
+			new ParallelValidator( pool, chunk ).validate( file, validator );
+		}
+		else
+		{
+			try ( InputStream in = new FileInputStream( file.toFile() ) )
+			{
+				new XMLTokenizer( validator ).parse( in );
+			}
+			validator.endOfInput();
+		}
+		validator.report( null );
+		return bytes.toString( "UTF-8" );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ParallelValidator#validate(Path, TagValidator)}
+	 * to report the same columns and byte offsets as a sequential scan,
+	 * including on lines that start in an earlier range.
+	 * @throws Exception
+	 */
+	@Test
+	public void testMatchesSequentialPositions() throws Exception
+	{
+		for ( long seed = 1; seed <= 3; seed++ )
+		{
+			writeDocument( seed );
+			String expected = jsonRecords( 0 );
+			for ( int chunk : new int[] { 5, 17, 64 } )
+			{
+				assertEquals( "Seed " + seed + ", chunk " + chunk, expected, jsonRecords( chunk ) );
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.ParallelValidator#validate(Path, TagValidator)}
+	 * to count the same tags and errors as a sequential scan, and the same
+	 * peak depth for a well-formed document.
+	 * @throws Exception
+	 */
+	@Test
+	public void testMatchesSequentialStatistics() throws Exception
+	{
+		for ( double errorRate : new double[] { 0, 0.02 } )
+		{
+			XMLGenerator generator = new XMLGenerator();
+			generator.setDepth( 7 );
+			generator.setErrorRate( errorRate );
+			generator.generate( file, 20000 );
+			TagValidator sequential = new TagValidator();
+			try ( InputStream in = new FileInputStream( file.toFile() ) )
+			{
+				new XMLTokenizer( sequential ).parse( in );
+			}
+			sequential.endOfInput();
+			for ( int chunk : new int[] { 17, 500 } )
+			{
+				TagValidator parallel = new ParallelValidator( pool, chunk ).validate( file );
+				assertEquals( generator.tagCount(), parallel.tagCount() );
+				assertEquals( sequential.tagCount(), parallel.tagCount() );
+				assertEquals( sequential.unclosedCount(), parallel.unclosedCount() );
+				assertEquals( sequential.unexpectedCount(), parallel.unexpectedCount() );
+				if ( errorRate == 0 )
+				{
+					assertEquals( 7, sequential.peakDepth() );
+					assertEquals( 7, parallel.peakDepth() );
+				}
+			}
+		}
+	}
+}
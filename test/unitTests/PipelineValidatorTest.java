@@ -0,0 +1,198 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import appDomain.ErrorBuffer;
+import appDomain.ErrorSink;
+import appDomain.PipelineValidator;
+import appDomain.SymbolTable;
+import appDomain.TagValidator;
+import appDomain.XMLEncoding;
+import appDomain.XMLGenerator;
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test that the four-stage pipeline reports exactly what a sequential
+ * validation reports.
+ */
+
+public class PipelineValidatorTest
+{
+	/**
+	 * Generates a document with tag errors.
+	 */
+	private static byte[] generate( long seed, double errorRate, long size ) throws Exception
+	{
+		XMLGenerator generator = new XMLGenerator();
+		generator.setSeed( seed );
+		generator.setErrorRate( errorRate );
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		generator.generate( bytes, size );
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Validates a document on one thread and returns the report.
+	 */
+	private static String sequential( byte[] xml, int errorLimit ) throws Exception
+	{
+		TagValidator validator = new TagValidator();
+		validator.setErrorLimit( errorLimit );
+		new XMLTokenizer( validator ).parse( new ByteArrayInputStream( xml ) );
+		validator.endOfInput();
+		return report( validator );
+	}
+
+	/**
+	 * Validates a document through the pipeline and returns the report.
+	 */
+	private static String pipelined( byte[] xml, int errorLimit ) throws Exception
+	{
+		SymbolTable symbols = new SymbolTable();
+		TagValidator validator = new TagValidator( symbols, PipelineValidator.reportStage( new ErrorBuffer( symbols ) ) );
+		validator.setErrorLimit( errorLimit );
+		long scanned = new PipelineValidator( validator ).validate( new ByteArrayInputStream( xml ), XMLEncoding.UTF_8 );
+		if ( errorLimit == 0 )
+		{
+			assertEquals( xml.length, scanned );
+		}
+		return report( validator );
+	}
+
+	/**
+	 * Prints a validator's report into a string.
+	 */
+	private static String report( TagValidator validator ) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream( bytes, true, "UTF-8" );
+		validator.report( out );
+		return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Test method for {@link appDomain.PipelineValidator#validate(InputStream, XMLEncoding)}
+	 * on documents spanning many batches of tags and of errors.
+	 * @throws Exception
+	 */
+	@Test
+	public void testMatchesSequential() throws Exception
+	{
+		for ( long seed = 1; seed <= 3; seed++ )
+		{
+			byte[] xml = generate( seed, 0.2, 2 << 20 );
+			String expected = sequential( xml, 0 );
+			assertTrue( expected.split( "\n" ).length > PipelineValidator.BATCH_SIZE );
+			assertEquals( expected, pipelined( xml, 0 ) );
+		}
+		byte[] valid = generate( 4, 0, 256 << 10 );
+		assertEquals( sequential( valid, 0 ), pipelined( valid, 0 ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.PipelineValidator#validate(InputStream, XMLEncoding)}
+	 * to stop at the error limit like a sequential validation.
+	 * @throws Exception
+	 */
+	@Test
+	public void testErrorLimit() throws Exception
+	{
+		byte[] xml = generate( 5, 0.05, 1 << 20 );
+		for ( int limit : new int[] { 1, 7, 5000 } )
+		{
+			assertEquals( sequential( xml, limit ), pipelined( xml, limit ) );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.PipelineValidator#validate(InputStream, XMLEncoding)}
+	 * to pass a read failure on to the caller.
+	 * @throws Exception
+	 */
+	@Test
+	public void testReadFailure() throws Exception
+	{
+		final byte[] xml = generate( 6, 0, 1 << 20 );
+		InputStream failing = new InputStream()
+		{
+			private int position;
+
+			@Override
+			public int read() throws IOException
+			{
+				if ( position == 300000 )
+				{
+					throw new IOException( "disk gone" );
+				}
+				return xml[position++] & 0xFF;
+			}
+		};
+		TagValidator validator = new TagValidator();
+		try
+		{
+			new PipelineValidator( validator ).validate( failing, XMLEncoding.UTF_8 );
+			fail( "Expected the read failure" );
+		}
+		catch ( IOException e )
+		{
+			assertEquals( "disk gone", e.getMessage() );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.PipelineValidator#reportStage(ErrorSink)}
+	 * to pass a failure of the report's sink on to the caller, however many
+	 * more errors the validator still has to hand over.
+	 * @throws Exception
+	 */
+	@Test( timeout = 20000 )
+	public void testSinkFailure() throws Exception
+	{
+		StringBuilder xml = new StringBuilder( "<a>\n" );
+		for ( int i = 0; i < PipelineValidator.BATCH_SIZE * 10; i++ )
+		{
+			xml.append( "</x>\n" );
+		}
+		ErrorSink failing = new ErrorSink()
+		{
+			@Override
+			public void unclosed( int id, int line, int column, long offset )
+			{
+				throw new IllegalStateException( "sink gone" );
+			}
+
+			@Override
+			public void unexpected( int id, int line, int column, long offset )
+			{
+				throw new IllegalStateException( "sink gone" );
+			}
+
+			@Override
+			public void finish( PrintStream out )
+			{
+			}
+		};
+		TagValidator validator = new TagValidator( new SymbolTable(), PipelineValidator.reportStage( failing ) );
+		byte[] bytes = xml.toString().getBytes( StandardCharsets.UTF_8 );
+		try
+		{
+			new PipelineValidator( validator ).validate( new ByteArrayInputStream( bytes ), XMLEncoding.UTF_8 );
+			validator.report( new PrintStream( new ByteArrayOutputStream() ) );
+			fail( "Expected the sink's failure" );
+		}
+		catch ( IllegalStateException e )
+		{
+			assertEquals( "sink gone", e.getMessage() );
+		}
+	}
+}
@@ -0,0 +1,456 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.ErrorBuffer;
+import appDomain.ResultCache;
+import appDomain.SymbolTable;
+import appDomain.TagValidator;
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test for the cache of validation results of unchanged files.
+ */
+
+public class ResultCacheTest
+{
+	// Attributes
+	private Path dir;
+
+	/**
+	 * Creates a directory for the test files.
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		dir = Files.createTempDirectory( "cache" );
+	}
+
+	/**
+	 * Deletes the test files.
+	 * @throws Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		for ( Path file : Files.newDirectoryStream( dir ) )
+		{
+			Files.delete( file );
+		}
+		Files.delete( dir );
+	}
+
+	/**
+	 * Writes a test file.
+	 */
+	private Path write( String name, String xml ) throws Exception
+	{
+		return Files.write( dir.resolve( name ), xml.getBytes( StandardCharsets.UTF_8 ) );
+	}
+
+	/**
+	 * Validates a file through a recorder and caches the result, returning
+	 * the report. The file is hashed as it is read, as the command line
+	 * reads it.
+	 */
+	private static String validate( ResultCache cache, Path file, int errorLimit ) throws Exception
+	{
+		SymbolTable symbols = new SymbolTable();
+		ResultCache.Recorder recorder = cache.record( file, errorLimit, symbols, new ErrorBuffer( symbols ) );
+		TagValidator validator = new TagValidator( symbols, recorder );
+		validator.setErrorLimit( errorLimit );
+		try ( ResultCache.HashingInputStream in = new ResultCache.HashingInputStream( Files.newInputStream( file ) ) )
+		{
+			recorder.hashedBy( in );
+			new XMLTokenizer( validator ).parse( in );
+		}
+		validator.endOfInput();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream( bytes, true, "UTF-8" );
+		validator.report( out );
+		cache.put( recorder, validator.isLimitReached() );
+		return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Caches the result of a file validated from the given bytes, read in
+	 * chunks of the given size through a hashing stream handed to the
+	 * recorder.
+	 */
+	private static void validateHashed( ResultCache cache, Path file, byte[] bytes, final int chunk ) throws Exception
+	{
+		SymbolTable symbols = new SymbolTable();
+		ResultCache.Recorder recorder = cache.record( file, 0, symbols, new ErrorBuffer( symbols ) );
+		InputStream chunked = new FilterInputStream( new ByteArrayInputStream( bytes ) )
+		{
+			@Override
+			public int read( byte[] b, int off, int len ) throws IOException
+			{
+				return super.read( b, off, Math.min( len, chunk ) );
+			}
+		};
+		ResultCache.HashingInputStream hashed = new ResultCache.HashingInputStream( chunked );
+		recorder.hashedBy( hashed );
+		TagValidator validator = new TagValidator( symbols, recorder );
+		new XMLTokenizer( validator ).parse( hashed );
+		validator.endOfInput();
+		validator.report( new PrintStream( new ByteArrayOutputStream() ) );
+		cache.put( recorder, false );
+	}
+
+	/**
+	 * Returns the report of a cached result.
+	 */
+	private static String replay( ResultCache.Result result ) throws Exception
+	{
+		SymbolTable symbols = new SymbolTable();
+		ErrorBuffer sink = new ErrorBuffer( symbols );
+		result.replay( symbols, sink );
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream( bytes, true, "UTF-8" );
+		sink.finish( out );
+		return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ResultCache#get(Path, int)} to
+	 * replay the errors of an unchanged file as they were reported.
+	 * @throws Exception
+	 */
+	@Test
+	public void testReplaysUnchangedFile() throws Exception
+	{
+		ResultCache cache = new ResultCache( ResultCache.DEFAULT_MAX_BYTES );
+		Path file = write( "a.xml", "<a>\n<b></a>\n</c><\u00e9t\u00e9>\n" );
+		String report = validate( cache, file, 0 );
+
+		ResultCache.Result result = cache.get( file, 0 );
+		assertNotNull( result );
+		assertEquals( 3, result.errorCount() );
+		assertFalse( result.isLimitReached() );
+		assertEquals( report, replay( result ) );
+		assertEquals( 1, cache.hits() );
+		assertEquals( 0, cache.misses() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ResultCache#get(Path, int)} to miss
+	 * a file edited without changing its size or time, and a file
+	 * validated with another error limit.
+	 * @throws Exception
+	 */
+	@Test
+	public void testMissesChangedFile() throws Exception
+	{
+		ResultCache cache = new ResultCache( ResultCache.DEFAULT_MAX_BYTES );
+		Path file = write( "a.xml", "<a><b></a>" );
+		validate( cache, file, 0 );
+		assertNull( cache.get( file, 5 ) );
+
+		FileTime time = Files.getLastModifiedTime( file );
+		write( "a.xml", "<a><c></a>" );
+		Files.setLastModifiedTime( file, time );
+		assertNull( cache.get( file, 0 ) );
+		assertEquals( 2, cache.misses() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ResultCache#get(Path, int)} to hit a
+	 * file that was only touched, and an old file without hashing it.
+	 * @throws Exception
+	 */
+	@Test
+	public void testTouchedFile() throws Exception
+	{
+		ResultCache cache = new ResultCache( ResultCache.DEFAULT_MAX_BYTES );
+		Path file = write( "a.xml", "<a><b></a>" );
+		Files.setLastModifiedTime( file, FileTime.fromMillis( System.currentTimeMillis() - 60000 ) );
+		validate( cache, file, 1 );
+		ResultCache.Result result = cache.get( file, 1 );
+		assertNotNull( result );
+		assertTrue( result.isLimitReached() );
+
+		Files.setLastModifiedTime( file, FileTime.fromMillis( System.currentTimeMillis() - 30000 ) );
+		assertNotNull( cache.get( file, 1 ) );
+		assertEquals( 2, cache.hits() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ResultCache#save(Path)} and
+	 * {@link appDomain.ResultCache#load(Path, long)} to keep the results
+	 * between runs.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSaveAndLoad() throws Exception
+	{
+		Path cacheFile = dir.resolve( "results.cache" );
+		assertEquals( 0, ResultCache.load( cacheFile, 1 << 20 ).size() );
+
+		ResultCache cache = new ResultCache( 1 << 20 );
+		Path good = write( "good.xml", "<a><b/></a>" );
+		Path bad = write( "bad.xml", "<a><b></a></d>" );
+		validate( cache, good, 0 );
+		String report = validate( cache, bad, 0 );
+		cache.save( cacheFile );
+
+		ResultCache loaded = ResultCache.load( cacheFile, 1 << 20 );
+		assertEquals( 2, loaded.size() );
+		assertEquals( cache.byteSize(), loaded.byteSize() );
+		assertEquals( 0, loaded.get( good, 0 ).errorCount() );
+		assertEquals( report, replay( loaded.get( bad, 0 ) ) );
+
+		Files.write( cacheFile, new byte[] { 1, 2, 3 } );
+		assertEquals( 0, ResultCache.load( cacheFile, 1 << 20 ).size() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ResultCache#save(Path)} to write the
+	 * entries on a later call when an earlier one failed, here because the
+	 * cache directory could not be written to at first.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSaveAfterFailedSave() throws Exception
+	{
+		Path cacheDir = dir.resolve( "cacheDir" );
+		Path cacheFile = cacheDir.resolve( "results.cache" );
+		ResultCache cache = new ResultCache( 1 << 20 );
+		Path bad = write( "bad.xml", "<a><b></a></d>" );
+		String report = validate( cache, bad, 0 );
+
+		// A plain file where the directory should be: nothing can be created in it
+		Files.write( cacheDir, new byte[0] );
+		try
+		{
+			cache.save( cacheFile );
+			fail( "save into a file, not a directory" );
+		}
+		catch ( IOException e )
+		{
+			// expected
+		}
+
+		Files.delete( cacheDir );
+		Files.createDirectory( cacheDir );
+		try
+		{
+			cache.save( cacheFile );
+			ResultCache loaded = ResultCache.load( cacheFile, 1 << 20 );
+			assertEquals( 1, loaded.size() );
+			assertEquals( report, replay( loaded.get( bad, 0 ) ) );
+		}
+		finally
+		{
+			Files.deleteIfExists( cacheFile );
+			Files.delete( cacheDir );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.ResultCache#load(Path, long)} to
+	 * start empty, with a warning, from a file whose record length is
+	 * corrupt, without allocating it.
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoadCorruptLength() throws Exception
+	{
+		Path cacheFile = dir.resolve( "results.cache" );
+		Path file = write( "bad.xml", "<a><b></a></d>" );
+		ResultCache cache = new ResultCache( 1 << 20 );
+		validate( cache, file, 0 );
+		validate( cache, write( "good.xml", "<a/>" ), 0 );
+		cache.save( cacheFile );
+		byte[] saved = Files.readAllBytes( cacheFile );
+		// Magic, count, path, then the length after 49 bytes of fixed fields
+		long lengthAt = 4 + 4 + 2 + file.toAbsolutePath().normalize().toString().getBytes( StandardCharsets.UTF_8 ).length + 49;
+
+		PrintStream err = System.err;
+		ByteArrayOutputStream warnings = new ByteArrayOutputStream();
+		System.setErr( new PrintStream( warnings, true, "UTF-8" ) );
+		try
+		{
+			for ( int length : new int[] { Integer.MAX_VALUE, saved.length, -1 } )
+			{
+				try ( RandomAccessFile raw = new RandomAccessFile( cacheFile.toFile(), "rw" ) )
+				{
+					raw.seek( lengthAt );
+					raw.writeInt( length );
+				}
+				assertEquals( 0, ResultCache.load( cacheFile, 1 << 20 ).size() );
+			}
+			Files.write( cacheFile, saved );
+			assertEquals( 0, ResultCache.load( cacheFile, 10 ).size() );
+		}
+		finally
+		{
+			System.setErr( err );
+		}
+		assertTrue( new String( warnings.toByteArray(), StandardCharsets.UTF_8 ).contains( "is corrupt" ) );
+		Files.write( cacheFile, saved );
+		assertEquals( 2, ResultCache.load( cacheFile, 1 << 20 ).size() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ResultCache.Recorder#hashedBy(ResultCache.HashingInputStream)}
+	 * to store the hash of the bytes read, in chunks of any size, and to
+	 * hash the file itself if the stream did not read all of it.
+	 * @throws Exception
+	 */
+	@Test
+	public void testHashedWhileRead() throws Exception
+	{
+		StringBuilder xml = new StringBuilder();
+		for ( int i = 0; i < 5000; i++ )
+		{
+			xml.append( "<a" ).append( i % 7 ).append( "><b></a" ).append( i % 7 ).append( ">\n" );
+		}
+		Path file = write( "a.xml", xml.toString() );
+		byte[] bytes = Files.readAllBytes( file );
+		for ( int chunk : new int[] { 1, 3, 8, 13, 4096, bytes.length } )
+		{
+			ResultCache cache = new ResultCache( ResultCache.DEFAULT_MAX_BYTES );
+			validateHashed( cache, file, bytes, chunk );
+			assertNotNull( "Chunk " + chunk, cache.get( file, 0 ) );
+		}
+
+		// The stream's hash is trusted, so other bytes of the same length
+		// make the entry miss
+		byte[] other = bytes.clone();
+		other[other.length / 2] ^= 1;
+		ResultCache cache = new ResultCache( ResultCache.DEFAULT_MAX_BYTES );
+		validateHashed( cache, file, other, 4096 );
+		assertNull( cache.get( file, 0 ) );
+
+		// A stream that stopped early is not
+		cache = new ResultCache( ResultCache.DEFAULT_MAX_BYTES );
+		validateHashed( cache, file, Arrays.copyOf( other, other.length - 1 ), 4096 );
+		assertNotNull( cache.get( file, 0 ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ResultCache#put(ResultCache.Recorder, boolean)}
+	 * to store a validation stopped at the error limit under the hash of
+	 * the bytes read before the stop, and not at all if they were not
+	 * hashed, so the file is never read further to be cached.
+	 * @throws Exception
+	 */
+	@Test
+	public void testLimitStoppedUsesBytesRead() throws Exception
+	{
+		StringBuilder xml = new StringBuilder( "<a></b>\n" );
+		while ( xml.length() < 4 * XMLTokenizer.BUFFER_SIZE )
+		{
+			xml.append( "<c>text</c>\n" );
+		}
+		Path file = write( "a.xml", xml.toString() );
+		ResultCache cache = new ResultCache( ResultCache.DEFAULT_MAX_BYTES );
+		validate( cache, file, 1 );
+		FileTime time = Files.getLastModifiedTime( file );
+		write( "a.xml", xml.substring( 0, xml.length() - 2 ) + "x\n" );
+		Files.setLastModifiedTime( file, time );
+		assertNotNull( cache.get( file, 1 ) );
+		write( "a.xml", "<a></d>\n" + xml.substring( 8 ) );
+		Files.setLastModifiedTime( file, time );
+		assertNull( cache.get( file, 1 ) );
+
+		SymbolTable symbols = new SymbolTable();
+		ResultCache.Recorder recorder = cache.record( file, 1, symbols, new ErrorBuffer( symbols ) );
+		TagValidator validator = new TagValidator( symbols, recorder );
+		validator.setErrorLimit( 1 );
+		new XMLTokenizer( validator ).parse( new ByteArrayInputStream( Files.readAllBytes( file ) ) );
+		assertTrue( validator.isLimitReached() );
+		cache = new ResultCache( ResultCache.DEFAULT_MAX_BYTES );
+		cache.put( recorder, true );
+		assertEquals( 0, cache.size() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ResultCache.Recorder#isCacheable()}
+	 * to stop recording once the errors outgrow the cache's limit, while
+	 * still passing every error on, and for
+	 * {@link appDomain.ResultCache#put(ResultCache.Recorder, boolean)} to
+	 * skip such a file.
+	 * @throws Exception
+	 */
+	@Test
+	public void testRecordsBoundedByLimit() throws Exception
+	{
+		StringBuilder xml = new StringBuilder();
+		for ( int i = 0; i < 200; i++ )
+		{
+			xml.append( "</e" ).append( i ).append( ">\n" );
+		}
+		Path file = write( "a.xml", xml.toString() );
+		ResultCache unbounded = new ResultCache( ResultCache.DEFAULT_MAX_BYTES );
+		String report = validate( unbounded, file, 0 );
+		assertEquals( 1, unbounded.size() );
+
+		ResultCache cache = new ResultCache( 1000 );
+		SymbolTable symbols = new SymbolTable();
+		ResultCache.Recorder recorder = cache.record( file, 0, symbols, new ErrorBuffer( symbols ) );
+		assertTrue( recorder.isCacheable() );
+		TagValidator validator = new TagValidator( symbols, recorder );
+		try ( InputStream in = Files.newInputStream( file ) )
+		{
+			new XMLTokenizer( validator ).parse( in );
+		}
+		validator.endOfInput();
+		assertFalse( recorder.isCacheable() );
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		validator.report( new PrintStream( bytes, true, "UTF-8" ) );
+		assertEquals( report, new String( bytes.toByteArray(), StandardCharsets.UTF_8 ) );
+		cache.put( recorder, false );
+		assertEquals( 0, cache.size() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ResultCache#put(ResultCache.Recorder, boolean)}
+	 * to evict the least recently used files over the size limit.
+	 * @throws Exception
+	 */
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws Exception
+	{
+		ResultCache cache = new ResultCache( 600 );
+		Path first = write( "first.xml", "<a/>" );
+		Path second = write( "second.xml", "<a/>" );
+		Path third = write( "third.xml", "<a/>" );
+		validate( cache, first, 0 );
+		validate( cache, second, 0 );
+		assertEquals( 2, cache.size() );
+		assertNotNull( cache.get( first, 0 ) );
+
+		long entry = cache.byteSize() / 2;
+		cache = new ResultCache( 2 * entry + entry / 2 );
+		validate( cache, first, 0 );
+		validate( cache, second, 0 );
+		cache.get( first, 0 );
+		validate( cache, third, 0 );
+		assertEquals( 2, cache.size() );
+		assertTrue( cache.byteSize() <= 2 * entry + entry / 2 );
+		assertNotNull( cache.get( first, 0 ) );
+		assertNull( cache.get( second, 0 ) );
+		assertNotNull( cache.get( third, 0 ) );
+	}
+}
@@ -0,0 +1,106 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.SymbolTable;
+
+/**
+ * Class Description:
+ * Test for the tag name symbol table used by the XMLParser.
+ */
+
+public class SymbolTableTest
+{
+	// Attributes
+	private SymbolTable symbols;
+
+	/**
+	 * Creates an empty symbol table before each test.
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		symbols = new SymbolTable();
+	}
+
+	/**
+	 * Interns a whole string.
+	 */
+	private int intern( String name )
+	{
+		byte[] bytes = name.getBytes( StandardCharsets.UTF_8 );
+		return symbols.intern( bytes, 0, bytes.length );
+	}
+
+	/**
+	 * Test method for {@link appDomain.SymbolTable#intern(byte[], int, int)}
+	 * to hand out dense ids and return the same id for the same name.
+	 */
+	@Test
+	public void testInternSameName()
+	{
+		assertEquals( 0, intern( "Language" ) );
+		assertEquals( 1, intern( "Driver" ) );
+		assertEquals( 0, intern( "Language" ) );
+		assertEquals( 2, symbols.size() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.SymbolTable#intern(byte[], int, int)}
+	 * to look up a name inside a larger buffer.
+	 */
+	@Test
+	public void testInternRange()
+	{
+		int id = intern( "b" );
+		byte[] buffer = "<b>".getBytes( StandardCharsets.UTF_8 );
+		assertEquals( id, symbols.intern( buffer, 1, 1 ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.SymbolTable#intern(byte[], int, int)}
+	 * to keep names distinct by case and across growth of the table.
+	 */
+	@Test
+	public void testManyNames()
+	{
+		for ( int i = 0; i < 1000; i++ )
+		{
+			assertEquals( i, intern( "tag" + i ) );
+		}
+		assertEquals( 1000, intern( "I" ) );
+		assertEquals( 1001, intern( "i" ) );
+		for ( int i = 0; i < 1000; i++ )
+		{
+			assertEquals( i, intern( "tag" + i ) );
+			assertEquals( "tag" + i, symbols.name( i ) );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.SymbolTable#name(int)}
+	 * to decode non-ASCII names.
+	 */
+	@Test
+	public void testNonAsciiName()
+	{
+		int id = intern( "Stra\u00dfe" );
+		assertEquals( "Stra\u00dfe", symbols.name( id ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.SymbolTable#name(int)}
+	 * to reject an unknown id.
+	 */
+	@Test( expected = IndexOutOfBoundsException.class )
+	public void testUnknownId()
+	{
+		symbols.name( 5 );
+	}
+}
@@ -0,0 +1,260 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.JsonLinesSink;
+import appDomain.StreamingErrorSink;
+import appDomain.SymbolTable;
+import appDomain.TagValidator;
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test for the tag matching and error recovery of the XMLParser.
+ */
+
+public class TagValidatorTest
+{
+	// Attributes
+	private TagValidator validator;
+
+	/**
+	 * Creates a fresh validator before each test.
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		validator = new TagValidator();
+	}
+
+	/**
+	 * Validates a document and returns the printed report.
+	 */
+	private String validate( String xml ) throws Exception
+	{
+		new XMLTokenizer( validator ).parse( new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+		validator.endOfInput();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		validator.report( new PrintStream( bytes, true, "UTF-8" ) );
+		return bytes.toString( "UTF-8" ).replace( System.lineSeparator(), "\n" );
+	}
+
+	/**
+	 * Test method for {@link appDomain.TagValidator#report(PrintStream)}
+	 * on a correctly constructed document.
+	 * @throws Exception
+	 */
+	@Test
+	public void testValidDocument() throws Exception
+	{
+		assertEquals( "XML document is constructed correctly.\n", validate( "<a>\n<b/><c x='1'></c>\n</a>" ) );
+		assertTrue( validator.isValid() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.TagValidator#report(PrintStream)}
+	 * to report interleaved tags, unwinding before stray closing tags.
+	 * @throws Exception
+	 */
+	@Test
+	public void testInterleavedTags() throws Exception
+	{
+		String expected = "Error at line 2 <i> is not constructed correctly.\n"
+				+ "Error at line 2 </i> is not constructed correctly.\n";
+		assertEquals( expected, validate( "<a>\n<b><i></b></i>\n</a>" ) );
+		assertFalse( validator.isValid() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.TagValidator#report(PrintStream)}
+	 * to report tags left open at the end of the document.
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnclosedAtEOF() throws Exception
+	{
+		String expected = "Error at EOF: <c> is not constructed correctly.\n"
+				+ "Error at EOF: <a> is not constructed correctly.\n";
+		assertEquals( expected, validate( "<a><b></b><c>" ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.TagValidator#report(PrintStream)}
+	 * with stray closing tags under deep nesting, where recovery must not
+	 * depend on the depth of the stack.
+	 * @throws Exception
+	 */
+	@Test
+	public void testStrayClosesUnderDeepNesting() throws Exception
+	{
+		StringBuilder xml = new StringBuilder();
+		for ( int i = 0; i < 10000; i++ )
+		{
+			xml.append( "<d>" );
+		}
+		xml.append( "\n" );
+		for ( int i = 0; i < 10000; i++ )
+		{
+			xml.append( "</x>" );
+		}
+		xml.append( "\n<d>" );
+		for ( int i = 0; i < 10001; i++ )
+		{
+			xml.append( "</d>" );
+		}
+		String report = validate( xml.toString() );
+		String[] lines = report.split( "\n" );
+		assertEquals( 10000, lines.length );
+		assertEquals( "Error at line 2 </x> is not constructed correctly.", lines[0] );
+	}
+
+	/**
+	 * Test method for {@link appDomain.TagValidator#report(PrintStream)}
+	 * to compare tag names case-sensitively.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCaseSensitive() throws Exception
+	{
+		String expected = "Error at line 1 <i> is not constructed correctly.\n"
+				+ "Error at line 1 </I> is not constructed correctly.\n";
+		assertEquals( expected, validate( "<a><i></I></a>" ) );
+	}
+
+	/**
+	 * Counts the spill files of streaming sinks in the temporary directory.
+	 */
+	private static int spillFiles() throws Exception
+	{
+		int n = 0;
+		try ( DirectoryStream<Path> files = Files.newDirectoryStream( Paths.get( System.getProperty( "java.io.tmpdir" ) ), "xmlparser-errors*.bin" ) )
+		{
+			for ( Path file : files )
+			{
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Test method for {@link appDomain.StreamingErrorSink} to print the
+	 * classic report when ordered, even when the reorder buffer spills, and
+	 * to delete the spill file when done.
+	 * @throws Exception
+	 */
+	@Test
+	public void testOrderedStreamingMatchesBufferedReport() throws Exception
+	{
+		String xml = "<r>\n<a><b></a></x>\n<c></y></z>\n</r><d>";
+		String expected = validate( xml );
+		int spilled = spillFiles();
+		for ( int limit = 1; limit <= 4; limit++ )
+		{
+			SymbolTable symbols = new SymbolTable();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			PrintStream out = new PrintStream( bytes, true, "UTF-8" );
+			validator = new TagValidator( symbols, new StreamingErrorSink( symbols, out, limit ) );
+			new XMLTokenizer( validator ).parse( new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+			validator.endOfInput();
+			validator.report( out );
+			assertEquals( "Limit " + limit, expected, bytes.toString( "UTF-8" ).replace( System.lineSeparator(), "\n" ) );
+			assertEquals( "Limit " + limit, spilled, spillFiles() );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.TagValidator#setErrorLimit(long)}
+	 * to stop the scan right after the last allowed error and leave the
+	 * rest of the document unread.
+	 * @throws Exception
+	 */
+	@Test
+	public void testErrorLimitStopsScan() throws Exception
+	{
+		StringBuilder xml = new StringBuilder( "<a>\n</x>\n</y>\n" );
+		for ( int i = 0; i < 100000; i++ )
+		{
+			xml.append( "</z>\n" );
+		}
+		byte[] bytes = xml.toString().getBytes( StandardCharsets.UTF_8 );
+		validator.setErrorLimit( 2 );
+		XMLTokenizer tokenizer = new XMLTokenizer( validator );
+		tokenizer.parse( new ByteArrayInputStream( bytes ) );
+		validator.endOfInput();
+		assertTrue( tokenizer.isStopped() );
+		assertTrue( validator.isLimitReached() );
+		assertEquals( 2, validator.errorCount() );
+		assertEquals( "<a>\n</x>\n</y>".length(), tokenizer.bytesConsumed() );
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		validator.report( new PrintStream( out, true, "UTF-8" ) );
+		String expected = "Error at line 2 </x> is not constructed correctly.\n"
+				+ "Error at line 3 </y> is not constructed correctly.\n";
+		assertEquals( expected, out.toString( "UTF-8" ).replace( System.lineSeparator(), "\n" ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.JsonLinesSink} to write one record
+	 * per error with byte columns and offsets, escaping the file name.
+	 * @throws Exception
+	 */
+	@Test
+	public void testJsonLinesRecords() throws Exception
+	{
+		String xml = "<r>\n  <a><b></a></x>\n</r><d>";
+		SymbolTable symbols = new SymbolTable();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		validator = new TagValidator( symbols, new JsonLinesSink( symbols, "dir\\\"q\".xml", Channels.newChannel( bytes ) ) );
+		new XMLTokenizer( validator ).parse( new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+		validator.endOfInput();
+		validator.report( null );
+		String file = "{\"file\":\"dir\\\\\\\"q\\\".xml\",";
+		String expected = file + "\"kind\":\"unclosed\",\"tag\":\"b\",\"line\":2,\"column\":9,\"offset\":12}\n"
+				+ file + "\"kind\":\"unexpected\",\"tag\":\"x\",\"line\":2,\"column\":13,\"offset\":16}\n"
+				+ file + "\"kind\":\"unclosed\",\"tag\":\"d\",\"line\":null,\"column\":null,\"offset\":null}\n";
+		assertEquals( expected, bytes.toString( "UTF-8" ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.JsonLinesSink} to write records with
+	 * tag and file names longer than its buffer.
+	 * @throws Exception
+	 */
+	@Test
+	public void testJsonLinesLongNames() throws Exception
+	{
+		StringBuilder name = new StringBuilder();
+		StringBuilder file = new StringBuilder();
+		for ( int i = 0; i < 50000; i++ )
+		{
+			name.append( "\u00e9" );
+			file.append( '"' );
+		}
+		String xml = "<r>\n<" + name + ">\n</r></" + name + ">";
+		SymbolTable symbols = new SymbolTable();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		validator = new TagValidator( symbols, new JsonLinesSink( symbols, file.toString(), Channels.newChannel( bytes ) ) );
+		new XMLTokenizer( validator ).parse( new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+		validator.endOfInput();
+		validator.report( null );
+		String prefix = "{\"file\":\"" + file.toString().replace( "\"", "\\\"" ) + "\",";
+		int offset = "<r>\n<>\n".length() + name.length() * 2;
+		String expected = prefix + "\"kind\":\"unclosed\",\"tag\":\"" + name + "\",\"line\":3,\"column\":1,\"offset\":" + offset + "}\n"
+				+ prefix + "\"kind\":\"unexpected\",\"tag\":\"" + name + "\",\"line\":3,\"column\":5,\"offset\":" + ( offset + 4 ) + "}\n";
+		assertEquals( expected, bytes.toString( "UTF-8" ) );
+	}
+}
@@ -0,0 +1,83 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import appDomain.TagValidator;
+import appDomain.ValidationMetrics;
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test for the validation metrics and their JMX publication.
+ */
+
+public class ValidationMetricsTest
+{
+	/**
+	 * Validates a document and returns its validator.
+	 */
+	private static TagValidator validate( String xml ) throws Exception
+	{
+		TagValidator validator = new TagValidator();
+		new XMLTokenizer( validator ).parse( new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+		validator.endOfInput();
+		return validator;
+	}
+
+	/**
+	 * Test method for {@link appDomain.ValidationMetrics#record(long, TagValidator, long)}
+	 * to add up documents, bytes, tags, errors by kind and the peak depth.
+	 * @throws Exception
+	 */
+	@Test
+	public void testRecord() throws Exception
+	{
+		ValidationMetrics metrics = new ValidationMetrics();
+		metrics.record( 100, validate( "<a><b><c/></b></a>" ), 1500 );
+		metrics.record( 50, validate( "<a><b></a></x><d><e><f>" ), 3000000 );
+		assertEquals( 2, metrics.getFilesValidated() );
+		assertEquals( 150, metrics.getBytesScanned() );
+		assertEquals( 5 + 7, metrics.getTagsScanned() );
+		assertEquals( 3, metrics.getPeakDepth() );
+		assertEquals( 1 + 3, metrics.getUnclosedErrors() );
+		assertEquals( 1, metrics.getUnexpectedErrors() );
+
+		long[] histogram = metrics.getLatencyHistogram();
+		assertEquals( 1, histogram[1] );
+		assertEquals( 1, histogram[12] );
+		assertEquals( 2, metrics.getLatencyP50Micros() );
+		assertEquals( 4096, metrics.getLatencyP99Micros() );
+
+		metrics.reset();
+		assertEquals( 0, metrics.getFilesValidated() );
+		assertEquals( 0, metrics.getPeakDepth() );
+		assertEquals( 0, metrics.getLatencyP99Micros() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ValidationMetrics#register()} to
+	 * publish the shared metrics as readable MXBean attributes.
+	 * @throws Exception
+	 */
+	@Test
+	public void testRegister() throws Exception
+	{
+		ValidationMetrics.register();
+		ValidationMetrics.register();
+		ValidationMetrics.global().record( 10, validate( "<a/>" ), 1000 );
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName( ValidationMetrics.OBJECT_NAME );
+		assertTrue( (Long) server.getAttribute( name, "FilesValidated" ) >= 1 );
+		assertTrue( (Long) server.getAttribute( name, "TagsScanned" ) >= 1 );
+		assertEquals( 40, ( (long[]) server.getAttribute( name, "LatencyHistogram" ) ).length );
+	}
+}
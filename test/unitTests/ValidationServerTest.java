@@ -0,0 +1,327 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.TagValidator;
+import appDomain.ValidationServer;
+import appDomain.XMLGenerator;
+import appDomain.XMLParser;
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test for the HTTP validation service.
+ */
+
+public class ValidationServerTest
+{
+	// Attributes
+	private ValidationServer server;
+	private URL url;
+
+	/**
+	 * Starts a server on any free port.
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		server = new ValidationServer( 0 );
+		server.start();
+		url = new URL( "http://localhost:" + server.port() + ValidationServer.PATH );
+	}
+
+	/**
+	 * Stops the server.
+	 * @throws Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		server.stop( 0 );
+	}
+
+	/**
+	 * Validates a document in memory and returns the report the command
+	 * line prints.
+	 */
+	private static String report( byte[] xml ) throws Exception
+	{
+		TagValidator validator = new TagValidator();
+		new XMLTokenizer( validator ).parse( new ByteArrayInputStream( xml ) );
+		validator.endOfInput();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		validator.report( new PrintStream( bytes, true, "UTF-8" ) );
+		return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Returns what the command line prints for a document on standard
+	 * input with the options.
+	 */
+	private static String expected( byte[] xml, String... args ) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream( bytes, true, "UTF-8" );
+		XMLParser.run( args, new ByteArrayInputStream( xml ), out, System.err );
+		return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Opens a request to the server.
+	 */
+	private HttpURLConnection open( String method ) throws Exception
+	{
+		return open( url, method );
+	}
+
+	/**
+	 * Opens a request to a server.
+	 */
+	private static HttpURLConnection open( URL url, String method ) throws Exception
+	{
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod( method );
+		connection.setDoOutput( "POST".equals( method ) );
+		return connection;
+	}
+
+	/**
+	 * Posts a body in one piece and returns the connection.
+	 */
+	private HttpURLConnection post( byte[] body ) throws Exception
+	{
+		return post( url, body );
+	}
+
+	/**
+	 * Posts a body in one piece to a server and returns the connection.
+	 */
+	private static HttpURLConnection post( URL url, byte[] body ) throws Exception
+	{
+		HttpURLConnection connection = open( url, "POST" );
+		connection.setFixedLengthStreamingMode( body.length );
+		try ( OutputStream out = connection.getOutputStream() )
+		{
+			out.write( body );
+		}
+		return connection;
+	}
+
+	/**
+	 * Reads a response body, or the error body of a failed request.
+	 */
+	private static String read( HttpURLConnection connection ) throws Exception
+	{
+		InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		try
+		{
+			for ( int n; ( n = in.read( buffer ) ) != -1; )
+			{
+				bytes.write( buffer, 0, n );
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ValidationServer#handle(com.sun.net.httpserver.HttpExchange)}
+	 * to answer a POSTed document with the report the command line prints.
+	 * @throws Exception
+	 */
+	@Test
+	public void testPostMatchesCommandLine() throws Exception
+	{
+		byte[] xml = Files.readAllBytes( Paths.get( "res/sample2.xml" ) );
+		HttpURLConnection connection = post( xml );
+		assertEquals( 200, connection.getResponseCode() );
+		assertEquals( "text/plain; charset=utf-8", connection.getContentType() );
+		String expected = report( xml );
+		assertTrue( expected.contains( "Error at line 18 <PackageCreationLocation>" ) );
+		assertEquals( expected, read( connection ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ValidationServer#handle(com.sun.net.httpserver.HttpExchange)}
+	 * to refuse methods other than POST.
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetNotAllowed() throws Exception
+	{
+		HttpURLConnection connection = open( "GET" );
+		assertEquals( 405, connection.getResponseCode() );
+		assertEquals( "POST", connection.getHeaderField( "Allow" ) );
+		read( connection );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ValidationServer#handle(com.sun.net.httpserver.HttpExchange)}
+	 * to answer 415 to bodies in a format or encoding it cannot read.
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnsupportedMediaType() throws Exception
+	{
+		HttpURLConnection connection = post( "<?xml version=\"1.0\" encoding=\"EBCDIC\"?>\n<a/>".getBytes( StandardCharsets.US_ASCII ) );
+		assertEquals( 415, connection.getResponseCode() );
+		assertTrue( read( connection ).contains( "EBCDIC" ) );
+
+		connection = post( new byte[] { 0x28, (byte) 0xB5, 0x2F, (byte) 0xFD, 0, 0 } );
+		assertEquals( 415, connection.getResponseCode() );
+		assertTrue( read( connection ).contains( "Zstandard" ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ValidationServer#handle(com.sun.net.httpserver.HttpExchange)}
+	 * to inflate a gzip request body.
+	 * @throws Exception
+	 */
+	@Test
+	public void testGzipBody() throws Exception
+	{
+		byte[] xml = Files.readAllBytes( Paths.get( "res/sample2.xml" ) );
+		ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+		try ( GZIPOutputStream out = new GZIPOutputStream( gzip ) )
+		{
+			out.write( xml );
+		}
+		HttpURLConnection connection = post( gzip.toByteArray() );
+		assertEquals( 200, connection.getResponseCode() );
+		assertEquals( report( xml ), read( connection ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ValidationServer#handle(com.sun.net.httpserver.HttpExchange)}
+	 * to answer 400 to a gzip body whose compressed data is corrupt, or
+	 * cut short after its first blocks were validated.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCorruptGzipBody() throws Exception
+	{
+		XMLGenerator generator = new XMLGenerator();
+		ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+		try ( GZIPOutputStream out = new GZIPOutputStream( gzip ) )
+		{
+			generator.generate( out, 1 << 20 );
+		}
+		byte[] body = gzip.toByteArray();
+		HttpURLConnection connection = post( Arrays.copyOf( body, body.length / 2 ) );
+		assertEquals( 400, connection.getResponseCode() );
+		assertTrue( read( connection ).startsWith( "Cannot read the document: " ) );
+
+		// Keep the header, garble the deflate data after it
+		gzip.reset();
+		try ( GZIPOutputStream out = new GZIPOutputStream( gzip ) )
+		{
+			out.write( Files.readAllBytes( Paths.get( "res/sample2.xml" ) ) );
+		}
+		body = gzip.toByteArray();
+		Arrays.fill( body, 10, body.length, (byte) 0xFF );
+		connection = post( body );
+		assertEquals( 400, connection.getResponseCode() );
+		assertTrue( read( connection ).startsWith( "Cannot read the document: " ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ValidationServer#handle(com.sun.net.httpserver.HttpExchange)}
+	 * to validate a body streamed in chunks, larger than any of its buffers.
+	 * @throws Exception
+	 */
+	@Test
+	public void testStreamedBody() throws Exception
+	{
+		XMLGenerator generator = new XMLGenerator();
+		generator.setErrorRate( 0.01 );
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		generator.generate( bytes, 4 << 20 );
+		byte[] xml = bytes.toByteArray();
+		HttpURLConnection connection = open( "POST" );
+		connection.setChunkedStreamingMode( 4096 );
+		try ( OutputStream out = connection.getOutputStream() )
+		{
+			for ( int i = 0; i < xml.length; i += 1000 )
+			{
+				out.write( xml, i, Math.min( 1000, xml.length - i ) );
+			}
+		}
+		assertEquals( 200, connection.getResponseCode() );
+		assertEquals( report( xml ), read( connection ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.ValidationServer#handle(com.sun.net.httpserver.HttpExchange)}
+	 * to answer with what the command line prints for the same options:
+	 * the error limit, fail-fast, streamed errors and JSON Lines.
+	 * @throws Exception
+	 */
+	@Test
+	public void testHonoursOptions() throws Exception
+	{
+		XMLGenerator generator = new XMLGenerator();
+		generator.setErrorRate( 0.05 );
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		generator.generate( bytes, 200 << 10 );
+		byte[] xml = bytes.toByteArray();
+		String[][] modes = { { "--max-errors=3" }, { "--fail-fast" }, { "--stream-errors" },
+				{ "--stream-errors=ordered", "--reorder-buffer=4" }, { "--format=jsonl" },
+				{ "--format=jsonl", "--max-errors=2" } };
+		for ( String[] mode : modes )
+		{
+			String[] args = Arrays.copyOf( mode, mode.length + 2 );
+			args[mode.length] = "--threads=2";
+			args[mode.length + 1] = "-";
+			String expected = expected( xml, args );
+			assertTrue( expected.length() > 0 );
+
+			args[mode.length + 1] = "--serve=0";
+			ValidationServer configured = new ValidationServer( args );
+			configured.start();
+			try
+			{
+				HttpURLConnection connection = post( new URL( "http://localhost:" + configured.port() + ValidationServer.PATH ), xml );
+				assertEquals( 200, connection.getResponseCode() );
+				assertEquals( String.join( " ", mode ), expected, read( connection ) );
+			}
+			finally
+			{
+				configured.stop( 0 );
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.ValidationServer#ValidationServer(String...)}
+	 * to require a port.
+	 * @throws Exception
+	 */
+	@Test( expected = IllegalArgumentException.class )
+	public void testOptionsWithoutPort() throws Exception
+	{
+		new ValidationServer( "--fail-fast", "a.xml" );
+	}
+}
@@ -0,0 +1,115 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import appDomain.XMLCursor;
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test for the pull-style cursor over the tokenizer.
+ */
+
+public class XMLCursorTest
+{
+	// Attributes
+	private static final String DOCUMENT = "<?xml version='1.0'?>\n<root>\n<skip><a><b/></a>\n<skip/></skip>\n"
+			+ "<keep id='1'>x</keep><!-- c -->\n<\u00e9t\u00e9/></root>\n";
+
+	/**
+	 * Opens a cursor reading the document the given number of bytes at a
+	 * time.
+	 */
+	private static XMLCursor open( String xml, final int slice ) throws Exception
+	{
+		InputStream in = new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) )
+		{
+			@Override
+			public synchronized int read( byte[] b, int off, int len )
+			{
+				return super.read( b, off, Math.min( len, slice ) );
+			}
+		};
+		return new XMLCursor( in );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLCursor#next()} to step through
+	 * every token with its depth and line, wherever the input is split.
+	 * @throws Exception
+	 */
+	@Test
+	public void testNext() throws Exception
+	{
+		for ( int slice : new int[] { 1, 2, 5, 1 << 16 } )
+		{
+			StringBuilder tokens = new StringBuilder();
+			XMLCursor cursor = open( DOCUMENT, slice );
+			int type;
+			while ( ( type = cursor.next() ) != XMLCursor.END_DOCUMENT )
+			{
+				tokens.append( type ).append( ':' ).append( cursor.depth() ).append( '@' ).append( cursor.lineNumber() ).append( ' ' );
+			}
+			cursor.close();
+			assertEquals( "Slice " + slice, "4:0@1 1:1@2 1:2@3 1:3@3 3:3@3 2:2@3 3:2@4 2:1@4 "
+					+ "1:2@5 2:1@5 6:1@5 3:1@6 2:0@6 ", tokens.toString() );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLCursor#nameEquals(CharSequence)}
+	 * for ASCII and non-ASCII names and for tokens without a name.
+	 * @throws Exception
+	 */
+	@Test
+	public void testNameEquals() throws Exception
+	{
+		XMLCursor cursor = open( DOCUMENT, 3 );
+		assertEquals( XMLTokenizer.DECLARATION, cursor.next() );
+		assertFalse( cursor.nameEquals( "xml" ) );
+		cursor.next();
+		assertTrue( cursor.nameEquals( "root" ) );
+		assertFalse( cursor.nameEquals( "roo" ) );
+		assertFalse( cursor.nameEquals( "rooT" ) );
+		while ( !cursor.nameEquals( "\u00e9t\u00e9" ) )
+		{
+			assertNotEquals( XMLCursor.END_DOCUMENT, cursor.next() );
+		}
+		assertEquals( XMLTokenizer.EMPTY_TAG, cursor.tokenType() );
+		assertFalse( cursor.nameEquals( "\u00e9t\u00e8" ) );
+		assertEquals( "\u00e9t\u00e9", cursor.name() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLCursor#skipSubtree()} to land on
+	 * the closing tag of the current element, nested tags of the same name
+	 * included.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSkipSubtree() throws Exception
+	{
+		XMLCursor cursor = open( DOCUMENT, 4 );
+		while ( !cursor.nameEquals( "skip" ) )
+		{
+			cursor.next();
+		}
+		assertEquals( XMLTokenizer.END_TAG, cursor.skipSubtree() );
+		assertTrue( cursor.nameEquals( "skip" ) );
+		assertEquals( 4, cursor.lineNumber() );
+		assertEquals( 1, cursor.depth() );
+		assertEquals( XMLTokenizer.START_TAG, cursor.next() );
+		assertTrue( cursor.nameEquals( "keep" ) );
+
+		cursor = open( "<a><b>", 1 );
+		cursor.next();
+		assertEquals( XMLCursor.END_DOCUMENT, cursor.skipSubtree() );
+		assertEquals( XMLCursor.END_DOCUMENT, cursor.next() );
+	}
+}
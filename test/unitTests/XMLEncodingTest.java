@@ -0,0 +1,135 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import appDomain.TagValidator;
+import appDomain.Utf16Transcoder;
+import appDomain.XMLEncoding;
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test for the encoding sniffing and the UTF-16 input of the XMLParser.
+ */
+
+public class XMLEncodingTest
+{
+	// Attributes
+	private static final String DOCUMENT = "<a>\n<\u00e9t\u00e9>\n<b></\u00e9t\u00e9>\n</x>\n<c>\ud83d\ude00</c>\n</a>";
+
+	/**
+	 * Sniffs the encoding of a document.
+	 */
+	private static XMLEncoding detect( byte[] bytes ) throws Exception
+	{
+		return XMLEncoding.detect( bytes, bytes.length );
+	}
+
+	/**
+	 * Validates encoded bytes as XMLParser does and returns the report.
+	 */
+	private static String validate( byte[] bytes ) throws Exception
+	{
+		XMLEncoding encoding = detect( bytes );
+		TagValidator validator = new TagValidator( encoding.newSymbolTable() );
+		encoding.parse( new ByteArrayInputStream( bytes ), new XMLTokenizer( validator ) );
+		validator.endOfInput();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		validator.report( new PrintStream( out, true, "UTF-8" ) );
+		return out.toString( "UTF-8" );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLEncoding#detect(byte[], int)}
+	 * with byte order marks, UTF-16 patterns and declarations.
+	 * @throws Exception
+	 */
+	@Test
+	public void testDetect() throws Exception
+	{
+		assertEquals( "UTF-8", detect( "<a/>".getBytes( StandardCharsets.US_ASCII ) ).toString() );
+		assertEquals( "UTF-8", detect( new byte[0] ).toString() );
+		assertEquals( "UTF-8", detect( "\ufeff<?xml version='1.0' encoding='utf-8'?><a/>".getBytes( StandardCharsets.UTF_8 ) ).toString() );
+		assertEquals( "ISO-8859-1", detect( "<?xml version=\"1.0\" encoding = \"ISO-8859-1\"?>".getBytes( StandardCharsets.US_ASCII ) ).toString() );
+		assertEquals( "UTF-16LE", detect( "<?xml?>".getBytes( StandardCharsets.UTF_16LE ) ).toString() );
+		assertEquals( "UTF-16BE", detect( "<?xml?>".getBytes( StandardCharsets.UTF_16BE ) ).toString() );
+		assertEquals( "UTF-16BE", detect( "\ufeff<a/>".getBytes( StandardCharsets.UTF_16BE ) ).toString() );
+		assertTrue( detect( "\ufeff<a/>".getBytes( StandardCharsets.UTF_16LE ) ).isUtf16() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLEncoding#detect(byte[], int)}
+	 * to reject encodings whose bytes cannot be scanned.
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnsupported() throws Exception
+	{
+		String[] declarations = { "<?xml version='1.0' encoding='no-such-charset'?>",
+				"<?xml version='1.0' encoding='UTF-16'?>" };
+		for ( String declaration : declarations )
+		{
+			try
+			{
+				detect( declaration.getBytes( StandardCharsets.US_ASCII ) );
+				fail( declaration );
+			}
+			catch ( UnsupportedEncodingException e )
+			{
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLEncoding#parse(java.io.InputStream, XMLTokenizer)}
+	 * to report the same names and lines in every supported encoding.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSameReportInEveryEncoding() throws Exception
+	{
+		String expected = validate( DOCUMENT.getBytes( StandardCharsets.UTF_8 ) );
+		assertTrue( expected.contains( "Error at line 3 <b>" ) );
+		assertTrue( expected.contains( "Error at line 4 </x>" ) );
+		assertEquals( expected, validate( DOCUMENT.getBytes( StandardCharsets.UTF_16LE ) ) );
+		assertEquals( expected, validate( ( "\ufeff" + DOCUMENT ).getBytes( StandardCharsets.UTF_16BE ) ) );
+		String latin = "<?xml version='1.0' encoding='ISO-8859-1'?>\n" + DOCUMENT.replace( "\ud83d\ude00", "" );
+		String latinExpected = validate( latin.getBytes( StandardCharsets.UTF_8 ) );
+		assertEquals( latinExpected, validate( latin.getBytes( Charset.forName( "ISO-8859-1" ) ) ) );
+		assertTrue( latinExpected.contains( "Error at line 5 </x>" ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.Utf16Transcoder#feed(ByteBuffer)}
+	 * with input split inside code units and surrogate pairs.
+	 * @throws Exception
+	 */
+	@Test
+	public void testTranscoderSplitAnywhere() throws Exception
+	{
+		String expected = validate( DOCUMENT.getBytes( StandardCharsets.UTF_8 ) );
+		byte[] bytes = DOCUMENT.getBytes( StandardCharsets.UTF_16LE );
+		TagValidator validator = new TagValidator();
+		Utf16Transcoder transcoder = new Utf16Transcoder( false, new XMLTokenizer( validator ) );
+		for ( int i = 0; i < bytes.length; i++ )
+		{
+			transcoder.feed( ByteBuffer.wrap( bytes, i, 1 ) );
+		}
+		transcoder.finish();
+		validator.endOfInput();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		validator.report( new PrintStream( out, true, "UTF-8" ) );
+		assertEquals( expected, out.toString( "UTF-8" ) );
+	}
+}
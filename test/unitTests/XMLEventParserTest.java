@@ -0,0 +1,148 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import appDomain.TextView;
+import appDomain.XMLEventHandler;
+import appDomain.XMLEventParser;
+
+/**
+ * Class Description:
+ * Test for the push-style event API built on the tokenizer and the tag
+ * validator.
+ */
+
+public class XMLEventParserTest
+{
+	// Attributes
+	private static final String DOCUMENT = "<?xml version='1.0'?>\n<a x='1'>hi <b/><!-- c -->there\n<c>&amp;</d></a>\n<e>";
+
+	/**
+	 * Records every event as a short string.
+	 */
+	private static class Recorder implements XMLEventHandler
+	{
+		private final List<String> events = new ArrayList<String>();
+
+		@Override
+		public void startTag( CharSequence name, int line )
+		{
+			events.add( "start:" + name + "@" + line );
+		}
+
+		@Override
+		public void endTag( CharSequence name, int line )
+		{
+			events.add( "end:" + name + "@" + line );
+		}
+
+		@Override
+		public void emptyTag( CharSequence name, int line )
+		{
+			events.add( "empty:" + name + "@" + line );
+		}
+
+		@Override
+		public void text( TextView text, int line )
+		{
+			events.add( "text:" + text + "@" + line );
+		}
+
+		@Override
+		public void error( int kind, CharSequence name, int line )
+		{
+			events.add( "error" + kind + ":" + name + "@" + line );
+		}
+	}
+
+	/**
+	 * Parses a document read the given number of bytes at a time.
+	 */
+	private static List<String> parse( String xml, final int slice ) throws Exception
+	{
+		InputStream in = new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) )
+		{
+			@Override
+			public synchronized int read( byte[] b, int off, int len )
+			{
+				return super.read( b, off, Math.min( len, slice ) );
+			}
+		};
+		Recorder recorder = new Recorder();
+		new XMLEventParser( recorder ).parse( in );
+		return recorder.events;
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLEventParser#parse(InputStream)}
+	 * to report tags, text and errors in document order.
+	 * @throws Exception
+	 */
+	@Test
+	public void testEventsInOrder() throws Exception
+	{
+		String[] expected = { "text:\n@1", "start:a@2", "text:hi @2", "empty:b@2", "text:there\n@2",
+				"start:c@3", "text:&amp;@3", "error2:d@3", "end:d@3", "error1:c@3", "end:a@3", "text:\n@3",
+				"start:e@4", "error1:e@-1" };
+		List<String> events = parse( DOCUMENT, 1 << 16 );
+		assertEquals( Arrays.asList( expected ), events );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLEventParser#parse(InputStream)}
+	 * to report the same events wherever the input is split.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSplitInput() throws Exception
+	{
+		List<String> whole = parse( DOCUMENT, 1 << 16 );
+		for ( int slice = 1; slice < 12; slice++ )
+		{
+			assertEquals( "Slice " + slice, whole, parse( DOCUMENT, slice ) );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLEventParser#parse(InputStream)}
+	 * to keep a '<' that starts no tag in the text and to decode non-ASCII
+	 * text.
+	 * @throws Exception
+	 */
+	@Test
+	public void testTextContent() throws Exception
+	{
+		List<String> events = parse( "<p>a < b \u00e9\u4e2d</p>", 3 );
+		assertEquals( "text:a < b \u00e9\u4e2d@1", events.get( 1 ) );
+		assertEquals( 3, events.size() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.TextView#contentEquals(CharSequence)}
+	 * to compare the reused view without copying it.
+	 * @throws Exception
+	 */
+	@Test
+	public void testContentEquals() throws Exception
+	{
+		final List<Boolean> matches = new ArrayList<Boolean>();
+		new XMLEventParser( new XMLEventHandler()
+		{
+			@Override
+			public void text( TextView text, int line )
+			{
+				matches.add( text.contentEquals( "caf\u00e9" ) );
+			}
+		} ).parse( new ByteArrayInputStream( "<a>caf\u00e9</a><a>cafe</a>".getBytes( StandardCharsets.UTF_8 ) ) );
+		assertEquals( Arrays.asList( true, false ), matches );
+	}
+}
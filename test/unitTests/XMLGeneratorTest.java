@@ -0,0 +1,129 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import appDomain.TagValidator;
+import appDomain.XMLGenerator;
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test for the synthetic document generator used by benchmarks and load
+ * tests.
+ */
+
+public class XMLGeneratorTest
+{
+	// Attributes
+	private long tokens;
+	private int maxDepth;
+
+	/**
+	 * Generates a document in memory.
+	 */
+	private static byte[] generate( XMLGenerator generator, long size ) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		generator.generate( bytes, size );
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Validates a document, counting its tags and nesting depth.
+	 */
+	private TagValidator validate( byte[] xml ) throws Exception
+	{
+		tokens = 0;
+		maxDepth = 0;
+		final TagValidator validator = new TagValidator();
+		new XMLTokenizer( new XMLTokenizer.TokenListener()
+		{
+			private int depth;
+
+			@Override
+			public void token( XMLTokenizer t )
+			{
+				int type = t.tokenType();
+				if ( type == XMLTokenizer.START_TAG || type == XMLTokenizer.END_TAG || type == XMLTokenizer.EMPTY_TAG )
+				{
+					tokens++;
+				}
+				if ( type == XMLTokenizer.START_TAG )
+				{
+					maxDepth = Math.max( maxDepth, ++depth );
+				}
+				else if ( type == XMLTokenizer.END_TAG )
+				{
+					depth--;
+				}
+				validator.token( t );
+			}
+		} ).parse( new ByteArrayInputStream( xml ) );
+		validator.endOfInput();
+		return validator;
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLGenerator#generate(java.io.OutputStream, long)}
+	 * to write a well-formed document of the requested size, depth and tag
+	 * count.
+	 * @throws Exception
+	 */
+	@Test
+	public void testWellFormed() throws Exception
+	{
+		XMLGenerator generator = new XMLGenerator();
+		generator.setDepth( 5 );
+		generator.setAttributes( 4 );
+		byte[] xml = generate( generator, 200000 );
+		assertTrue( xml.length >= 200000 );
+		assertEquals( xml.length, generator.bytesWritten() );
+		TagValidator validator = validate( xml );
+		assertTrue( validator.isValid() );
+		assertEquals( generator.tagCount(), tokens );
+		assertEquals( 5, maxDepth );
+		assertEquals( 0, generator.injectedErrors() );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLGenerator#setSeed(long)} to give
+	 * the same bytes for the same seed and other bytes for another.
+	 * @throws Exception
+	 */
+	@Test
+	public void testDeterministic() throws Exception
+	{
+		XMLGenerator generator = new XMLGenerator();
+		generator.setErrorRate( 0.05 );
+		byte[] first = generate( generator, 50000 );
+		assertTrue( Arrays.equals( first, generate( generator, 50000 ) ) );
+		generator.setSeed( 2 );
+		assertFalse( Arrays.equals( first, generate( generator, 50000 ) ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLGenerator#setErrorKinds(int)} to
+	 * inject errors of every kind that the validator then reports.
+	 * @throws Exception
+	 */
+	@Test
+	public void testErrorKinds() throws Exception
+	{
+		int[] kinds = { XMLGenerator.MISMATCHED, XMLGenerator.UNCLOSED, XMLGenerator.STRAY, XMLGenerator.INTERLEAVED };
+		for ( int kind : kinds )
+		{
+			XMLGenerator generator = new XMLGenerator();
+			generator.setErrorKinds( kind );
+			generator.setErrorRate( 0.01 );
+			TagValidator validator = validate( generate( generator, 100000 ) );
+			assertTrue( "Kind " + kind, generator.injectedErrors() > 0 );
+			assertTrue( "Kind " + kind, validator.errorCount() >= generator.injectedErrors() );
+		}
+	}
+}
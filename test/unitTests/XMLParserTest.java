@@ -0,0 +1,284 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import appDomain.ResultCache;
+import appDomain.ValidationMetrics;
+import appDomain.XMLGenerator;
+import appDomain.XMLParser;
+
+/**
+ * Class Description:
+ * Test for validating standard input and for the options that select it,
+ * and for caching the results of files read each way.
+ */
+
+public class XMLParserTest
+{
+	/**
+	 * Generates a document with tag errors.
+	 */
+	private static byte[] generate() throws Exception
+	{
+		XMLGenerator generator = new XMLGenerator();
+		generator.setErrorRate( 0.05 );
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		generator.generate( bytes, 1 << 20 );
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Returns a stream fed by another thread in small writes, as a pipe
+	 * from another process is.
+	 */
+	private static InputStream pipe( final byte[] bytes ) throws IOException
+	{
+		PipedInputStream in = new PipedInputStream( 4096 );
+		final OutputStream out = new PipedOutputStream( in );
+		Thread writer = new Thread( () ->
+		{
+			try
+			{
+				for ( int i = 0; i < bytes.length; i += 1000 )
+				{
+					out.write( bytes, i, Math.min( 1000, bytes.length - i ) );
+				}
+				out.close();
+			}
+			catch ( IOException e )
+			{
+				// the reader stopped early and closed the pipe
+			}
+		} );
+		writer.setDaemon( true );
+		writer.start();
+		return in;
+	}
+
+	/**
+	 * Runs the command line on a stream as standard input and returns what
+	 * it prints.
+	 */
+	private static String run( InputStream in, String... args ) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream( bytes, true, "UTF-8" );
+		XMLParser.run( args, in, out, System.err );
+		return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Runs the command line on options it must reject and returns the
+	 * message printed on standard error, checking that nothing was printed
+	 * on standard output and that the exit status tells the options were
+	 * invalid.
+	 */
+	private static String rejection( String... args ) throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		int status = XMLParser.run( args, new ByteArrayInputStream( new byte[0] ), new PrintStream( out, true, "UTF-8" ),
+				new PrintStream( err, true, "UTF-8" ) );
+		assertEquals( String.join( " ", args ), 1, status );
+		assertEquals( 0, out.size() );
+		return new String( err.toByteArray(), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLParser#run(String[], InputStream, PrintStream, PrintStream)}
+	 * to report on a piped document what it reports on the same bytes in
+	 * memory, in each report format.
+	 * @throws Exception
+	 */
+	@Test
+	public void testPipedInput() throws Exception
+	{
+		byte[] xml = generate();
+		String[][] modes = { { "-" }, { "--stream-errors", "-" }, { "--format=jsonl", "-" } };
+		for ( String[] mode : modes )
+		{
+			String expected = run( new ByteArrayInputStream( xml ), mode );
+			assertTrue( expected.length() > 0 );
+			assertEquals( String.join( " ", mode ), expected, run( pipe( xml ), mode ) );
+		}
+		assertTrue( run( pipe( xml ), "--format=jsonl", "-" ).startsWith( "{\"file\":\"-\"," ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLParser#run(String[], InputStream, PrintStream, PrintStream)}
+	 * to inflate a gzip document arriving through a pipe.
+	 * @throws Exception
+	 */
+	@Test
+	public void testGzipPipedInput() throws Exception
+	{
+		byte[] xml = generate();
+		ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+		try ( GZIPOutputStream out = new GZIPOutputStream( gzip ) )
+		{
+			out.write( xml );
+		}
+		assertEquals( run( new ByteArrayInputStream( xml ), "-" ), run( pipe( gzip.toByteArray() ), "-" ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLParser#run(String[], InputStream, PrintStream, PrintStream)}
+	 * to stop reading at the error limit.
+	 * @throws Exception
+	 */
+	@Test
+	public void testPipedInputErrorLimit() throws Exception
+	{
+		String report;
+		try ( InputStream in = pipe( generate() ) )
+		{
+			report = run( in, "--max-errors=3", "-" );
+		}
+		assertTrue( report.endsWith( "Validation stopped after 3 error(s)." + System.lineSeparator() ) );
+	}
+
+	/**
+	 * Flips a byte of a file, keeping its size and time.
+	 */
+	private static void flip( Path file, int index ) throws Exception
+	{
+		FileTime time = Files.getLastModifiedTime( file );
+		byte[] bytes = Files.readAllBytes( file );
+		bytes[index] ^= 1;
+		Files.write( file, bytes );
+		Files.setLastModifiedTime( file, time );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLParser#run(String[], InputStream, PrintStream, PrintStream)}
+	 * to cache the result of a file read by a stream, a pipeline, mapped
+	 * windows or asynchronous reads, under the hash of the whole file if
+	 * it was read to the end and of the bytes read if it stopped at the
+	 * error limit. The file was just written, so every lookup hashes it.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCachedReads() throws Exception
+	{
+		byte[] xml = generate();
+		Path file = Files.createTempFile( "cached", ".xml" );
+		Path cacheFile = Files.createTempFile( "cached", ".cache" );
+		InputStream stdin = new ByteArrayInputStream( new byte[0] );
+		ValidationMetrics metrics = ValidationMetrics.global();
+		try
+		{
+			String[] modes = { "--stream-errors", "--pipeline", "--mmap", "--async" };
+			for ( String mode : modes )
+			{
+				for ( int limit : new int[] { 0, 3 } )
+				{
+					String name = mode + " --max-errors=" + limit;
+					Files.write( file, xml );
+					Files.delete( cacheFile );
+					String[] args = { mode, limit > 0 ? "--max-errors=" + limit : "--format=text", "--cache=" + cacheFile,
+							file.toString() };
+					long validated = metrics.getFilesValidated();
+					String report = run( stdin, args );
+					assertEquals( name, validated + 1, metrics.getFilesValidated() );
+					assertEquals( name, report, run( stdin, args ) );
+					assertEquals( name, validated + 1, metrics.getFilesValidated() );
+
+					// Past where a limited validation stopped, an edit is
+					// not seen; anywhere in a complete one it is
+					ResultCache cache = ResultCache.load( cacheFile, ResultCache.DEFAULT_MAX_BYTES );
+					flip( file, xml.length - 1 );
+					assertEquals( name, limit > 0, cache.get( file, limit ) != null );
+					flip( file, 0 );
+					assertNull( name, cache.get( file, limit ) );
+				}
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists( file );
+			Files.deleteIfExists( cacheFile );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLParser#run(String[], InputStream, PrintStream, PrintStream)} to
+	 * accept standard input alone and reject it together with other inputs.
+	 */
+	@Test
+	public void testStdinOptions() throws Exception
+	{
+		String report = run( new ByteArrayInputStream( "<a></b>".getBytes( StandardCharsets.UTF_8 ) ), "--mmap", "-" );
+		assertTrue( report, report.contains( "</b>" ) );
+		String[][] rejected = { { "-", "a.xml" }, { "a.xml", "-" }, { "-", "-" }, { "-", "--files-from=list.txt" } };
+		for ( String[] args : rejected )
+		{
+			String message = rejection( args );
+			assertTrue( String.join( " ", args ),
+					message.startsWith( "Standard input cannot be validated together with other files" ) );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLParser#run(String[], InputStream, PrintStream, PrintStream)}
+	 * to reject modes that exclude each other, naming both options.
+	 * @throws Exception
+	 */
+	@Test
+	public void testConflictingModes() throws Exception
+	{
+		String[][] rejected = { { "--parallel", "--pipeline", "a.xml" }, { "--mmap", "--pipeline", "a.xml" },
+				{ "--mmap", "--async", "a.xml" }, { "--async", "--parallel=2", "a.xml" },
+				{ "--serve=0", "--watch" }, { "--serve=0", "a.xml" }, { "--serve=0", "--files-from=list.txt" } };
+		String[][] named = { { "--parallel", "--pipeline" }, { "--mmap", "--pipeline" }, { "--mmap", "--async" },
+				{ "--async", "--parallel" }, { "--serve", "--watch" }, { "--serve", "a.xml" }, { "--serve", "--files-from" } };
+		for ( int i = 0; i < rejected.length; i++ )
+		{
+			String message = rejection( rejected[i] );
+			assertTrue( message, message.startsWith( named[i][0] + " cannot be used together with " + named[i][1] ) );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLParser#run(String[], InputStream, PrintStream, PrintStream)}
+	 * to warn on the given error stream when the result cache cannot be
+	 * written.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCacheWarningOnErrorStream() throws Exception
+	{
+		Path file = Files.createTempFile( "cached", ".xml" );
+		try
+		{
+			Files.write( file, "<a></a>".getBytes( StandardCharsets.UTF_8 ) );
+			// Loads as empty, but its directory does not exist to write it to
+			Path cacheFile = file.resolveSibling( "missing-" + file.getFileName() ).resolve( "results.cache" );
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			int status = XMLParser.run( new String[] { "--cache=" + cacheFile, file.toString() },
+					new ByteArrayInputStream( new byte[0] ), new PrintStream( new ByteArrayOutputStream(), true, "UTF-8" ),
+					new PrintStream( err, true, "UTF-8" ) );
+			assertEquals( 0, status );
+			assertTrue( new String( err.toByteArray(), StandardCharsets.UTF_8 ).contains( "Warning: results not cached: " ) );
+		}
+		finally
+		{
+			Files.deleteIfExists( file );
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package unitTests;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import appDomain.XMLTokenizer;
+
+/**
+ * Class Description:
+ * Test for the byte-level state machine tokenizer used by the XMLParser.
+ */
+
+public class XMLTokenizerTest
+{
+	// Attributes
+	private List<String> tokens;
+	private XMLTokenizer tokenizer;
+
+	/**
+	 * Creates a tokenizer that records every token as "type:name@line".
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		tokens = new ArrayList<String>();
+		tokenizer = new XMLTokenizer( new XMLTokenizer.TokenListener()
+		{
+			@Override
+			public void token( XMLTokenizer t )
+			{
+				tokens.add( t.tokenType() + ":" + t.name() + "@" + t.lineNumber() );
+			}
+		} );
+	}
+
+	/**
+	 * Feeds the document to the tokenizer in slices of the given size.
+	 */
+	private void feed( String xml, int slice )
+	{
+		byte[] bytes = xml.getBytes( StandardCharsets.UTF_8 );
+		for ( int i = 0; i < bytes.length; i += slice )
+		{
+			tokenizer.feed( ByteBuffer.wrap( bytes, i, Math.min( slice, bytes.length - i ) ) );
+		}
+		tokenizer.finish();
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLTokenizer#feed(ByteBuffer)}
+	 * to recognise start tags that carry attributes.
+	 */
+	@Test
+	public void testStartTagWithAttributes()
+	{
+		feed( "<Submission SubmissionID=\"584962\">", 1024 );
+		assertEquals( 1, tokens.size() );
+		assertEquals( XMLTokenizer.START_TAG + ":Submission@1", tokens.get( 0 ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLTokenizer#feed(ByteBuffer)}
+	 * to recognise end and self-closing tags.
+	 */
+	@Test
+	public void testEndAndEmptyTags()
+	{
+		feed( "<a><b x='1'/></a >", 1024 );
+		assertEquals( 3, tokens.size() );
+		assertEquals( XMLTokenizer.START_TAG + ":a@1", tokens.get( 0 ) );
+		assertEquals( XMLTokenizer.EMPTY_TAG + ":b@1", tokens.get( 1 ) );
+		assertEquals( XMLTokenizer.END_TAG + ":a@1", tokens.get( 2 ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLTokenizer#feed(ByteBuffer)}
+	 * to ignore '&gt;' inside quoted attribute values.
+	 */
+	@Test
+	public void testQuotedGreaterThan()
+	{
+		feed( "<a title=\"x > y\" other='<'>", 1024 );
+		assertEquals( 1, tokens.size() );
+		assertEquals( XMLTokenizer.START_TAG + ":a@1", tokens.get( 0 ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLTokenizer#feed(ByteBuffer)}
+	 * to report a tag spanning lines at the line of its '&lt;'.
+	 */
+	@Test
+	public void testTagSpanningLines()
+	{
+		feed( "\n<a\n  x=\"1\"\n>\n</a>", 1024 );
+		assertEquals( 2, tokens.size() );
+		assertEquals( XMLTokenizer.START_TAG + ":a@2", tokens.get( 0 ) );
+		assertEquals( XMLTokenizer.END_TAG + ":a@5", tokens.get( 1 ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLTokenizer#feed(ByteBuffer)}
+	 * to recognise declarations, processing instructions, comments, CDATA
+	 * and DOCTYPE without reporting the tags they contain.
+	 */
+	@Test
+	public void testNonElementTokens()
+	{
+		feed( "<?xml version=\"1.0\"?><!DOCTYPE r [<!ELEMENT r ANY>]>"
+				+ "<?pi data?><!-- <x> -- --><![CDATA[<y>]]]><r/>", 1024 );
+		assertEquals( 6, tokens.size() );
+		assertEquals( XMLTokenizer.DECLARATION + ":xml@1", tokens.get( 0 ) );
+		assertEquals( XMLTokenizer.DOCTYPE, Integer.parseInt( tokens.get( 1 ).split( ":" )[0] ) );
+		assertEquals( XMLTokenizer.PROCESSING_INSTRUCTION + ":pi@1", tokens.get( 2 ) );
+		assertEquals( XMLTokenizer.COMMENT, Integer.parseInt( tokens.get( 3 ).split( ":" )[0] ) );
+		assertEquals( XMLTokenizer.CDATA, Integer.parseInt( tokens.get( 4 ).split( ":" )[0] ) );
+		assertEquals( XMLTokenizer.EMPTY_TAG + ":r@1", tokens.get( 5 ) );
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLTokenizer#feed(ByteBuffer)}
+	 * to produce the same tokens however the input is sliced.
+	 */
+	@Test
+	public void testBufferBoundaries()
+	{
+		String xml = "<?xml version=\"1.0\"?>\n<a k=\"v\">\n<!-- c -->\n<b/>\n<![CDATA[ ]] ]]>\n</a>\n";
+		feed( xml, 4096 );
+		List<String> whole = new ArrayList<String>( tokens );
+		for ( int slice = 1; slice < 8; slice++ )
+		{
+			tokens.clear();
+			tokenizer.reset();
+			feed( xml, slice );
+			assertEquals( "Slice size " + slice, whole, tokens );
+		}
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLTokenizer#column()} and
+	 * {@link appDomain.XMLTokenizer#byteOffset()}.
+	 */
+	@Test
+	public void testColumnAndOffset()
+	{
+		feed( "<a>\n  <b>", 1024 );
+		assertEquals( 2, tokens.size() );
+		assertEquals( 3, tokenizer.column() );
+		assertEquals( 6, tokenizer.byteOffset() );
+		assertEquals( 2, tokenizer.lineNumber() );
+	}
+
+	/**
+	 * Feeds the document in one buffer of the given kind and byte order and
+	 * records every token as "type:name@line:column+offset".
+	 */
+	private static List<String> positions( byte[] bytes, boolean direct, ByteOrder order )
+	{
+		final List<String> seen = new ArrayList<String>();
+		XMLTokenizer t = new XMLTokenizer( new XMLTokenizer.TokenListener()
+		{
+			@Override
+			public void token( XMLTokenizer t )
+			{
+				seen.add( t.tokenType() + ":" + t.name() + "@" + t.lineNumber() + ":" + t.column() + "+" + t.byteOffset() );
+			}
+		} );
+		ByteBuffer buffer = direct ? ByteBuffer.allocateDirect( bytes.length ) : ByteBuffer.allocate( bytes.length );
+		buffer.order( order ).put( bytes ).flip();
+		t.feed( buffer );
+		t.finish();
+		return seen;
+	}
+
+	/**
+	 * Test method for {@link appDomain.XMLTokenizer#feed(ByteBuffer)}
+	 * to count lines and columns across long runs of text, attribute values,
+	 * comments and CDATA, skipped several bytes at a time, as when fed one
+	 * byte at a time.
+	 */
+	@Test
+	public void testLongRuns()
+	{
+		StringBuilder xml = new StringBuilder( "<doc>" );
+		for ( int n = 0; n < 40; n++ )
+		{
+			String run = "abcdefghijklmnopqrstuvwxyz0123456789ABCD".substring( 0, n );
+			String lines = run.substring( 0, n / 3 ) + "\n" + run.substring( n / 3 ) + ( n % 2 == 0 ? "\n" : "" );
+			xml.append( lines ).append( "<e a=\"" ).append( lines ).append( "\" b='" ).append( lines ).append( "'>" );
+			xml.append( "<!--" ).append( lines ).append( "- -->" ).append( "<![CDATA[" ).append( lines ).append( "]]]>" );
+			xml.append( "\u00e9" ).append( lines ).append( "</e>" );
+		}
+		byte[] bytes = xml.append( "</doc>" ).toString().getBytes( StandardCharsets.UTF_8 );
+		final List<String> expected = new ArrayList<String>();
+		XMLTokenizer slow = new XMLTokenizer( new XMLTokenizer.TokenListener()
+		{
+			@Override
+			public void token( XMLTokenizer t )
+			{
+				expected.add( t.tokenType() + ":" + t.name() + "@" + t.lineNumber() + ":" + t.column() + "+" + t.byteOffset() );
+			}
+		} );
+		for ( byte b : bytes )
+		{
+			slow.feed( ByteBuffer.wrap( new byte[] { b } ) );
+		}
+		slow.finish();
+		assertEquals( 40 * 4 + 2, expected.size() );
+		assertEquals( expected, positions( bytes, false, ByteOrder.BIG_ENDIAN ) );
+		assertEquals( expected, positions( bytes, true, ByteOrder.BIG_ENDIAN ) );
+		assertEquals( expected, positions( bytes, true, ByteOrder.LITTLE_ENDIAN ) );
+	}
+}